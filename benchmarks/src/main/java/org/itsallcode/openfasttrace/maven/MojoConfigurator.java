@@ -0,0 +1,180 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.*;
+import java.util.*;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.*;
+import org.xml.sax.SAXException;
+
+/**
+ * Configures a mojo from the plugin descriptor like Maven does.
+ * <p>
+ * Each parameter of the goal gets the {@code default-value} declared in
+ * {@code META-INF/maven/plugin.xml} unless the given configuration sets it.
+ * Default values that are expressions like {@code ${project.build.directory}}
+ * can't be evaluated without a build and are skipped, the caller has to
+ * configure these parameters when the goal uses them.
+ */
+final class MojoConfigurator
+{
+    private static final String PLUGIN_DESCRIPTOR = "META-INF/maven/plugin.xml";
+
+    private MojoConfigurator()
+    {
+        // not instantiable
+    }
+
+    /**
+     * Configure a mojo.
+     *
+     * @param mojo
+     *            mojo to configure
+     * @param goal
+     *            goal of the mojo in the plugin descriptor
+     * @param configuration
+     *            parameter values that replace the default values, written
+     *            like in a POM with comma separated lists
+     */
+    static void configure(final Object mojo, final String goal, final Map<String, String> configuration)
+    {
+        final Map<String, String> values = new HashMap<>(readDefaultValues(goal));
+        values.putAll(configuration);
+        for (final Map.Entry<String, String> value : values.entrySet())
+        {
+            set(mojo, value.getKey(), value.getValue());
+        }
+    }
+
+    private static Map<String, String> readDefaultValues(final String goal)
+    {
+        final Element mojo = findMojo(readDescriptor(), goal);
+        final Map<String, String> defaultValues = new HashMap<>();
+        final NodeList configurations = mojo.getElementsByTagName("configuration");
+        if (configurations.getLength() == 0)
+        {
+            return defaultValues;
+        }
+        final NodeList parameters = configurations.item(0).getChildNodes();
+        for (int i = 0; i < parameters.getLength(); i++)
+        {
+            if (parameters.item(i) instanceof final Element parameter && parameter.hasAttribute("default-value")
+                    && !parameter.getAttribute("default-value").contains("${"))
+            {
+                defaultValues.put(parameter.getTagName(), parameter.getAttribute("default-value"));
+            }
+        }
+        return defaultValues;
+    }
+
+    private static Document readDescriptor()
+    {
+        try (InputStream descriptor = TraceMojo.class.getClassLoader().getResourceAsStream(PLUGIN_DESCRIPTOR))
+        {
+            if (descriptor == null)
+            {
+                throw new IllegalStateException("Plugin descriptor " + PLUGIN_DESCRIPTOR + " not found");
+            }
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(descriptor);
+        }
+        catch (final IOException | ParserConfigurationException | SAXException exception)
+        {
+            throw new IllegalStateException("Error reading plugin descriptor: " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    private static Element findMojo(final Document descriptor, final String goal)
+    {
+        final NodeList mojos = descriptor.getElementsByTagName("mojo");
+        for (int i = 0; i < mojos.getLength(); i++)
+        {
+            final Element mojo = (Element) mojos.item(i);
+            if (goal.equals(mojo.getElementsByTagName("goal").item(0).getTextContent().trim()))
+            {
+                return mojo;
+            }
+        }
+        throw new IllegalArgumentException("Unknown goal " + goal);
+    }
+
+    private static void set(final Object mojo, final String name, final String value)
+    {
+        final Field field = findField(mojo.getClass(), name);
+        try
+        {
+            field.setAccessible(true);
+            field.set(mojo, convert(field.getGenericType(), value));
+        }
+        catch (final IllegalAccessException exception)
+        {
+            throw new IllegalStateException("Cannot set parameter " + name, exception);
+        }
+    }
+
+    private static Field findField(final Class<?> mojoType, final String name)
+    {
+        for (Class<?> type = mojoType; type != null; type = type.getSuperclass())
+        {
+            try
+            {
+                return type.getDeclaredField(name);
+            }
+            catch (final NoSuchFieldException exception)
+            {
+                // continue with the superclass
+            }
+        }
+        throw new IllegalArgumentException("Unknown parameter " + name);
+    }
+
+    private static Object convert(final Type type, final String value)
+    {
+        if (type instanceof final ParameterizedType collectionType)
+        {
+            final Type elementType = collectionType.getActualTypeArguments()[0];
+            final List<Object> elements = new ArrayList<>();
+            for (final String element : value.split(","))
+            {
+                elements.add(convert(elementType, element.trim()));
+            }
+            return collectionType.getRawType() == Set.class ? new LinkedHashSet<>(elements) : elements;
+        }
+        return convertScalar((Class<?>) type, value);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object convertScalar(final Class<?> type, final String value)
+    {
+        if (type == boolean.class || type == Boolean.class)
+        {
+            return Boolean.parseBoolean(value);
+        }
+        if (type == int.class || type == Integer.class)
+        {
+            return Integer.parseInt(value);
+        }
+        if (type == long.class || type == Long.class)
+        {
+            return Long.parseLong(value);
+        }
+        if (type == File.class)
+        {
+            return new File(value);
+        }
+        if (type.isEnum())
+        {
+            return Enum.valueOf((Class<? extends Enum>) type, value);
+        }
+        if (type == String.class)
+        {
+            return value;
+        }
+        throw new IllegalArgumentException("Unsupported parameter type " + type.getName());
+    }
+}
@@ -0,0 +1,119 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * A project written by the {@link LargeProjectGenerator} of the plugin tests
+ * and the matching {@link MavenProject} tree.
+ * <p>
+ * The items form complete chains without defects: each requirement
+ * {@code req~rN~1} in the {@code doc} directory of the root project is covered
+ * by {@code impl} and {@code utest} tags in the main and test sources of the
+ * leaf modules. The projects are read from the generated POMs and get the
+ * source roots that Maven would add by default.
+ */
+final class SyntheticProject
+{
+    private final MavenProject root;
+    private final List<MavenProject> allProjects = new ArrayList<>();
+
+    private SyntheticProject(final Path baseDir)
+    {
+        this.root = readProject(baseDir);
+    }
+
+    /**
+     * Generate a new project.
+     *
+     * @param baseDir
+     *            directory for the root project, existing content is replaced
+     * @param itemCount
+     *            approximate number of specification items including coverage
+     *            tags
+     * @param moduleCount
+     *            number of leaf modules containing the sources
+     * @param nestingDepth
+     *            number of module levels below the root project, at least 1
+     * @param sourceToSpecRatio
+     *            number of source files per spec file
+     * @return generated project
+     */
+    static SyntheticProject generate(final Path baseDir, final int itemCount, final int moduleCount,
+            final int nestingDepth, final double sourceToSpecRatio)
+    {
+        LargeProjectGenerator.builder().requirementCount(Math.max(1, itemCount / 3)).moduleCount(moduleCount)
+                .nestingDepth(nestingDepth).sourceToSpecRatio(sourceToSpecRatio).build().generate(baseDir);
+        return new SyntheticProject(baseDir);
+    }
+
+    private MavenProject readProject(final Path dir)
+    {
+        final MavenProject project = new MavenProject(readModel(dir.resolve("pom.xml")));
+        project.setFile(dir.resolve("pom.xml").toFile());
+        project.getBuild().setDirectory(dir.resolve("target").toString());
+        addSourceRoot(dir.resolve("src/main/java"), project.getCompileSourceRoots());
+        addSourceRoot(dir.resolve("src/test/java"), project.getTestCompileSourceRoots());
+        this.allProjects.add(project);
+        for (final String module : project.getModules())
+        {
+            readProject(dir.resolve(module));
+        }
+        return project;
+    }
+
+    private static void addSourceRoot(final Path dir, final List<String> sourceRoots)
+    {
+        if (Files.isDirectory(dir))
+        {
+            sourceRoots.add(dir.toString());
+        }
+    }
+
+    private static Model readModel(final Path pom)
+    {
+        try (Reader reader = Files.newBufferedReader(pom, StandardCharsets.UTF_8))
+        {
+            return new MavenXpp3Reader().read(reader);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error reading '" + pom + "': " + exception.getMessage(), exception);
+        }
+        catch (final XmlPullParserException exception)
+        {
+            throw new IllegalStateException("Error parsing '" + pom + "': " + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Get the root project.
+     *
+     * @return root project
+     */
+    MavenProject getRoot()
+    {
+        return this.root;
+    }
+
+    /**
+     * Get all projects including the root and aggregator modules, like the
+     * projects of a reactor.
+     *
+     * @return all projects
+     */
+    List<MavenProject> getAllProjects()
+    {
+        return Collections.unmodifiableList(this.allProjects);
+    }
+}
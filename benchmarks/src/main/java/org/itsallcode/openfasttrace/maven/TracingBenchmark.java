@@ -0,0 +1,240 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.maven.execution.*;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.itsallcode.openfasttrace.api.ReportSettings;
+import org.itsallcode.openfasttrace.api.core.*;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.OftRunner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the phases of the {@code trace} goal on a generated
+ * {@link SyntheticProject}.
+ * <p>
+ * Each phase is measured separately on the result of the previous phases,
+ * which are prepared once per trial. {@link #traceGoal()} runs the complete
+ * goal including module resolution and writing the HTML report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TracingBenchmark
+{
+    /** Approximate number of specification items including coverage tags. */
+    @Param({ "1000", "10000", "50000", "200000" })
+    public int itemCount;
+
+    /** Number of leaf modules containing the sources. */
+    @Param({ "1", "20" })
+    public int moduleCount;
+
+    /** Number of module levels below the root project. */
+    @Param({ "1", "3" })
+    public int nestingDepth;
+
+    /** Number of source files per spec file. */
+    @Param({ "1.0" })
+    public double sourceToSpecRatio;
+
+    private Path baseDir;
+    private SyntheticProject project;
+    private MavenSession session;
+    private Oft oft;
+    private ImportSettings importSettings;
+    private List<SpecificationItem> items;
+    private List<LinkedSpecificationItem> linkedItems;
+    private Trace trace;
+    private Path reportDir;
+
+    /**
+     * Generate the project and prepare the input of each phase.
+     *
+     * @throws IOException
+     *             if creating the project fails
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        this.baseDir = Files.createTempDirectory("oft-benchmark");
+        this.reportDir = Files.createDirectories(this.baseDir.resolve("reports"));
+        this.project = SyntheticProject.generate(this.baseDir.resolve("project"), this.itemCount,
+                this.moduleCount, this.nestingDepth, this.sourceToSpecRatio);
+        this.session = createSession(this.project);
+        this.oft = new OftRunner();
+        this.importSettings = createMojo().createImportSettings();
+        this.items = this.oft.importItems(this.importSettings);
+        this.linkedItems = this.oft.link(this.items);
+        this.trace = this.oft.trace(this.linkedItems);
+    }
+
+    /**
+     * Delete the generated project.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        try (Stream<Path> files = Files.walk(this.baseDir))
+        {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Resolve the module tree and collect the traced directories.
+     *
+     * @return traced directories
+     */
+    @Benchmark
+    public List<Path> resolveModules()
+    {
+        return createMojo().getInputPaths();
+    }
+
+    /**
+     * Import the specification items.
+     *
+     * @return imported items
+     */
+    @Benchmark
+    public List<SpecificationItem> importItems()
+    {
+        return this.oft.importItems(this.importSettings);
+    }
+
+    /**
+     * Link the imported items.
+     *
+     * @return linked items
+     */
+    @Benchmark
+    public List<LinkedSpecificationItem> link()
+    {
+        return this.oft.link(this.items);
+    }
+
+    /**
+     * Trace the linked items.
+     *
+     * @return trace result
+     */
+    @Benchmark
+    public Trace traceItems()
+    {
+        return this.oft.trace(this.linkedItems);
+    }
+
+    /**
+     * Render the HTML report.
+     *
+     * @param blackhole
+     *            consumes the report file
+     */
+    @Benchmark
+    public void renderHtml(final Blackhole blackhole)
+    {
+        render("html", blackhole);
+    }
+
+    /**
+     * Render the plain text report.
+     *
+     * @param blackhole
+     *            consumes the report file
+     */
+    @Benchmark
+    public void renderPlain(final Blackhole blackhole)
+    {
+        render("plain", blackhole);
+    }
+
+    private void render(final String format, final Blackhole blackhole)
+    {
+        final Path report = this.reportDir.resolve("tracing-report." + format);
+        this.oft.reportToPath(this.trace, report, ReportSettings.builder().outputFormat(format).build());
+        blackhole.consume(report.toFile().length());
+    }
+
+    /**
+     * Run the complete {@code trace} goal.
+     *
+     * @throws MojoFailureException
+     *             if tracing fails
+     */
+    @Benchmark
+    public void traceGoal() throws MojoFailureException
+    {
+        createMojo().execute();
+    }
+
+    private TraceMojo createMojo()
+    {
+        final TraceMojo mojo = new TraceMojo(null, this.project.getRoot());
+        MojoConfigurator.configure(mojo, "trace", Map.of("outputDirectory", this.reportDir.toString(),
+                "failBuild", "false", "consoleReport", ConsoleReport.NONE.name()));
+        mojo.setLog(new QuietLog());
+        mojo.session = this.session;
+        return mojo;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static MavenSession createSession(final SyntheticProject project)
+    {
+        final MavenSession session = new MavenSession(null, new DefaultRepositorySystemSession(),
+                new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult());
+        session.setProjects(project.getAllProjects());
+        session.setAllProjects(project.getAllProjects());
+        return session;
+    }
+
+    /**
+     * Log that drops info messages, so that the benchmark output stays
+     * readable.
+     */
+    private static final class QuietLog extends SystemStreamLog
+    {
+        @Override
+        public boolean isInfoEnabled()
+        {
+            return false;
+        }
+
+        @Override
+        public void info(final CharSequence content)
+        {
+            // ignore
+        }
+
+        @Override
+        public void info(final CharSequence content, final Throwable error)
+        {
+            // ignore
+        }
+
+        @Override
+        public void info(final Throwable error)
+        {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,1261 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static java.util.Collections.emptySet;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.itsallcode.openfasttrace.api.*;
+import org.itsallcode.openfasttrace.api.core.*;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.itsallcode.openfasttrace.api.report.ReportVerbosity;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.OftRunner;
+
+/**
+ * Common base for the tracing goals.
+ * <p>
+ * Sub classes decide which directories are traced and where the report is
+ * written. Importing, linking, tracing and reporting is the same for all
+ * goals.
+ */
+public abstract class AbstractTraceMojo extends AbstractMojo
+{
+    private static final String WILDCARD_TAG = "_";
+
+    /**
+     * Let build fail when tracing fails.
+     * <p>
+     * Default: {@code true}
+     */
+    @Parameter(property = "openfasttrace.failBuild", defaultValue = "true", required = true)
+    private boolean failBuild;
+
+    /**
+     * The report output formats. Separate multiple formats with commas. All
+     * reports are rendered concurrently from the same trace result.
+     * <ul>
+     * <li>{@code html}: HTML format (default)</li>
+     * <li>{@code plain}: Plain text format</li>
+     * </ul>
+     */
+    @Parameter(property = "openfasttrace.reportOutputFormat", defaultValue = "html", required = true)
+    private List<String> reportOutputFormat;
+
+    /**
+     * The report verbosity.
+     * <ul>
+     * <li>{@code QUIET}</li>
+     * <li>{@code MINIMAL}</li>
+     * <li>{@code SUMMARY}</li>
+     * <li>{@code FAILURES}</li>
+     * <li>{@code FAILURE_SUMMARIES}</li>
+     * <li>{@code FAILURE_DETAILS} (default)</li>
+     * <li>{@code ALL}</li>
+     * </ul>
+     */
+    @Parameter(property = "openfasttrace.reportVerbosity", defaultValue = "FAILURE_DETAILS", required = true)
+    private ReportVerbosity reportVerbosity;
+
+    /**
+     * Split the HTML report into an index page and pages of at most this
+     * number of items per artifact type. The pages are written to a directory
+     * next to the index page. Values less than 1 write the HTML report as a
+     * single file.
+     * <p>
+     * Default: {@code 0}
+     */
+    @Parameter(property = "openfasttrace.htmlReportPageSize", defaultValue = "0")
+    int htmlReportPageSize;
+
+    /**
+     * Compression of the written reports.
+     * <ul>
+     * <li>{@code NONE}: write uncompressed reports (default)</li>
+     * <li>{@code GZIP}: stream the reports through GZIP compression and add
+     * {@code .gz} to the file names, e.g.
+     * {@code tracing-report.html.gz}</li>
+     * </ul>
+     * Paged HTML reports, see {@link #htmlReportPageSize}, are not
+     * compressed.
+     */
+    @Parameter(property = "openfasttrace.reportCompression", defaultValue = "NONE")
+    ReportCompression reportCompression;
+
+    /**
+     * Show the origin in the tracing report.
+     * <p>
+     * Default: <code>false</code>
+     */
+    @Parameter(property = "openfasttrace.reportShowOrigin", defaultValue = "false", required = true)
+    private boolean reportShowOrigin;
+
+    /**
+     * Determines if the details sections for specification items in the HTML
+     * report are hidden or visible.
+     * <ul>
+     * <li>{@code COLLAPSE}: hide details sections (default)</li>
+     * <li>{@code EXPAND}: show details section</li>
+     * </ul>
+     */
+    @Parameter(property = "openfasttrace.detailsSectionDisplay", defaultValue = "COLLAPSE", required = true)
+    private DetailsSectionDisplay detailsSectionDisplay;
+
+    /**
+     * Determines which artifact types should be imported.
+     * <ul>
+     * <li>If the artifactTypes set is null, no filtering based on artifact type
+     * will be applied.</li>
+     * <li>If the artifactTypes set is not null, only artifacts with types that
+     * match the specified types will be imported.</li>
+     * </ul>
+     */
+    @Parameter(property = "openfasttrace.artifactTypes")
+    Set<String> artifactTypes;
+
+    /**
+     * Determines which tags should be imported.
+     * <p>
+     * Import only specification items that have at least one of the listed
+     * tags. If you add a single underscore {@code _}, specification items that
+     * have no tags at all are also imported.
+     * <p>
+     * Default: Import all specification items.
+     */
+    @Parameter(property = "openfasttrace.tags")
+    Set<String> tags;
+
+    /**
+     * Determines which statuses should be imported.
+     * <p>
+     * Only artifacts with statuses that match the specified statuses will be
+     * imported. Artifacts without an explicit status are considered
+     * {@code APPROVED}.
+     * <p>
+     * Default: {@code APPROVED}
+     * <p>
+     * Valid values: {@code APPROVED}, {@code PROPOSED}, {@code DRAFT},
+     * {@code REJECTED}.
+     */
+    @Parameter(property = "openfasttrace.statuses", defaultValue = "APPROVED")
+    Set<ItemStatus> statuses;
+
+    /**
+     * Skip running OFT.
+     * <p>
+     * Default: <code>false</code>
+     */
+    @Parameter(property = "openfasttrace.skip", defaultValue = "false")
+    boolean skip;
+
+    /**
+     * Cache the specification items imported from each file and only
+     * re-import files that changed since the last run.
+     * <p>
+     * The cache is invalidated when the OpenFastTrace version, the installed
+     * importer plugins or the import filter settings change.
+     * <p>
+     * Default: <code>false</code>
+     */
+    @Parameter(property = "openfasttrace.importCache", defaultValue = "false")
+    boolean importCache;
+
+    /**
+     * Git reference, e.g. {@code origin/main}. If set, the plugin asks
+     * {@code git} for the files changed since the merge base of this reference
+     * and {@code HEAD} and enables the import cache. Cached items of files
+     * unchanged since the merge base are reused without checking the files,
+     * so that only changed files are read and imported. The report still
+     * covers all items.
+     * <p>
+     * If {@code git} fails, all files are checked as with the import cache.
+     */
+    @Parameter(property = "openfasttrace.changedSince")
+    String changedSince;
+
+    /**
+     * Import the traced files concurrently.
+     * <p>
+     * The input files are split into shards that are imported in parallel
+     * using {@link #importThreads} threads. The imported items are merged in
+     * the order of the input files, so the result does not depend on the
+     * number of threads.
+     * <p>
+     * Default: <code>false</code>
+     */
+    @Parameter(property = "openfasttrace.parallelImport", defaultValue = "false")
+    boolean parallelImport;
+
+    /**
+     * Number of threads used for parallel import. Values less than 1 use the
+     * number of available processors, or twice that number for
+     * {@link #pipelinedImport}.
+     * <p>
+     * Default: {@code 0}
+     */
+    @Parameter(property = "openfasttrace.importThreads", defaultValue = "0")
+    int importThreads;
+
+    /**
+     * Import the traced files in a pipeline: one thread walks the traced
+     * directories while {@link #importThreads} threads read and parse the
+     * files found so far. This overlaps file system access with parsing and
+     * helps most on volumes with a high latency, e.g. network file systems.
+     * The imported items are in the same order as in a sequential import.
+     * <p>
+     * Default: <code>false</code>
+     */
+    @Parameter(property = "openfasttrace.pipelinedImport", defaultValue = "false")
+    boolean pipelinedImport;
+
+    /**
+     * Capacity of the queues between the stages of the
+     * {@link #pipelinedImport}. Walking the directories pauses when this
+     * number of files is waiting to be imported.
+     * <p>
+     * Default: {@code 256}
+     */
+    @Parameter(property = "openfasttrace.importQueueSize", defaultValue = "256")
+    int importQueueSize;
+
+    /**
+     * Keep imported items in memory and reuse them in later executions in the
+     * same JVM, e.g. for other modules of the reactor or in the next build
+     * under the Maven daemon. Files are re-imported when they changed.
+     * <p>
+     * Default: <code>false</code>
+     */
+    @Parameter(property = "openfasttrace.sharedImportCache", defaultValue = "false")
+    boolean sharedImportCache;
+
+    /**
+     * Maximum number of items kept in the shared import cache. The least
+     * recently used files are evicted first. {@code 0} disables the limit,
+     * negative values limit the cache to about a tenth of the maximum heap
+     * size.
+     * <p>
+     * Default: {@code -1}
+     */
+    @Parameter(property = "openfasttrace.sharedImportCacheMaxItems", defaultValue = "-1")
+    long sharedImportCacheMaxItems;
+
+    /**
+     * Scan files before importing them and skip files that cannot contain
+     * specification items: files without specification item markers, binary
+     * files and files larger than {@link #prefilterMaxFileSize}.
+     * <p>
+     * Default: <code>false</code>
+     */
+    @Parameter(property = "openfasttrace.contentPrefilter", defaultValue = "false")
+    boolean contentPrefilter;
+
+    /**
+     * Files larger than this number of bytes are skipped when
+     * {@code contentPrefilter} is enabled. Values less than 1 disable the
+     * limit.
+     * <p>
+     * Default: {@code 10485760} (10 MiB)
+     */
+    @Parameter(property = "openfasttrace.prefilterMaxFileSize", defaultValue = "10485760")
+    long prefilterMaxFileSize;
+
+    /**
+     * Skip tracing when neither the traced files nor the configuration changed
+     * since the last run and the report from the last run is still present.
+     * <p>
+     * The outcome of the last run is reused, so the build still fails if the
+     * last run found defects and {@code failBuild} is enabled.
+     * <p>
+     * Default: <code>false</code>
+     */
+    @Parameter(property = "openfasttrace.upToDateCheck", defaultValue = "false")
+    boolean upToDateCheck;
+
+    /**
+     * Measure wall time, CPU time, allocated bytes and throughput of each
+     * tracing phase, log a summary and write the metrics to
+     * {@code openfasttrace-metrics.json} in the output directory.
+     * <p>
+     * Default: <code>false</code>
+     */
+    @Parameter(property = "openfasttrace.metrics", defaultValue = "false")
+    boolean metrics;
+
+    /**
+     * Maximum wall time of a tracing run in milliseconds, i.e. of all measured
+     * phases except writing the reports: resolve, up-to-date, git, import,
+     * count-files, focus, link and trace, as far as they run. Values less
+     * than 1 disable the limit.
+     * <p>
+     * Default: {@code 0}
+     */
+    @Parameter(property = "openfasttrace.maxTraceDuration", defaultValue = "0")
+    long maxTraceDuration;
+
+    /**
+     * Maximum number of files handed to the importers. Values less than 1
+     * disable the limit.
+     * <p>
+     * Default: {@code 0}
+     */
+    @Parameter(property = "openfasttrace.maxImportedFiles", defaultValue = "0")
+    long maxImportedFiles;
+
+    /**
+     * Maximum growth of the used heap in bytes between the start of the import
+     * and the end of tracing. Values less than 1 disable the limit.
+     * <p>
+     * Default: {@code 0}
+     */
+    @Parameter(property = "openfasttrace.maxHeapDelta", defaultValue = "0")
+    long maxHeapDelta;
+
+    /**
+     * Let build fail when one of the limits {@link #maxTraceDuration},
+     * {@link #maxImportedFiles} or {@link #maxHeapDelta} is exceeded. If
+     * disabled, exceeded limits are only logged as warnings.
+     * <p>
+     * Default: <code>true</code>
+     */
+    @Parameter(property = "openfasttrace.failOnBudgetExceeded", defaultValue = "true")
+    boolean failOnBudgetExceeded;
+
+    /**
+     * Determines what is printed to the console when tracing finds defects.
+     * <ul>
+     * <li>{@code FULL}: the full plain text report with failure details
+     * (default)</li>
+     * <li>{@code SUMMARY}: defect counts per artifact type and the first
+     * {@link #consoleMaxDefects} defects</li>
+     * <li>{@code NONE}: only the number of defects</li>
+     * </ul>
+     */
+    @Parameter(property = "openfasttrace.consoleReport", defaultValue = "FULL")
+    ConsoleReport consoleReport;
+
+    /**
+     * Maximum number of defects listed on the console with
+     * {@code consoleReport} {@code SUMMARY}.
+     * <p>
+     * Default: {@code 20}
+     */
+    @Parameter(property = "openfasttrace.consoleMaxDefects", defaultValue = "20")
+    int consoleMaxDefects;
+
+    /**
+     * Only import files matching at least one of these glob patterns. The
+     * patterns are relative to each traced directory, e.g.
+     * {@code **}{@code /*.java}.
+     * <p>
+     * Default: import all files
+     */
+    @Parameter(property = "openfasttrace.includes")
+    List<String> includes;
+
+    /**
+     * Do not import files matching one of these glob patterns. The patterns
+     * are relative to each traced directory. Directories matching a pattern
+     * like {@code fixtures/**} are not walked at all.
+     */
+    @Parameter(property = "openfasttrace.excludes")
+    List<String> excludes;
+
+    /**
+     * Additional exclude patterns for compile and test compile source roots.
+     */
+    @Parameter(property = "openfasttrace.sourceExcludes")
+    List<String> sourceExcludes;
+
+    /**
+     * Additional exclude patterns for resource and test resource directories.
+     */
+    @Parameter(property = "openfasttrace.resourceExcludes")
+    List<String> resourceExcludes;
+
+    /**
+     * Additional exclude patterns for the {@code doc} directories.
+     */
+    @Parameter(property = "openfasttrace.docExcludes")
+    List<String> docExcludes;
+
+    /**
+     * Skip compile and test compile source roots below the
+     * {@code generated-sources} and {@code generated-test-sources} directories
+     * in the build directory of a project, e.g.
+     * {@code target/generated-sources/annotations}. Resource directories and
+     * other roots below the build directory are always traced.
+     * <p>
+     * Default: <code>true</code>
+     */
+    @Parameter(property = "openfasttrace.excludeGeneratedSources", defaultValue = "true")
+    boolean excludeGeneratedSources;
+
+    /**
+     * Only link, trace and report the neighborhood of these specification
+     * item IDs, e.g. {@code req~login~1}: the items they cover or depend on
+     * and the items covering or depending on them, each transitively. The
+     * revision of the IDs is ignored.
+     * <p>
+     * Default: trace all items
+     */
+    @Parameter(property = "openfasttrace.focus")
+    List<String> focus;
+
+    @Parameter(defaultValue = "${project}", readonly = true)
+    MavenProject project;
+
+    @Parameter(defaultValue = "${session}", readonly = true)
+    MavenSession session;
+
+    private final Map<Path, InputFilter.RootType> rootTypes = new HashMap<>();
+
+    /**
+     * Create a new instance.
+     */
+    protected AbstractTraceMojo()
+    {
+        // Parameters are injected by Maven
+    }
+
+    @Override
+    public void execute() throws MojoFailureException
+    {
+        if (skip)
+        {
+            getLog().warn("Skipping OFT tracing because property 'openfasttrace.skip' was set to 'true'.");
+            return;
+        }
+        final TraceMetrics traceMetrics = new TraceMetrics(getGoal(), project == null ? null : project.getId());
+        final ImportSettings importSettings = traceMetrics.measure("resolve", this::createImportSettings);
+        final InputFilter inputFilter = createInputFilter();
+        final String importConfiguration = createImportConfiguration(importSettings, inputFilter);
+        final Map<Path, ReportSettings> reports = createReports();
+        final FocusClosure focusClosure = createFocusClosure();
+        final UpToDateCheck check = upToDateCheck ? new UpToDateCheck(getLog(),
+                getOutputDirectory().resolve("openfasttrace/tracing-state.properties"), reports, inputFilter,
+                htmlReportPageSize)
+                : null;
+        final List<Path> bundles = getDependencyBundles();
+        final List<Path> jars = getDependencyJars();
+        final String fingerprint = check == null ? null
+                : traceMetrics.measure("up-to-date", () -> check.createFingerprint(importSettings, importConfiguration,
+                        Stream.concat(bundles.stream(), jars.stream()).toList(), nullToEmpty(focus)));
+        final Optional<UpToDateCheck.Outcome> previousOutcome = check == null ? Optional.empty()
+                : check.getPreviousOutcome(fingerprint);
+        if (previousOutcome.isPresent())
+        {
+            getLog().info("Tracing reports " + reports.keySet() + " are up-to-date, skipping tracing.");
+            traceMetrics.upToDate();
+            reportMetrics(traceMetrics, previousOutcome.get());
+            evaluateOutcome(previousOutcome.get(), () -> getLog().warn("See " + reports.keySet() + " for details."));
+            return;
+        }
+        final PerformanceBudget budget = new PerformanceBudget(maxTraceDuration, maxImportedFiles, maxHeapDelta);
+        final Oft oft = new OftRunner();
+        getLog().info("Importing spec items...");
+        final long heapBefore = PerformanceBudget.getUsedHeap();
+        final TraceCoordinator coordinator = TraceCoordinator.forSession(session);
+        final ChangedScope changedScope = changedSince == null || changedSince.isBlank() ? null
+                : traceMetrics.measure("git", this::findChangedScope);
+        final List<SpecificationItem> importedItems = traceMetrics.measure("import",
+                () -> addDependencyItems(importItems(oft, importSettings, inputFilter, importConfiguration,
+                        traceMetrics, coordinator, changedScope), bundles, jars, importSettings));
+        getLog().info("Imported " + importedItems.size() + " items using settings "
+                + formatImportSettings(importSettings));
+        if ((metrics || budget.limitsImportedFiles()) && traceMetrics.getCount("files").isEmpty())
+        {
+            traceMetrics.count("files",
+                    traceMetrics.measure("count-files", () -> countImportedFiles(importSettings, inputFilter)));
+        }
+        final List<SpecificationItem> items = focusClosure == null ? importedItems
+                : traceMetrics.measure("focus", () -> applyFocus(focusClosure, importedItems));
+        final List<LinkedSpecificationItem> linkedItems = traceMetrics.measure("link", () -> oft.link(items));
+        final Trace trace = traceMetrics.measure("trace",
+                () -> oft.trace(focusClosure == null ? linkedItems : focusClosure.selectTraced(linkedItems)));
+        final List<String> budgetViolations = budget.isEnabled()
+                ? budget.findViolations(traceMetrics, PerformanceBudget.getUsedHeap() - heapBefore)
+                : List.of();
+        traceMetrics.run("report", () -> coordinator.writeExclusively(reports.keySet(),
+                () -> createReportWriter(oft).write(trace, reports)));
+        final UpToDateCheck.Outcome outcome = new UpToDateCheck.Outcome(trace.count(), trace.countDefects());
+        if (check != null && budgetViolations.isEmpty())
+        {
+            check.save(fingerprint, outcome);
+        }
+        traceMetrics.count("links", countLinks(linkedItems));
+        reportMetrics(traceMetrics, outcome);
+        logBudgetViolations(budgetViolations);
+        evaluateOutcome(outcome, () -> logTracingReport(oft, trace, reports));
+        if (failOnBudgetExceeded && !budgetViolations.isEmpty())
+        {
+            throw new MojoFailureException("Tracing exceeded its performance budget: "
+                    + String.join("; ", budgetViolations));
+        }
+    }
+
+    private void logBudgetViolations(final List<String> budgetViolations)
+    {
+        if (budgetViolations.isEmpty())
+        {
+            return;
+        }
+        getLog().warn("Tracing exceeded " + budgetViolations.size() + " performance budget limits:");
+        for (final String violation : budgetViolations)
+        {
+            getLog().warn("  " + violation);
+        }
+    }
+
+    private static long countLinks(final List<LinkedSpecificationItem> linkedItems)
+    {
+        long links = 0;
+        for (final LinkedSpecificationItem item : linkedItems)
+        {
+            links += item.countOutgoingLinks();
+        }
+        return links;
+    }
+
+    private void reportMetrics(final TraceMetrics traceMetrics, final UpToDateCheck.Outcome outcome)
+    {
+        if (!metrics)
+        {
+            return;
+        }
+        traceMetrics.count("items", outcome.itemCount());
+        traceMetrics.count("defects", outcome.defectCount());
+        traceMetrics.log(getLog());
+        final Path metricsFile = getOutputDirectory().resolve("openfasttrace-metrics.json");
+        traceMetrics.write(metricsFile);
+        getLog().debug("Wrote tracing metrics to " + metricsFile);
+    }
+
+    private void evaluateOutcome(final UpToDateCheck.Outcome outcome, final Runnable defectDetailsLogger)
+            throws MojoFailureException
+    {
+        if (outcome.defectCount() == 0)
+        {
+            getLog().info("Tracing found no defects in " + outcome.itemCount() + " items");
+            return;
+        }
+        final String message = "Tracing found " + outcome.defectCount() + " defects out of " + outcome.itemCount()
+                + " items";
+        getLog().warn(message);
+        defectDetailsLogger.run();
+        if (failBuild)
+        {
+            throw new MojoFailureException(message);
+        }
+    }
+
+    /**
+     * Get the directories and files to trace.
+     *
+     * @return input paths
+     */
+    abstract List<Path> getInputPaths();
+
+    /**
+     * Get the name of the goal, used in the tracing metrics.
+     *
+     * @return goal name
+     */
+    abstract String getGoal();
+
+    /**
+     * Get the directory where the report is written.
+     *
+     * @return output directory
+     */
+    abstract Path getOutputDirectory();
+
+    /**
+     * Get the location of the import cache.
+     *
+     * @return import cache file
+     */
+    abstract Path getImportCacheFile();
+
+    /**
+     * Get the item bundles of dependencies that are traced in addition to the
+     * input paths.
+     *
+     * @return item bundle files, empty by default
+     */
+    List<Path> getDependencyBundles()
+    {
+        return List.of();
+    }
+
+    /**
+     * Create the closure for the {@link #focus} IDs.
+     *
+     * @return closure or {@code null} if no focus is configured
+     * @throws MojoFailureException
+     *             if a focus ID is invalid
+     */
+    FocusClosure createFocusClosure() throws MojoFailureException
+    {
+        if (focus == null || focus.isEmpty())
+        {
+            return null;
+        }
+        try
+        {
+            return FocusClosure.of(focus);
+        }
+        catch (final IllegalArgumentException exception)
+        {
+            throw new MojoFailureException(exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Select the items to link in the neighborhood of the focus items. Trace
+     * only the linked items returned by
+     * {@link FocusClosure#selectTraced(List)}.
+     *
+     * @param focusClosure
+     *            closure of the focus IDs
+     * @param items
+     *            all imported items
+     * @return selected items to link
+     */
+    List<SpecificationItem> applyFocus(final FocusClosure focusClosure, final List<SpecificationItem> items)
+    {
+        final List<SpecificationItem> selectedItems = focusClosure.select(items);
+        for (final String missingId : focusClosure.getMissingIds())
+        {
+            getLog().warn("Focus item " + missingId + " was not found.");
+        }
+        getLog().info("Focused on " + selectedItems.size() + " of " + items.size() + " items around " + focus
+                + ".");
+        return selectedItems;
+    }
+
+    /**
+     * Get the JARs of dependencies whose {@value JarItemImporter#DIRECTORY}
+     * directory is traced in addition to the input paths.
+     *
+     * @return JAR files, empty by default
+     */
+    List<Path> getDependencyJars()
+    {
+        return List.of();
+    }
+
+    /**
+     * Add the items of the item bundles and JARs of dependencies.
+     *
+     * @param importedItems
+     *            items imported from the inputs
+     * @param bundles
+     *            item bundles of dependencies
+     * @param jars
+     *            JARs of dependencies
+     * @param importSettings
+     *            import settings, the filters apply to the dependency items
+     * @return imported items followed by the dependency items
+     */
+    List<SpecificationItem> addDependencyItems(final List<SpecificationItem> importedItems,
+            final List<Path> bundles, final List<Path> jars, final ImportSettings importSettings)
+    {
+        if (bundles.isEmpty() && jars.isEmpty())
+        {
+            return importedItems;
+        }
+        final List<SpecificationItem> items = new ArrayList<>(importedItems);
+        for (final Path bundle : bundles)
+        {
+            final List<SpecificationItem> bundleItems = ItemBundle.read(bundle, importSettings.getFilters());
+            getLog().debug("Loaded " + bundleItems.size() + " items from item bundle " + bundle);
+            items.addAll(bundleItems);
+        }
+        if (!bundles.isEmpty())
+        {
+            getLog().info("Loaded " + (items.size() - importedItems.size()) + " items from " + bundles.size()
+                    + " item bundles of dependencies.");
+        }
+        if (!jars.isEmpty())
+        {
+            final int itemCountBefore = items.size();
+            final JarItemImporter jarImporter = new JarItemImporter(importSettings);
+            for (final Path jar : jars)
+            {
+                final List<SpecificationItem> jarItems = jarImporter.importJar(jar);
+                getLog().debug("Imported " + jarItems.size() + " items from JAR " + jar);
+                items.addAll(jarItems);
+            }
+            getLog().info("Imported " + (items.size() - itemCountBefore) + " items from " + jars.size()
+                    + " JARs of dependencies.");
+        }
+        return items;
+    }
+
+    private ChangedScope findChangedScope()
+    {
+        final Path workDir = project.getBasedir().toPath();
+        try
+        {
+            final ChangedScope changedScope = ChangedScope.fromGit(workDir, changedSince);
+            getLog().info("Found " + changedScope.getChangedFileCount() + " files changed since " + changedSince
+                    + " (merge base " + changedScope.getBaseCommit() + ").");
+            return changedScope;
+        }
+        catch (final IllegalStateException | UncheckedIOException exception)
+        {
+            getLog().warn("Failed to find files changed since " + changedSince + ", checking all cached files: "
+                    + exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Describe everything besides the inputs that influences the imported
+     * items. Used for the up-to-date check and for coordinating concurrent
+     * imports, so both always agree on which settings matter.
+     *
+     * @param importSettings
+     *            import settings
+     * @param inputFilter
+     *            include and exclude patterns
+     * @return description of the import configuration
+     */
+    String createImportConfiguration(final ImportSettings importSettings, final InputFilter inputFilter)
+    {
+        return ImportCache.formatConfiguration(importSettings) + ", input filter: " + inputFilter
+                + ", content prefilter: " + (contentPrefilter ? prefilterMaxFileSize : "off");
+    }
+
+    /**
+     * Import the items of the given settings. In a parallel build the input
+     * roots are imported one by one through the coordinator, so that
+     * concurrent executions import each root only once. The import cache is
+     * then loaded once for all roots and saved after the last root. Entries
+     * of roots that another execution imported are kept in the cache.
+     *
+     * @param oft
+     *            OpenFastTrace
+     * @param importSettings
+     *            import settings
+     * @param inputFilter
+     *            include and exclude patterns
+     * @param configuration
+     *            import configuration, see
+     *            {@link #createImportConfiguration(ImportSettings, InputFilter)}
+     * @param traceMetrics
+     *            metrics counting the imported files
+     * @param coordinator
+     *            coordinator of the concurrent executions
+     * @param changedScope
+     *            files changed since the base commit or {@code null}
+     * @return imported items
+     */
+    List<SpecificationItem> importItems(final Oft oft, final ImportSettings importSettings,
+            final InputFilter inputFilter, final String configuration, final TraceMetrics traceMetrics,
+            final TraceCoordinator coordinator, final ChangedScope changedScope)
+    {
+        if (session == null || !session.isParallel())
+        {
+            return importInputs(oft, importSettings, inputFilter, traceMetrics, changedScope);
+        }
+        final boolean useImportRunner = needsImportRunner(inputFilter);
+        final ImportCache cache = useImportCache() ? ImportCache.load(getLog(), getImportCacheFile(),
+                ImportCache.createKey(importSettings), changedScope) : null;
+        final List<SpecificationItem> items = new ArrayList<>();
+        long fileCount = 0;
+        for (final Path root : importSettings.getInputs())
+        {
+            final ImportSettings rootSettings = ImportSettings.builder()
+                    .addInputs(root)
+                    .pathConfigs(importSettings.getPathConfigs())
+                    .filter(importSettings.getFilters())
+                    .build();
+            final AtomicBoolean importedHere = new AtomicBoolean();
+            final TraceCoordinator.ImportedRoot importedRoot = coordinator.importRoot(getLog(), configuration, root,
+                    () -> {
+                        importedHere.set(true);
+                        return importRoot(oft, rootSettings, inputFilter, changedScope, useImportRunner, cache);
+                    });
+            if (cache != null && !importedHere.get())
+            {
+                cache.keepEntriesBelow(root);
+            }
+            items.addAll(importedRoot.items());
+            fileCount += importedRoot.fileCount();
+        }
+        if (cache != null)
+        {
+            cache.save();
+            getLog().info("Import cache: " + cache.formatStatistics() + ".");
+        }
+        if (useImportRunner)
+        {
+            traceMetrics.count("files", fileCount);
+        }
+        return items;
+    }
+
+    private TraceCoordinator.ImportedRoot importRoot(final Oft oft, final ImportSettings rootSettings,
+            final InputFilter inputFilter, final ChangedScope changedScope, final boolean useImportRunner,
+            final ImportCache cache)
+    {
+        if (!useImportRunner)
+        {
+            return new TraceCoordinator.ImportedRoot(oft.importItems(rootSettings), 0);
+        }
+        final ImportRunner runner = createImportRunner(rootSettings, inputFilter, changedScope).cache(cache).build();
+        final List<SpecificationItem> items = runner.importItems();
+        return new TraceCoordinator.ImportedRoot(items, runner.getFileCount());
+    }
+
+    private List<SpecificationItem> importInputs(final Oft oft, final ImportSettings importSettings,
+            final InputFilter inputFilter, final TraceMetrics traceMetrics, final ChangedScope changedScope)
+    {
+        if (!needsImportRunner(inputFilter))
+        {
+            return oft.importItems(importSettings);
+        }
+        final ImportRunner runner = createImportRunner(importSettings, inputFilter, changedScope)
+                .cacheFile(useImportCache() ? getImportCacheFile() : null)
+                .build();
+        final List<SpecificationItem> items = runner.importItems();
+        traceMetrics.count("files", runner.getFileCount());
+        return items;
+    }
+
+    private boolean useImportCache()
+    {
+        return importCache || (changedSince != null && !changedSince.isBlank());
+    }
+
+    /**
+     * Check if an import option needs the {@link ImportRunner}, otherwise
+     * OpenFastTrace imports the inputs itself.
+     */
+    private boolean needsImportRunner(final InputFilter inputFilter)
+    {
+        return useImportCache() || sharedImportCache || parallelImport || pipelinedImport || contentPrefilter
+                || !inputFilter.isEmpty();
+    }
+
+    private ImportRunner.Builder createImportRunner(final ImportSettings importSettings,
+            final InputFilter inputFilter, final ChangedScope changedScope)
+    {
+        return ImportRunner.builder()
+                .log(getLog())
+                .settings(importSettings)
+                .changedScope(changedScope)
+                .threads(getImportThreads())
+                .pipeline(pipelinedImport ? Math.max(1, importQueueSize) : 0)
+                .prefilter(contentPrefilter ? new ContentPrefilter(prefilterMaxFileSize) : null)
+                .inputFilter(inputFilter)
+                .sharedCache(sharedImportCache ? SharedImportCache.instance() : null, sharedImportCacheMaxItems);
+    }
+
+    /**
+     * Count the files OpenFastTrace hands to its importers for the given
+     * settings. Used for the metrics and the performance budget when the
+     * import itself did not count the files, so that enabling them does not
+     * change the measured import.
+     */
+    private static long countImportedFiles(final ImportSettings importSettings, final InputFilter inputFilter)
+    {
+        final FileImporter importer = new FileImporter(importSettings);
+        return SourceFileCollector.collect(importSettings.getInputs(), inputFilter).stream()
+                .filter(importer::supportsFile)
+                .count();
+    }
+
+    /**
+     * Import the items of the given settings using the configured import
+     * options, without linking and tracing them.
+     *
+     * @param importSettings
+     *            import settings
+     * @param inputFilter
+     *            include and exclude patterns
+     * @return imported items
+     */
+    List<SpecificationItem> importItems(final ImportSettings importSettings, final InputFilter inputFilter)
+    {
+        final ChangedScope changedScope = changedSince == null || changedSince.isBlank() ? null
+                : findChangedScope();
+        return importInputs(new OftRunner(), importSettings, inputFilter,
+                new TraceMetrics(getGoal(), project == null ? null : project.getId()), changedScope);
+    }
+
+    private int getImportThreads()
+    {
+        if (importThreads > 0 && (parallelImport || pipelinedImport))
+        {
+            return importThreads;
+        }
+        if (pipelinedImport)
+        {
+            return 2 * Runtime.getRuntime().availableProcessors();
+        }
+        return parallelImport ? Runtime.getRuntime().availableProcessors() : 1;
+    }
+
+    private static String formatImportSettings(final ImportSettings settings)
+    {
+        return "[inputs: " + settings.getInputs()
+                + ", path config: " + settings.getPathConfigs()
+                + ", filters: " + formatFilterSettings(settings.getFilters())
+                + "]";
+    }
+
+    private static String formatFilterSettings(final FilterSettings settings)
+    {
+        return "[any criteria set: " + settings.isAnyCriteriaSet() +
+                ", artifact type criteria set: " + settings.isArtifactTypeCriteriaSet() +
+                ", artifact types: " + settings.getArtifactTypes()
+                + ", tag criteria set: " + settings.isTagCriteriaSet()
+                + ", tags: " + settings.getTags() +
+                ", status criteria set: " + settings.isStatusCriteriaSet() +
+                ", statuses: " + settings.getWantedStatuses() +
+                ", without tags: " + settings.withoutTags() + "]";
+    }
+
+    private void logTracingReport(final Oft oft, final Trace trace, final Map<Path, ReportSettings> writtenReports)
+    {
+        switch (consoleReport)
+        {
+        case FULL:
+            logFullTracingReport(oft, trace, writtenReports);
+            break;
+        case SUMMARY:
+            DefectSummary.create(trace, consoleMaxDefects).format().forEach(getLog()::warn);
+            break;
+        case NONE:
+        default:
+            break;
+        }
+    }
+
+    private static void logFullTracingReport(final Oft oft, final Trace trace,
+            final Map<Path, ReportSettings> writtenReports)
+    {
+        final Optional<Path> consoleReport = writtenReports.entrySet().stream()
+                .filter(report -> isConsoleReport(report.getValue()))
+                .map(Map.Entry::getKey)
+                .findFirst();
+        if (consoleReport.isPresent())
+        {
+            copyToStdOut(consoleReport.get());
+            return;
+        }
+        final ReportSettings reportSettings = ReportSettings.builder()
+                .outputFormat("plain")
+                .verbosity(ReportVerbosity.FAILURE_DETAILS)
+                .showOrigin(false)
+                .build();
+        oft.reportToStdOut(trace, reportSettings);
+    }
+
+    private static boolean isConsoleReport(final ReportSettings settings)
+    {
+        return "plain".equals(settings.getOutputFormat())
+                && settings.getReportVerbosity() == ReportVerbosity.FAILURE_DETAILS
+                && !settings.showOrigin();
+    }
+
+    @SuppressWarnings("java:S106") // Console output is intended here
+    private static void copyToStdOut(final Path report)
+    {
+        try (InputStream in = openReport(report))
+        {
+            in.transferTo(System.out);
+            System.out.flush();
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error printing report '" + report + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    private static InputStream openReport(final Path report) throws IOException
+    {
+        final InputStream in = Files.newInputStream(report);
+        if (!report.getFileName().toString().endsWith(ReportCompression.GZIP.getExtension()))
+        {
+            return in;
+        }
+        try
+        {
+            return new GZIPInputStream(in);
+        }
+        catch (final IOException exception)
+        {
+            in.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Create the settings for all configured report formats.
+     *
+     * @return report settings by output path in the configured order
+     */
+    Map<Path, ReportSettings> createReports()
+    {
+        final Map<Path, ReportSettings> reports = new LinkedHashMap<>();
+        for (final String format : new LinkedHashSet<>(reportOutputFormat))
+        {
+            final ReportSettings reportSettings = ReportSettings.builder()
+                    .outputFormat(format)
+                    .verbosity(reportVerbosity)
+                    .showOrigin(reportShowOrigin)
+                    .detailsSectionDisplay(detailsSectionDisplay)
+                    .build();
+            reports.put(getOutputPath(format, reports.keySet()), reportSettings);
+        }
+        return reports;
+    }
+
+    /**
+     * Create the writer for the reports returned by {@link #createReports()}.
+     *
+     * @param oft
+     *            OpenFastTrace instance used for rendering
+     * @return report writer
+     */
+    ReportWriter createReportWriter(final Oft oft)
+    {
+        return new ReportWriter(getLog(), oft, htmlReportPageSize, getReportCompression());
+    }
+
+    private ReportCompression getReportCompression()
+    {
+        return reportCompression == null ? ReportCompression.NONE : reportCompression;
+    }
+
+    private Path getOutputPath(final String format, final Set<Path> usedPaths)
+    {
+        final String reportSuffix = ("html".equals(format) ? "html" : "txt")
+                + (ReportWriter.isPaged(format, htmlReportPageSize) ? "" : getReportCompression().getExtension());
+        final Path defaultPath = getOutputDirectory().resolve("tracing-report." + reportSuffix);
+        final Path outputPath = usedPaths.contains(defaultPath)
+                ? getOutputDirectory().resolve("tracing-report-" + format + "." + reportSuffix)
+                : defaultPath;
+        createDir(outputPath.getParent());
+        return outputPath;
+    }
+
+    private static void createDir(final Path path)
+    {
+        if (path.toFile().exists())
+        {
+            return;
+        }
+        try
+        {
+            Files.createDirectories(path);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error creating directory '" + path + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    ImportSettings createImportSettings()
+    {
+        final ImportSettings.Builder settings = ImportSettings.builder()
+                .addInputs(canonicalizeRoots(getInputPaths()));
+        final FilterSettings filterSettings = FilterSettings.builder()
+                .artifactTypes(getFilteredArtifactTypes())
+                .tags(getFilteredTags())
+                .wantedStatuses(getFilteredStatuses())
+                .withoutTags(isFilterWithoutTags())
+                .build();
+        settings.filter(filterSettings);
+        return settings.build();
+    }
+
+    private List<Path> canonicalizeRoots(final List<Path> inputPaths)
+    {
+        final InputRoots roots = InputRoots.canonicalize(inputPaths);
+        if (!roots.getDroppedRoots().isEmpty())
+        {
+            getLog().info("Importing the files of " + roots.getDroppedRoots().size()
+                    + " duplicate or nested input roots only once: " + roots.getDroppedRoots());
+        }
+        return roots.getRoots();
+    }
+
+    private Set<String> getFilteredArtifactTypes()
+    {
+        return artifactTypes == null ? emptySet() : artifactTypes;
+    }
+
+    private Set<ItemStatus> getFilteredStatuses()
+    {
+        return statuses == null ? emptySet() : statuses;
+    }
+
+    private Set<String> getFilteredTags()
+    {
+        if (tags == null)
+        {
+            return emptySet();
+        }
+        final Set<String> copy = new HashSet<>(tags);
+        copy.remove(WILDCARD_TAG);
+        return copy;
+    }
+
+    private boolean isFilterWithoutTags()
+    {
+        if (tags == null || tags.isEmpty())
+        {
+            return true;
+        }
+        return tags.contains(WILDCARD_TAG);
+    }
+
+    /**
+     * Log the traced directories relative to the given base directory.
+     *
+     * @param baseDir
+     *            base directory
+     * @param sourcePaths
+     *            traced directories
+     */
+    void logSourcePaths(final Path baseDir, final List<Path> sourcePaths)
+    {
+        if (!getLog().isInfoEnabled())
+        {
+            return;
+        }
+        final List<Path> relativePaths = sourcePaths.stream().map(baseDir::relativize).toList();
+        getLog().info(
+                "Tracing " + sourcePaths.size() + " sub-directories of base dir " + baseDir + ": "
+                        + relativePaths);
+    }
+
+    /**
+     * Get the existing source and resource directories of a single project,
+     * not including its modules.
+     * <p>
+     * Generated source roots are skipped if {@link #excludeGeneratedSources}
+     * is enabled.
+     *
+     * @param mavenProject
+     *            project
+     * @return existing source and resource directories
+     */
+    Stream<Path> getOwnSourcePaths(final MavenProject mavenProject)
+    {
+        final List<Path> paths = new ArrayList<>();
+        addRoots(paths, mavenProject, mavenProject.getCompileSourceRoots(), InputFilter.RootType.SOURCES);
+        addRoots(paths, mavenProject, getDirectories(mavenProject.getResources()), InputFilter.RootType.RESOURCES);
+        addRoots(paths, mavenProject, mavenProject.getTestCompileSourceRoots(), InputFilter.RootType.SOURCES);
+        addRoots(paths, mavenProject, getDirectories(mavenProject.getTestResources()),
+                InputFilter.RootType.RESOURCES);
+        return paths.stream();
+    }
+
+    private static List<String> getDirectories(final List<Resource> resources)
+    {
+        return resources.stream().map(Resource::getDirectory).toList();
+    }
+
+    private void addRoots(final List<Path> paths, final MavenProject mavenProject, final List<String> roots,
+            final InputFilter.RootType type)
+    {
+        for (final String root : roots)
+        {
+            final Path path = Path.of(root);
+            if (!Files.exists(path))
+            {
+                continue;
+            }
+            if (excludeGeneratedSources && type == InputFilter.RootType.SOURCES
+                    && isGeneratedSourceRoot(mavenProject, path))
+            {
+                getLog().info("Skipping generated source root " + path
+                        + ", set 'openfasttrace.excludeGeneratedSources' to 'false' to trace it.");
+                continue;
+            }
+            this.rootTypes.put(InputRoots.toRealPath(path), type);
+            paths.add(path);
+        }
+    }
+
+    private static boolean isGeneratedSourceRoot(final MavenProject mavenProject, final Path path)
+    {
+        if (mavenProject.getBuild() == null || mavenProject.getBuild().getDirectory() == null)
+        {
+            return false;
+        }
+        final Path buildDirectory = normalize(Path.of(mavenProject.getBuild().getDirectory()));
+        final Path normalizedPath = normalize(path);
+        return normalizedPath.startsWith(buildDirectory.resolve("generated-sources"))
+                || normalizedPath.startsWith(buildDirectory.resolve("generated-test-sources"));
+    }
+
+    /**
+     * Get the {@code doc} directory of a project.
+     *
+     * @param mavenProject
+     *            project
+     * @return the {@code doc} directory or an empty optional if it does not
+     *         exist
+     */
+    Optional<Path> getDocPath(final MavenProject mavenProject)
+    {
+        final File file = new File(mavenProject.getBasedir(), "doc");
+        if (!file.exists())
+        {
+            return Optional.empty();
+        }
+        this.rootTypes.put(InputRoots.toRealPath(file.toPath()), InputFilter.RootType.DOC);
+        return Optional.of(file.toPath());
+    }
+
+    /**
+     * Create the include and exclude patterns for the roots returned by
+     * {@link #getInputPaths()}.
+     *
+     * @return input filter
+     */
+    InputFilter createInputFilter()
+    {
+        final Map<InputFilter.RootType, List<String>> typeExcludes = new EnumMap<>(InputFilter.RootType.class);
+        typeExcludes.put(InputFilter.RootType.SOURCES, nullToEmpty(sourceExcludes));
+        typeExcludes.put(InputFilter.RootType.RESOURCES, nullToEmpty(resourceExcludes));
+        typeExcludes.put(InputFilter.RootType.DOC, nullToEmpty(docExcludes));
+        return new InputFilter(nullToEmpty(includes), nullToEmpty(excludes), typeExcludes, this.rootTypes);
+    }
+
+    private static List<String> nullToEmpty(final List<String> patterns)
+    {
+        return patterns == null ? List.of() : patterns;
+    }
+
+    /**
+     * Convert a path to an absolute path without redundant elements.
+     *
+     * @param path
+     *            path to normalize
+     * @return normalized absolute path
+     */
+    static Path normalize(final Path path)
+    {
+        return path.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,118 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+import javax.inject.Inject;
+
+import org.apache.maven.plugins.annotations.*;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+
+/**
+ * Import the specification items of a project and attach them to the build as
+ * an item bundle.
+ * <p>
+ * Projects depending on this project can then trace against the bundle with
+ * {@code dependencyBundles} instead of importing the sources of this project
+ * again. The bundle contains all items of the project, the artifact type, tag
+ * and status filters are applied by the consuming project.
+ */
+@Mojo(name = "bundle", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
+public class BundleMojo extends AbstractTraceMojo
+{
+    /**
+     * Location of the item bundle.
+     * <p>
+     * Default:
+     * <code>${project.build.directory}/${project.build.finalName}-oft-items.oftb</code>
+     */
+    @Parameter(property = "openfasttrace.bundleFile", defaultValue = "${project.build.directory}/${project.build.finalName}-oft-items.oftb", required = true)
+    File bundleFile;
+
+    /**
+     * Location of the import cache file.
+     * <p>
+     * Default:
+     * <code>${project.build.directory}/openfasttrace/import-cache.bin</code>
+     */
+    @Parameter(property = "openfasttrace.importCacheFile", defaultValue = "${project.build.directory}/openfasttrace/import-cache.bin")
+    File importCacheFile;
+
+    private final MavenProjectHelper projectHelper;
+
+    /**
+     * Create a new instance.
+     *
+     * @param projectHelper
+     *            helper for attaching the bundle to the project
+     */
+    @Inject
+    public BundleMojo(final MavenProjectHelper projectHelper)
+    {
+        this.projectHelper = projectHelper;
+    }
+
+    /**
+     * Constructor used in unit tests.
+     *
+     * @param projectHelper
+     *            helper for attaching the bundle to the project
+     * @param project
+     *            maven project
+     */
+    BundleMojo(final MavenProjectHelper projectHelper, final MavenProject project)
+    {
+        this(projectHelper);
+        this.project = project;
+    }
+
+    @Override
+    String getGoal()
+    {
+        return "bundle";
+    }
+
+    @Override
+    Path getOutputDirectory()
+    {
+        return bundleFile.toPath().toAbsolutePath().getParent();
+    }
+
+    @Override
+    Path getImportCacheFile()
+    {
+        return importCacheFile.toPath();
+    }
+
+    @Override
+    List<Path> getInputPaths()
+    {
+        final List<Path> inputPaths = new ArrayList<>(getOwnSourcePaths(project).toList());
+        getDocPath(project).ifPresent(inputPaths::add);
+        return inputPaths;
+    }
+
+    @Override
+    public void execute()
+    {
+        if (skip)
+        {
+            getLog().warn("Skipping OFT bundle because property 'openfasttrace.skip' was set to 'true'.");
+            return;
+        }
+        final ImportSettings filteredSettings = createImportSettings();
+        final ImportSettings importSettings = ImportSettings.builder()
+                .addInputs(filteredSettings.getInputs())
+                .pathConfigs(filteredSettings.getPathConfigs())
+                .build();
+        final List<SpecificationItem> items = importItems(importSettings, createInputFilter());
+        final Path file = bundleFile.toPath();
+        ItemBundle.write(file, project.getId(), items);
+        projectHelper.attachArtifact(project, ItemBundle.TYPE, ItemBundle.CLASSIFIER, file.toFile());
+        getLog().info("Wrote " + items.size() + " items to item bundle " + file);
+    }
+}
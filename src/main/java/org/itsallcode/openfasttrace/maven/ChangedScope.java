@@ -0,0 +1,198 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Files changed in the working tree of a git repository since a base commit.
+ * <p>
+ * The base commit is the merge base of a reference like {@code origin/main}
+ * and {@code HEAD}. Changed files are all files that differ between the base
+ * commit and the working tree, including staged, unstaged and untracked
+ * files. Only the other files tracked by git have the same content as in the
+ * base commit. Files git does not track count as changed: ignored files,
+ * files in the build directory or in submodules and files outside of the
+ * working tree.
+ */
+final class ChangedScope
+{
+    private static final long GIT_TIMEOUT_SECONDS = 120;
+
+    private final String baseCommit;
+    private final Set<Path> trackedFiles;
+    private final Set<Path> changedFiles;
+
+    /**
+     * Create a new scope.
+     *
+     * @param baseCommit
+     *            ID of the base commit
+     * @param trackedFiles
+     *            files tracked by git in the working tree
+     * @param changedFiles
+     *            files changed since the base commit
+     */
+    ChangedScope(final String baseCommit, final Set<Path> trackedFiles, final Set<Path> changedFiles)
+    {
+        this.baseCommit = baseCommit;
+        this.trackedFiles = normalize(trackedFiles);
+        this.changedFiles = normalize(changedFiles);
+    }
+
+    /**
+     * Find the files changed since the merge base of the given reference and
+     * {@code HEAD} using the {@code git} command line client.
+     *
+     * @param workDir
+     *            directory inside the git working tree
+     * @param ref
+     *            reference to compare with, e.g. {@code origin/main}
+     * @return changed files
+     * @throws IllegalStateException
+     *             if {@code git} fails, e.g. because the directory is not in
+     *             a git working tree or the reference does not exist
+     */
+    static ChangedScope fromGit(final Path workDir, final String ref)
+    {
+        final Path topLevel = Path.of(git(workDir, "rev-parse", "--show-toplevel").trim());
+        final String baseCommit = git(topLevel, "merge-base", ref, "HEAD").trim();
+        final Set<Path> trackedFiles = new HashSet<>();
+        addFiles(trackedFiles, topLevel, git(topLevel, "ls-files", "-z"));
+        final Set<Path> changedFiles = new HashSet<>();
+        addFiles(changedFiles, topLevel, git(topLevel, "diff", "--name-only", "--no-renames", "-z", baseCommit));
+        addFiles(changedFiles, topLevel, git(topLevel, "ls-files", "--others", "--exclude-standard", "-z"));
+        return new ChangedScope(baseCommit, trackedFiles, changedFiles);
+    }
+
+    private static void addFiles(final Set<Path> files, final Path topLevel, final String output)
+    {
+        for (final String name : output.split("\0"))
+        {
+            if (!name.isEmpty())
+            {
+                files.add(topLevel.resolve(name));
+            }
+        }
+    }
+
+    private static String git(final Path workDir, final String... arguments)
+    {
+        final List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(arguments));
+        Path errorFile = null;
+        try
+        {
+            // Redirect stderr to a file, reading it only after stdout could block git on a full pipe
+            errorFile = Files.createTempFile("openfasttrace-git", ".err");
+            final Process process = new ProcessBuilder(command).directory(workDir.toFile())
+                    .redirectError(errorFile.toFile()).start();
+            process.getOutputStream().close();
+            final String output = read(process.getInputStream());
+            if (!process.waitFor(GIT_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+            {
+                process.destroyForcibly();
+                throw new IllegalStateException("Command " + command + " did not finish within "
+                        + GIT_TIMEOUT_SECONDS + " seconds.");
+            }
+            if (process.exitValue() != 0)
+            {
+                throw new IllegalStateException("Command " + command + " failed with exit code "
+                        + process.exitValue() + ": " + Files.readString(errorFile).trim());
+            }
+            return output;
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error running " + command + ": " + exception.getMessage(), exception);
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running " + command, exception);
+        }
+        finally
+        {
+            deleteErrorFile(errorFile);
+        }
+    }
+
+    private static void deleteErrorFile(final Path errorFile)
+    {
+        if (errorFile == null)
+        {
+            return;
+        }
+        try
+        {
+            Files.deleteIfExists(errorFile);
+        }
+        catch (final IOException exception)
+        {
+            errorFile.toFile().deleteOnExit();
+        }
+    }
+
+    private static String read(final InputStream stream) throws IOException
+    {
+        try (InputStream in = stream)
+        {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Get the ID of the base commit.
+     *
+     * @return base commit
+     */
+    String getBaseCommit()
+    {
+        return this.baseCommit;
+    }
+
+    /**
+     * Check if a file may have changed since the base commit.
+     *
+     * @param file
+     *            file to check
+     * @return {@code true} if the file changed, is new or is not tracked by
+     *         git
+     */
+    boolean isChanged(final Path file)
+    {
+        final Path path = normalize(file);
+        return this.changedFiles.contains(path) || !this.trackedFiles.contains(path);
+    }
+
+    /**
+     * Get the number of changed files, including deleted files.
+     *
+     * @return number of changed files
+     */
+    int getChangedFileCount()
+    {
+        return this.changedFiles.size();
+    }
+
+    private static Set<Path> normalize(final Set<Path> files)
+    {
+        final Set<Path> normalized = new HashSet<>();
+        for (final Path file : files)
+        {
+            normalized.add(normalize(file));
+        }
+        return normalized;
+    }
+
+    private static Path normalize(final Path file)
+    {
+        return file.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,14 @@
+package org.itsallcode.openfasttrace.maven;
+
+/**
+ * Determines what is written to the console when tracing finds defects.
+ */
+public enum ConsoleReport
+{
+    /** Print the full plain text report with failure details. */
+    FULL,
+    /** Print a bounded summary with defect counts and the first defects. */
+    SUMMARY,
+    /** Print only the number of defects. */
+    NONE
+}
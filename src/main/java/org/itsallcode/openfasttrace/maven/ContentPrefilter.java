@@ -0,0 +1,171 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fast pre-scan that excludes files that cannot contain specification items
+ * before they are handed to an importer.
+ * <p>
+ * Every OpenFastTrace specification item ID and coverage tag contains a
+ * {@code ~}, SpecObject XML files contain the element name
+ * {@code specobject}. Files that contain neither, files that look binary
+ * (a NUL byte within the first {@value #BINARY_CHECK_LENGTH} bytes) and files
+ * larger than the configured limit are skipped. ZIP archives are always
+ * accepted because their entries are imported individually.
+ * <p>
+ * Each thread scanning with a pre-filter reuses one
+ * {@value #BUFFER_SIZE} byte buffer for all files.
+ */
+final class ContentPrefilter
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BINARY_CHECK_LENGTH = 8000;
+    private static final byte ID_SEPARATOR = '~';
+    private static final byte[] SPECOBJECT = "specobject".getBytes(StandardCharsets.US_ASCII);
+
+    private final long maxFileSize;
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+    private final AtomicInteger skippedTooLarge = new AtomicInteger();
+    private final AtomicInteger skippedBinary = new AtomicInteger();
+    private final AtomicInteger skippedWithoutMarker = new AtomicInteger();
+
+    /**
+     * Create a new pre-filter.
+     *
+     * @param maxFileSize
+     *            files larger than this number of bytes are skipped, values
+     *            less than 1 disable the limit
+     */
+    ContentPrefilter(final long maxFileSize)
+    {
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Check if the given file may contain specification items.
+     *
+     * @param file
+     *            file to check
+     * @return {@code true} if the file must be imported
+     */
+    boolean accepts(final Path file)
+    {
+        if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip"))
+        {
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (this.maxFileSize > 0 && channel.size() > this.maxFileSize)
+            {
+                this.skippedTooLarge.incrementAndGet();
+                return false;
+            }
+            return scan(channel);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error scanning '" + file + "': " + exception.getMessage(), exception);
+        }
+    }
+
+    private boolean scan(final FileChannel channel) throws IOException
+    {
+        final ByteBuffer buffer = this.buffers.get();
+        buffer.clear();
+        boolean endOfFile = fill(channel, buffer);
+        buffer.flip();
+        if (containsNul(buffer, Math.min(buffer.limit(), BINARY_CHECK_LENGTH)))
+        {
+            this.skippedBinary.incrementAndGet();
+            return false;
+        }
+        int specObjectMatch = 0;
+        while (true)
+        {
+            while (buffer.hasRemaining())
+            {
+                final byte value = buffer.get();
+                if (value == ID_SEPARATOR)
+                {
+                    return true;
+                }
+                specObjectMatch = matchSpecObject(specObjectMatch, value);
+                if (specObjectMatch == SPECOBJECT.length)
+                {
+                    return true;
+                }
+            }
+            if (endOfFile)
+            {
+                this.skippedWithoutMarker.incrementAndGet();
+                return false;
+            }
+            buffer.clear();
+            endOfFile = fill(channel, buffer);
+            buffer.flip();
+        }
+    }
+
+    private static boolean fill(final FileChannel channel, final ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer) == -1)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsNul(final ByteBuffer buffer, final int length)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            if (buffer.get(i) == 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int matchSpecObject(final int matched, final byte value)
+    {
+        if (value == SPECOBJECT[matched])
+        {
+            return matched + 1;
+        }
+        return value == SPECOBJECT[0] ? 1 : 0;
+    }
+
+    /**
+     * Get the number of files skipped by this pre-filter.
+     *
+     * @return number of skipped files
+     */
+    int getSkippedFiles()
+    {
+        return this.skippedTooLarge.get() + this.skippedBinary.get() + this.skippedWithoutMarker.get();
+    }
+
+    /**
+     * Describe the number of skipped files by reason.
+     *
+     * @return description for logging
+     */
+    String formatSkippedFiles()
+    {
+        return getSkippedFiles() + " files (" + this.skippedTooLarge.get() + " too large, "
+                + this.skippedBinary.get() + " binary, " + this.skippedWithoutMarker.get()
+                + " without specification item markers)";
+    }
+}
@@ -0,0 +1,97 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.util.*;
+
+import org.itsallcode.openfasttrace.api.core.*;
+
+/**
+ * Difference between the defects of two consecutive traces.
+ */
+final class DefectDelta
+{
+    private final int itemCount;
+    private final int defectCount;
+    private final List<SpecificationItemId> newDefects;
+    private final List<SpecificationItemId> fixedDefects;
+
+    private DefectDelta(final int itemCount, final int defectCount, final List<SpecificationItemId> newDefects,
+            final List<SpecificationItemId> fixedDefects)
+    {
+        this.itemCount = itemCount;
+        this.defectCount = defectCount;
+        this.newDefects = newDefects;
+        this.fixedDefects = fixedDefects;
+    }
+
+    /**
+     * Get the IDs of the defect items of a trace.
+     *
+     * @param trace
+     *            trace result
+     * @return IDs of defect items in the order of the trace
+     */
+    static Set<SpecificationItemId> getDefectIds(final Trace trace)
+    {
+        final Set<SpecificationItemId> ids = new LinkedHashSet<>();
+        for (final LinkedSpecificationItem item : trace.getDefectItems())
+        {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Compare the defects of a trace with the defects of the previous trace.
+     *
+     * @param previousDefects
+     *            IDs of the defect items of the previous trace
+     * @param trace
+     *            current trace result
+     * @return delta
+     */
+    static DefectDelta compare(final Set<SpecificationItemId> previousDefects, final Trace trace)
+    {
+        final Set<SpecificationItemId> currentDefects = getDefectIds(trace);
+        final List<SpecificationItemId> newDefects = currentDefects.stream()
+                .filter(id -> !previousDefects.contains(id))
+                .toList();
+        final List<SpecificationItemId> fixedDefects = previousDefects.stream()
+                .filter(id -> !currentDefects.contains(id))
+                .toList();
+        return new DefectDelta(trace.count(), currentDefects.size(), newDefects, fixedDefects);
+    }
+
+    /**
+     * Format the delta as lines for the console.
+     *
+     * @param maxDefects
+     *            maximum number of new and fixed defects listed
+     * @return delta lines
+     */
+    List<String> format(final int maxDefects)
+    {
+        final List<String> lines = new ArrayList<>();
+        lines.add(this.itemCount + " items, " + this.defectCount + " defects (" + this.newDefects.size()
+                + " new, " + this.fixedDefects.size() + " fixed)");
+        int listed = 0;
+        for (final SpecificationItemId id : this.newDefects)
+        {
+            if (listed++ < maxDefects)
+            {
+                lines.add("  + " + id);
+            }
+        }
+        for (final SpecificationItemId id : this.fixedDefects)
+        {
+            if (listed++ < maxDefects)
+            {
+                lines.add("  - " + id);
+            }
+        }
+        if (listed > maxDefects)
+        {
+            lines.add("  ... " + (listed - maxDefects) + " more changes");
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,110 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.util.*;
+
+import org.itsallcode.openfasttrace.api.core.*;
+
+/**
+ * Bounded summary of the defects found by tracing.
+ * <p>
+ * The summary is collected in a single pass over the defect items. It
+ * contains the number of defects per artifact type and a short description of
+ * the first defects.
+ */
+final class DefectSummary
+{
+    private final int defectCount;
+    private final Map<String, Integer> defectsPerArtifactType;
+    private final List<String> firstDefects;
+
+    private DefectSummary(final int defectCount, final Map<String, Integer> defectsPerArtifactType,
+            final List<String> firstDefects)
+    {
+        this.defectCount = defectCount;
+        this.defectsPerArtifactType = defectsPerArtifactType;
+        this.firstDefects = firstDefects;
+    }
+
+    /**
+     * Create a summary of the defects in the given trace.
+     *
+     * @param trace
+     *            trace result
+     * @param maxDefects
+     *            maximum number of defects to describe
+     * @return defect summary
+     */
+    static DefectSummary create(final Trace trace, final int maxDefects)
+    {
+        final Map<String, Integer> defectsPerArtifactType = new TreeMap<>();
+        final List<String> firstDefects = new ArrayList<>();
+        int defectCount = 0;
+        for (final LinkedSpecificationItem item : trace.getDefectItems())
+        {
+            defectCount++;
+            defectsPerArtifactType.merge(item.getArtifactType(), 1, Integer::sum);
+            if (firstDefects.size() < maxDefects)
+            {
+                firstDefects.add(describe(item));
+            }
+        }
+        return new DefectSummary(defectCount, defectsPerArtifactType, firstDefects);
+    }
+
+    private static String describe(final LinkedSpecificationItem item)
+    {
+        final List<String> reasons = new ArrayList<>();
+        if (!item.getUncoveredArtifactTypes().isEmpty())
+        {
+            reasons.add("uncovered: " + String.join(", ", item.getUncoveredArtifactTypes()));
+        }
+        if (!item.getOverCoveredArtifactTypes().isEmpty())
+        {
+            reasons.add("over-covered: " + String.join(", ", new TreeSet<>(item.getOverCoveredArtifactTypes())));
+        }
+        if (item.hasDuplicates())
+        {
+            reasons.add("duplicates: " + item.countDuplicateLinks());
+        }
+        final int badLinks = item.countOutgoingBadLinks() + item.countIncomingBadLinks();
+        if (badLinks > 0)
+        {
+            reasons.add("bad links: " + badLinks);
+        }
+        if (reasons.isEmpty())
+        {
+            reasons.add("defect in covering items");
+        }
+        return item.getId() + formatLocation(item.getLocation()) + ": " + String.join("; ", reasons);
+    }
+
+    private static String formatLocation(final Location location)
+    {
+        if (location == null || location.getPath() == null)
+        {
+            return "";
+        }
+        return location.getLine() > 0 ? " (" + location.getPath() + ":" + location.getLine() + ")"
+                : " (" + location.getPath() + ")";
+    }
+
+    /**
+     * Format the summary as lines for the console.
+     *
+     * @return summary lines
+     */
+    List<String> format()
+    {
+        final List<String> lines = new ArrayList<>();
+        lines.add("Defects per artifact type: " + this.defectsPerArtifactType);
+        final int omitted = this.defectCount - this.firstDefects.size();
+        lines.add(omitted > 0 ? "First " + this.firstDefects.size() + " of " + this.defectCount + " defects:"
+                : "Defects:");
+        this.firstDefects.stream().map(defect -> "  " + defect).forEach(lines::add);
+        if (omitted > 0)
+        {
+            lines.add("  ... " + omitted + " more defects, see the tracing report for details.");
+        }
+        return lines;
+    }
+}
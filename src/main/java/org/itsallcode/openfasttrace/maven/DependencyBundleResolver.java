@@ -0,0 +1,210 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.resolution.*;
+
+/**
+ * Finds the item bundles and JARs of the dependencies of a project.
+ * <p>
+ * Bundles attached by projects of the current reactor are used directly, so
+ * the {@code bundle} goal must run before for these projects. The same
+ * applies to the JARs of reactor projects and the {@code package} phase.
+ * JARs of other dependencies are resolved from the repositories of the
+ * project. Bundles of other dependencies are only resolved from the
+ * repositories for dependencies matching one of the bundle includes, as most
+ * dependencies don't publish a bundle and each miss is a remote request.
+ * Dependencies without a bundle or JAR are skipped.
+ */
+final class DependencyBundleResolver
+{
+    private final Log log;
+    private final RepositorySystem repositorySystem;
+    private final MavenSession session;
+
+    /**
+     * Create a new resolver.
+     *
+     * @param log
+     *            logger
+     * @param repositorySystem
+     *            repository system used for resolving bundles
+     * @param session
+     *            maven session
+     */
+    DependencyBundleResolver(final Log log, final RepositorySystem repositorySystem, final MavenSession session)
+    {
+        this.log = log;
+        this.repositorySystem = repositorySystem;
+        this.session = session;
+    }
+
+    /**
+     * Find the item bundles of the direct dependencies of a project.
+     *
+     * @param project
+     *            project
+     * @param includes
+     *            dependencies whose bundles are resolved from the
+     *            repositories, each written as {@code groupId} or
+     *            {@code groupId:artifactId} where {@code *} matches any
+     *            characters
+     * @return bundle files in the order of the dependencies
+     */
+    List<Path> resolve(final MavenProject project, final List<String> includes)
+    {
+        final List<Path> bundles = new ArrayList<>();
+        final List<String> misses = new ArrayList<>();
+        for (final Dependency dependency : project.getDependencies())
+        {
+            final Optional<Path> bundle;
+            if (findReactorProject(dependency).isPresent() || isIncluded(dependency, includes))
+            {
+                bundle = findArtifact(project, dependency, ItemBundle.CLASSIFIER, ItemBundle.TYPE,
+                        this::getAttachedBundle);
+            }
+            else
+            {
+                bundle = Optional.empty();
+            }
+            bundle.ifPresent(bundles::add);
+            if (bundle.isEmpty() && isIncluded(dependency, includes))
+            {
+                misses.add(dependency.getGroupId() + ":" + dependency.getArtifactId());
+            }
+        }
+        if (!misses.isEmpty())
+        {
+            this.log.info("No item bundle found for included dependencies " + misses);
+        }
+        this.log.debug("Found " + bundles.size() + " item bundles for " + project.getDependencies().size()
+                + " dependencies: " + bundles);
+        return bundles;
+    }
+
+    private static boolean isIncluded(final Dependency dependency, final List<String> includes)
+    {
+        if (includes == null)
+        {
+            return false;
+        }
+        return includes.stream().anyMatch(include -> matches(include, dependency));
+    }
+
+    private static boolean matches(final String include, final Dependency dependency)
+    {
+        final String[] parts = include.trim().split(":", 2);
+        return matches(parts[0], dependency.getGroupId())
+                && (parts.length == 1 || matches(parts[1], dependency.getArtifactId()));
+    }
+
+    private static boolean matches(final String pattern, final String value)
+    {
+        final String regex = Arrays.stream(pattern.split("\\*", -1))
+                .map(Pattern::quote)
+                .collect(Collectors.joining(".*"));
+        return value.matches(regex);
+    }
+
+    /**
+     * Find the JARs of the direct dependencies of a project.
+     *
+     * @param project
+     *            project
+     * @return JAR files in the order of the dependencies
+     */
+    List<Path> resolveJars(final MavenProject project)
+    {
+        final List<Path> jars = new ArrayList<>();
+        for (final Dependency dependency : project.getDependencies())
+        {
+            if ("jar".equals(dependency.getType()))
+            {
+                findArtifact(project, dependency, dependency.getClassifier(), "jar", this::getProjectJar)
+                        .ifPresent(jars::add);
+            }
+        }
+        this.log.debug("Found " + jars.size() + " JARs for " + project.getDependencies().size()
+                + " dependencies: " + jars);
+        return jars;
+    }
+
+    private Optional<Path> findArtifact(final MavenProject project, final Dependency dependency,
+            final String classifier, final String extension,
+            final Function<MavenProject, Optional<Path>> reactorArtifact)
+    {
+        final Optional<MavenProject> reactorProject = findReactorProject(dependency);
+        if (reactorProject.isPresent())
+        {
+            return reactorArtifact.apply(reactorProject.get());
+        }
+        final Artifact artifact = new DefaultArtifact(dependency.getGroupId(), dependency.getArtifactId(),
+                classifier, extension, dependency.getVersion());
+        try
+        {
+            final ArtifactResult result = this.repositorySystem.resolveArtifact(this.session.getRepositorySession(),
+                    new ArtifactRequest(artifact, project.getRemoteProjectRepositories(), null));
+            return Optional.of(result.getArtifact().getFile().toPath());
+        }
+        catch (final ArtifactResolutionException exception)
+        {
+            this.log.debug("Failed to resolve " + artifact + ": " + exception.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Optional<MavenProject> findReactorProject(final Dependency dependency)
+    {
+        final List<MavenProject> projects = this.session.getProjects();
+        if (projects == null)
+        {
+            return Optional.empty();
+        }
+        return projects.stream().filter(reactorProject -> isProjectOf(reactorProject, dependency)).findFirst();
+    }
+
+    private Optional<Path> getAttachedBundle(final MavenProject reactorProject)
+    {
+        final Optional<Path> bundle = reactorProject.getAttachedArtifacts().stream()
+                .filter(attached -> ItemBundle.CLASSIFIER.equals(attached.getClassifier()))
+                .map(org.apache.maven.artifact.Artifact::getFile)
+                .filter(Objects::nonNull)
+                .map(File::toPath)
+                .findFirst();
+        if (bundle.isEmpty())
+        {
+            this.log.debug("Reactor project " + reactorProject.getId() + " has no item bundle attached.");
+        }
+        return bundle;
+    }
+
+    private Optional<Path> getProjectJar(final MavenProject reactorProject)
+    {
+        final File file = reactorProject.getArtifact() == null ? null : reactorProject.getArtifact().getFile();
+        if (file == null || !file.isFile())
+        {
+            this.log.debug("Reactor project " + reactorProject.getId() + " has no JAR yet.");
+            return Optional.empty();
+        }
+        return Optional.of(file.toPath());
+    }
+
+    private static boolean isProjectOf(final MavenProject project, final Dependency dependency)
+    {
+        return project.getGroupId().equals(dependency.getGroupId())
+                && project.getArtifactId().equals(dependency.getArtifactId())
+                && project.getVersion().equals(dependency.getVersion());
+    }
+}
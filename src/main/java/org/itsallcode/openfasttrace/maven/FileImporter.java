@@ -0,0 +1,103 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.importer.*;
+import org.itsallcode.openfasttrace.api.importer.input.InputFile;
+import org.itsallcode.openfasttrace.api.importer.input.RealFileInput;
+import org.itsallcode.openfasttrace.core.importer.ImporterFactoryLoader;
+import org.itsallcode.openfasttrace.core.importer.ImporterServiceImpl;
+
+/**
+ * Imports specification items from single files using the importers
+ * OpenFastTrace discovers on the class path.
+ * <p>
+ * This wires up the importer service the same way
+ * {@link org.itsallcode.openfasttrace.core.OftRunner} does, but allows
+ * importing file by file instead of whole directory trees.
+ * <p>
+ * The importer plugins are loaded when the importer is created. After that,
+ * the importer can be used by several threads.
+ */
+final class FileImporter
+{
+    private static final String PLUGIN_INITIALIZATION_FILE = "plugin-initialization";
+
+    private final ImporterFactoryLoader factoryLoader;
+    private final ImporterService importerService;
+
+    /**
+     * Create a new file importer.
+     *
+     * @param settings
+     *            import settings, the filter settings are applied to every
+     *            imported file
+     */
+    FileImporter(final ImportSettings settings)
+    {
+        final ImporterContext context = new ImporterContext(settings);
+        this.factoryLoader = new ImporterFactoryLoader(context);
+        final ImporterServiceImpl service = new ImporterServiceImpl(this.factoryLoader, settings);
+        context.setImporterService(service);
+        this.importerService = service;
+        // The loader discovers and initializes the importer plugins lazily without synchronization. Do it now, so
+        // that threads using this importer after it was safely published only read the loaded plugins.
+        this.factoryLoader.supportsFile(input(Path.of(PLUGIN_INITIALIZATION_FILE)));
+    }
+
+    /**
+     * Check if any importer supports the given file.
+     *
+     * @param file
+     *            file to check
+     * @return {@code true} if the file can be imported
+     */
+    boolean supportsFile(final Path file)
+    {
+        return supportsInput(input(file));
+    }
+
+    /**
+     * Check if any importer supports the given input.
+     *
+     * @param input
+     *            input to check
+     * @return {@code true} if the input can be imported
+     */
+    boolean supportsInput(final InputFile input)
+    {
+        return this.factoryLoader.supportsFile(input);
+    }
+
+    /**
+     * Import all specification items from the given file.
+     *
+     * @param file
+     *            file to import
+     * @return imported items
+     */
+    List<SpecificationItem> importFile(final Path file)
+    {
+        return importInput(input(file));
+    }
+
+    /**
+     * Import all specification items from the given input.
+     *
+     * @param input
+     *            input to import
+     * @return imported items
+     */
+    List<SpecificationItem> importInput(final InputFile input)
+    {
+        return this.importerService.importFile(input);
+    }
+
+    private static InputFile input(final Path file)
+    {
+        return RealFileInput.forPath(file, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,207 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the input roots for changes using a {@link WatchService}.
+ * <p>
+ * All directories below the roots that are not excluded by the
+ * {@link InputFilter} are registered, directories created later are
+ * registered when they appear. Changes are collected until no further event
+ * arrives for the debounce time, so that saving several files at once results
+ * in a single update. Changes of ignored paths like the reports written after
+ * each update are dropped, otherwise a report below an input root would
+ * trigger the next update.
+ */
+final class FileWatcher implements AutoCloseable
+{
+    private final WatchService watchService;
+    private final List<Path> roots;
+    private final InputFilter inputFilter;
+    private final List<Path> ignoredPaths;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    private FileWatcher(final WatchService watchService, final List<Path> roots, final InputFilter inputFilter,
+            final List<Path> ignoredPaths)
+    {
+        this.watchService = watchService;
+        this.roots = roots;
+        this.inputFilter = inputFilter;
+        this.ignoredPaths = ignoredPaths.stream().map(path -> path.toAbsolutePath().normalize()).toList();
+    }
+
+    /**
+     * Start watching the given roots.
+     *
+     * @param roots
+     *            input files and directories
+     * @param inputFilter
+     *            include and exclude patterns, excluded directories are not
+     *            watched
+     * @param ignoredPaths
+     *            files and directories whose changes are ignored, e.g. the
+     *            reports
+     * @return new watcher
+     */
+    static FileWatcher watch(final List<Path> roots, final InputFilter inputFilter, final List<Path> ignoredPaths)
+    {
+        final FileWatcher watcher = new FileWatcher(createWatchService(), roots, inputFilter, ignoredPaths);
+        for (final Path root : roots)
+        {
+            if (Files.isDirectory(root))
+            {
+                watcher.registerTree(root, root);
+            }
+            else if (root.getParent() != null && Files.isDirectory(root.getParent()))
+            {
+                watcher.register(root.getParent());
+            }
+        }
+        return watcher;
+    }
+
+    private static WatchService createWatchService()
+    {
+        try
+        {
+            return FileSystems.getDefault().newWatchService();
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error creating watch service: " + exception.getMessage(), exception);
+        }
+    }
+
+    private void registerTree(final Path root, final Path directory)
+    {
+        try
+        {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>()
+            {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+                {
+                    if (!inputFilter.acceptDirectory(root, dir) || isIgnored(dir))
+                    {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error watching '" + directory + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    private void register(final Path directory)
+    {
+        try
+        {
+            this.directories.put(directory.register(this.watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE),
+                    directory);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error watching '" + directory + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    /**
+     * Wait until files that are not ignored change and collect all changes
+     * until no further change arrives for the debounce time.
+     *
+     * @param debounce
+     *            time without changes after which the changes are returned
+     * @return changed files and directories; all roots if events were lost
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     */
+    Set<Path> awaitChanges(final Duration debounce) throws InterruptedException
+    {
+        final Set<Path> changes = new LinkedHashSet<>();
+        while (changes.isEmpty())
+        {
+            WatchKey key = this.watchService.take();
+            while (key != null)
+            {
+                collectChanges(key, changes);
+                key = this.watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+        return changes;
+    }
+
+    private void collectChanges(final WatchKey key, final Set<Path> changes)
+    {
+        final Path directory = this.directories.get(key);
+        for (final WatchEvent<?> event : key.pollEvents())
+        {
+            if (event.kind() == OVERFLOW || directory == null)
+            {
+                changes.addAll(this.roots);
+                continue;
+            }
+            final Path changedPath = directory.resolve((Path) event.context());
+            if (isIgnored(changedPath))
+            {
+                continue;
+            }
+            changes.add(changedPath);
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(changedPath, LinkOption.NOFOLLOW_LINKS))
+            {
+                findRoot(changedPath).ifPresent(root -> registerTree(root, changedPath));
+            }
+        }
+        if (!key.reset())
+        {
+            this.directories.remove(key);
+        }
+    }
+
+    private boolean isIgnored(final Path path)
+    {
+        final Path normalized = path.toAbsolutePath().normalize();
+        return this.ignoredPaths.stream().anyMatch(normalized::startsWith);
+    }
+
+    private Optional<Path> findRoot(final Path path)
+    {
+        return this.roots.stream().filter(path::startsWith).findFirst();
+    }
+
+    /**
+     * Get the number of watched directories.
+     *
+     * @return number of watched directories
+     */
+    int getWatchedDirectoryCount()
+    {
+        return this.directories.size();
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            this.watchService.close();
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error closing watch service: " + exception.getMessage(), exception);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.util.*;
+
+import org.itsallcode.openfasttrace.api.core.LinkedSpecificationItem;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.core.SpecificationItemId;
+
+/**
+ * Selects the specification items in the transitive coverage neighborhood of
+ * a set of focus items before linking.
+ * <p>
+ * The traced items are the focus items and the items covering or depending on
+ * them, transitively. Their coverage is complete, because every item below a
+ * traced item is traced as well. For linking the selection adds every item
+ * that a traced item covers or depends on and their references upward,
+ * transitively, so that no link of a traced item is orphaned. These link
+ * targets are not traced: their coverage depends on siblings outside the
+ * focus, e.g. other items covering an item that a focus item covers, which
+ * are not selected. References are matched ignoring the revision, so that
+ * outdated and predated links are kept.
+ */
+final class FocusClosure
+{
+    private final Map<SpecificationItemId, String> focusIds;
+    private final Set<String> missingIds = new LinkedHashSet<>();
+    private final Set<SpecificationItem> tracedItems = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private FocusClosure(final Map<SpecificationItemId, String> focusIds)
+    {
+        this.focusIds = focusIds;
+    }
+
+    /**
+     * Create a closure for the given focus IDs.
+     *
+     * @param ids
+     *            specification item IDs, e.g. {@code req~login~1}; the
+     *            revision is ignored
+     * @return closure
+     * @throws IllegalArgumentException
+     *             if an ID is invalid
+     */
+    static FocusClosure of(final Collection<String> ids)
+    {
+        final Map<SpecificationItemId, String> focusIds = new LinkedHashMap<>();
+        for (final String id : ids)
+        {
+            focusIds.putIfAbsent(key(parse(id.trim())), id.trim());
+        }
+        return new FocusClosure(focusIds);
+    }
+
+    private static SpecificationItemId parse(final String id)
+    {
+        try
+        {
+            return SpecificationItemId.parseId(id);
+        }
+        catch (final RuntimeException exception)
+        {
+            throw new IllegalArgumentException("Invalid focus ID '" + id
+                    + "', expected an ID like 'req~name~1': " + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Select the items to link in the neighborhood of the focus items.
+     *
+     * @param items
+     *            all imported items
+     * @return traced items and their link targets in their original order
+     */
+    List<SpecificationItem> select(final List<SpecificationItem> items)
+    {
+        final Map<SpecificationItemId, List<SpecificationItem>> itemsById = new HashMap<>();
+        final Map<SpecificationItemId, List<SpecificationItem>> referencingItems = new HashMap<>();
+        for (final SpecificationItem item : items)
+        {
+            itemsById.computeIfAbsent(key(item.getId()), id -> new ArrayList<>()).add(item);
+            for (final SpecificationItemId referencedId : getReferencedIds(item))
+            {
+                referencingItems.computeIfAbsent(key(referencedId), id -> new ArrayList<>()).add(item);
+            }
+        }
+        this.missingIds.clear();
+        this.tracedItems.clear();
+        for (final Map.Entry<SpecificationItemId, String> focusId : this.focusIds.entrySet())
+        {
+            final List<SpecificationItem> focusItems = itemsById.getOrDefault(focusId.getKey(), List.of());
+            if (focusItems.isEmpty())
+            {
+                this.missingIds.add(focusId.getValue());
+            }
+            collectDownward(focusItems, referencingItems, this.tracedItems);
+        }
+        final Set<SpecificationItem> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+        collectUpward(new ArrayList<>(this.tracedItems), itemsById, selected);
+        return items.stream().filter(selected::contains).toList();
+    }
+
+    private static void collectUpward(final List<SpecificationItem> start,
+            final Map<SpecificationItemId, List<SpecificationItem>> itemsById, final Set<SpecificationItem> selected)
+    {
+        final Set<SpecificationItem> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Deque<SpecificationItem> queue = new ArrayDeque<>(start);
+        while (!queue.isEmpty())
+        {
+            final SpecificationItem item = queue.removeFirst();
+            if (!visited.add(item))
+            {
+                continue;
+            }
+            selected.add(item);
+            for (final SpecificationItemId referencedId : getReferencedIds(item))
+            {
+                queue.addAll(itemsById.getOrDefault(key(referencedId), List.of()));
+            }
+        }
+    }
+
+    private static void collectDownward(final List<SpecificationItem> start,
+            final Map<SpecificationItemId, List<SpecificationItem>> referencingItems,
+            final Set<SpecificationItem> selected)
+    {
+        final Set<SpecificationItem> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Deque<SpecificationItem> queue = new ArrayDeque<>(start);
+        while (!queue.isEmpty())
+        {
+            final SpecificationItem item = queue.removeFirst();
+            if (!visited.add(item))
+            {
+                continue;
+            }
+            selected.add(item);
+            queue.addAll(referencingItems.getOrDefault(key(item.getId()), List.of()));
+        }
+    }
+
+    /**
+     * Select the linked items to trace, i.e. the linked items without the
+     * link targets added by the last {@link #select(List)}.
+     *
+     * @param linkedItems
+     *            linked items selected by the last {@link #select(List)}
+     * @return focus items and the items covering or depending on them
+     */
+    List<LinkedSpecificationItem> selectTraced(final List<LinkedSpecificationItem> linkedItems)
+    {
+        return linkedItems.stream().filter(linkedItem -> this.tracedItems.contains(linkedItem.getItem())).toList();
+    }
+
+    private static List<SpecificationItemId> getReferencedIds(final SpecificationItem item)
+    {
+        if (item.getDependOnIds().isEmpty())
+        {
+            return item.getCoveredIds();
+        }
+        final List<SpecificationItemId> ids = new ArrayList<>(item.getCoveredIds());
+        ids.addAll(item.getDependOnIds());
+        return ids;
+    }
+
+    private static SpecificationItemId key(final SpecificationItemId id)
+    {
+        return id.toRevisionWildcard();
+    }
+
+    /**
+     * Get the focus IDs that did not match any item in the last selection.
+     *
+     * @return focus IDs without item
+     */
+    Set<String> getMissingIds()
+    {
+        return Collections.unmodifiableSet(this.missingIds);
+    }
+}
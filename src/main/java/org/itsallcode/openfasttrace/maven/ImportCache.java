@@ -0,0 +1,422 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.maven.plugin.logging.Log;
+import org.itsallcode.openfasttrace.api.FilterSettings;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.itsallcode.openfasttrace.api.importer.ImporterContext;
+import org.itsallcode.openfasttrace.api.importer.ImporterFactory;
+import org.itsallcode.openfasttrace.core.VersionProvider;
+import org.itsallcode.openfasttrace.core.serviceloader.InitializingServiceLoader;
+import org.itsallcode.openfasttrace.core.serviceloader.Loader;
+
+/**
+ * Persistent cache of the specification items imported from each file.
+ * <p>
+ * Entries are keyed by the absolute path of the file and validated by file
+ * size and modification time. If the modification time changed, the entry is
+ * still reused when the SHA-256 hash of the content is unchanged.
+ * <p>
+ * The whole cache is discarded when its key changes. The key covers the
+ * OpenFastTrace version, the installed importer plugins and the import
+ * settings, see {@link #createKey(ImportSettings)}.
+ * <p>
+ * With a {@link ChangedScope} the cache also remembers the base commit and
+ * which entries have the content of the base commit. In the next run with the
+ * same base commit these entries are reused for files that are still
+ * unchanged without reading the file system.
+ */
+final class ImportCache
+{
+    private static final String MAGIC = "OFT-IMPORT-CACHE";
+    private static final int FORMAT_VERSION = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Log log;
+    private final Path cacheFile;
+    private final String key;
+    private final ChangedScope changedScope;
+    private final Map<String, Entry> previousEntries;
+    private final Set<String> previousBaseEntries;
+    private final Map<String, Entry> currentEntries = new ConcurrentHashMap<>();
+    private final Set<String> currentBaseEntries = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private ImportCache(final Log log, final Path cacheFile, final String key, final ChangedScope changedScope,
+            final Content content)
+    {
+        this.log = log;
+        this.cacheFile = cacheFile;
+        this.key = key;
+        this.changedScope = changedScope;
+        this.previousEntries = content.entries();
+        this.previousBaseEntries = changedScope != null && changedScope.getBaseCommit().equals(content.baseCommit())
+                ? content.baseEntries()
+                : Set.of();
+    }
+
+    /**
+     * Load the cache from the given file.
+     * <p>
+     * A missing, unreadable or outdated cache file results in an empty cache.
+     *
+     * @param log
+     *            maven log
+     * @param cacheFile
+     *            cache file
+     * @param key
+     *            cache key, see {@link #createKey(ImportSettings)}
+     * @return loaded cache
+     */
+    static ImportCache load(final Log log, final Path cacheFile, final String key)
+    {
+        return load(log, cacheFile, key, null);
+    }
+
+    /**
+     * Load the cache from the given file and reuse entries of files unchanged
+     * since the base commit of the given scope without validating them.
+     *
+     * @param log
+     *            maven log
+     * @param cacheFile
+     *            cache file
+     * @param key
+     *            cache key, see {@link #createKey(ImportSettings)}
+     * @param changedScope
+     *            files changed since the base commit or {@code null} to
+     *            validate all entries
+     * @return loaded cache
+     */
+    static ImportCache load(final Log log, final Path cacheFile, final String key, final ChangedScope changedScope)
+    {
+        return new ImportCache(log, cacheFile, key, changedScope, readContent(log, cacheFile, key));
+    }
+
+    private static Content readContent(final Log log, final Path cacheFile, final String key)
+    {
+        if (!Files.exists(cacheFile))
+        {
+            log.info("No import cache found at " + cacheFile + ", importing all files.");
+            return Content.empty();
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(cacheFile), BUFFER_SIZE)))
+        {
+            if (!MAGIC.equals(in.readUTF()) || in.readInt() != FORMAT_VERSION)
+            {
+                log.info("Import cache " + cacheFile + " has an unknown format, importing all files.");
+                return Content.empty();
+            }
+            if (!key.equals(SpecificationItemCodec.readString(in)))
+            {
+                log.info("OpenFastTrace version, importer plugins or import settings changed."
+                        + " Invalidating import cache " + cacheFile + ".");
+                return Content.empty();
+            }
+            final String baseCommit = SpecificationItemCodec.readString(in);
+            final int count = in.readInt();
+            final Map<String, Entry> entries = new HashMap<>();
+            final Set<String> baseEntries = new HashSet<>();
+            for (int i = 0; i < count; i++)
+            {
+                final String path = SpecificationItemCodec.readString(in);
+                if (in.readBoolean())
+                {
+                    baseEntries.add(path);
+                }
+                entries.put(path, Entry.read(in));
+            }
+            return new Content(baseCommit, entries, baseEntries);
+        }
+        catch (final IOException | RuntimeException exception)
+        {
+            log.warn("Failed to read import cache " + cacheFile + ", importing all files: " + exception.getMessage());
+            return Content.empty();
+        }
+    }
+
+    /**
+     * Get the items of the given file from the cache or import them if the
+     * file is not cached or changed.
+     *
+     * @param file
+     *            file to import
+     * @param importer
+     *            imports the file in case of a cache miss
+     * @return items imported from the file
+     */
+    List<SpecificationItem> getOrImport(final Path file, final Function<Path, List<SpecificationItem>> importer)
+    {
+        final String path = file.toAbsolutePath().normalize().toString();
+        final boolean unchangedSinceBase = this.changedScope != null && !this.changedScope.isChanged(file);
+        if (unchangedSinceBase)
+        {
+            this.currentBaseEntries.add(path);
+            final Entry baseEntry = this.previousEntries.get(path);
+            if (baseEntry != null && this.previousBaseEntries.contains(path))
+            {
+                return hit(path, baseEntry);
+            }
+        }
+        final BasicFileAttributes attributes = readAttributes(file);
+        final long size = attributes.size();
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        final Entry cached = this.previousEntries.get(path);
+        if (cached != null && cached.size() == size && cached.lastModified() == lastModified)
+        {
+            return hit(path, cached);
+        }
+        final String contentHash = hash(file);
+        if (cached != null && cached.size() == size && cached.contentHash().equals(contentHash))
+        {
+            return hit(path, new Entry(size, lastModified, contentHash, cached.items()));
+        }
+        this.misses.incrementAndGet();
+        final List<SpecificationItem> items = importer.apply(file);
+        this.currentEntries.put(path, new Entry(size, lastModified, contentHash, items));
+        return items;
+    }
+
+    private List<SpecificationItem> hit(final String path, final Entry entry)
+    {
+        this.hits.incrementAndGet();
+        this.currentEntries.put(path, entry);
+        return entry.items();
+    }
+
+    /**
+     * Keep the previous entries of all files below the given directory that
+     * were not requested since loading. Used for input roots that another
+     * execution imported, so that their entries are not dropped by
+     * {@link #save()}. Kept entries are validated as usual when they are
+     * requested again.
+     *
+     * @param directory
+     *            directory whose entries are kept
+     */
+    void keepEntriesBelow(final Path directory)
+    {
+        final Path normalizedDirectory = directory.toAbsolutePath().normalize();
+        for (final Map.Entry<String, Entry> entry : this.previousEntries.entrySet())
+        {
+            if (Path.of(entry.getKey()).startsWith(normalizedDirectory)
+                    && this.currentEntries.putIfAbsent(entry.getKey(), entry.getValue()) == null
+                    && this.previousBaseEntries.contains(entry.getKey()))
+            {
+                this.currentBaseEntries.add(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Write the entries of all files requested since loading to the cache file.
+     * Entries of files that were not requested are dropped, unless they were
+     * kept with {@link #keepEntriesBelow(Path)}.
+     */
+    void save()
+    {
+        final Path tempFile = this.cacheFile.resolveSibling(this.cacheFile.getFileName() + ".tmp");
+        try
+        {
+            Files.createDirectories(this.cacheFile.getParent());
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE)))
+            {
+                out.writeUTF(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                SpecificationItemCodec.writeString(out, this.key);
+                SpecificationItemCodec.writeString(out,
+                        this.changedScope == null ? "" : this.changedScope.getBaseCommit());
+                out.writeInt(this.currentEntries.size());
+                for (final Map.Entry<String, Entry> entry : new TreeMap<>(this.currentEntries).entrySet())
+                {
+                    SpecificationItemCodec.writeString(out, entry.getKey());
+                    out.writeBoolean(this.currentBaseEntries.contains(entry.getKey()));
+                    entry.getValue().write(out);
+                }
+            }
+            Files.move(tempFile, this.cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (final IOException exception)
+        {
+            this.log.warn("Failed to write import cache " + this.cacheFile + ": " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Describe the hits and misses since loading.
+     *
+     * @return description for logging
+     */
+    String formatStatistics()
+    {
+        return getHits() + " files unchanged, " + getMisses() + " files imported";
+    }
+
+    /**
+     * Get the number of files served from the cache.
+     *
+     * @return number of cache hits
+     */
+    int getHits()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * Get the number of files that had to be imported.
+     *
+     * @return number of cache misses
+     */
+    int getMisses()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * Create the cache key for the given import settings.
+     *
+     * @param settings
+     *            import settings
+     * @return cache key
+     */
+    static String createKey(final ImportSettings settings)
+    {
+        return "oft: " + new VersionProvider().getVersion()
+                + ", importers: " + getImporterFactories(settings)
+                + ", " + formatConfiguration(settings);
+    }
+
+    /**
+     * Describe the parts of the import settings that influence the imported
+     * items, i.e. the filter settings and path configurations.
+     *
+     * @param settings
+     *            import settings
+     * @return description of the import configuration
+     */
+    static String formatConfiguration(final ImportSettings settings)
+    {
+        return "filters: " + formatFilterSettings(settings.getFilters())
+                + ", path config: " + settings.getPathConfigs();
+    }
+
+    private static List<String> getImporterFactories(final ImportSettings settings)
+    {
+        try (Loader<ImporterFactory> loader = InitializingServiceLoader.load(ImporterFactory.class,
+                new ImporterContext(settings)))
+        {
+            return loader.load()
+                    .map(factory -> factory.getClass().getName() + "@" + getCodeSource(factory.getClass()))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static String getCodeSource(final Class<?> type)
+    {
+        final CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null)
+        {
+            return "unknown";
+        }
+        return Path.of(codeSource.getLocation().getPath()).getFileName().toString();
+    }
+
+    private static String formatFilterSettings(final FilterSettings settings)
+    {
+        return "[artifact types: " + new TreeSet<>(settings.getArtifactTypes())
+                + ", tags: " + new TreeSet<>(settings.getTags())
+                + ", statuses: " + new TreeSet<>(settings.getWantedStatuses())
+                + ", without tags: " + settings.withoutTags() + "]";
+    }
+
+    private static BasicFileAttributes readAttributes(final Path file)
+    {
+        try
+        {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error reading attributes of '" + file + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    /**
+     * Calculate the SHA-256 hash of a file's content.
+     *
+     * @param file
+     *            file to hash
+     * @return hex encoded hash
+     */
+    static String hash(final Path file)
+    {
+        final MessageDigest digest = createDigest();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file))
+        {
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error hashing '" + file + "': " + exception.getMessage(), exception);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (final NoSuchAlgorithmException exception)
+        {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", exception);
+        }
+    }
+
+    private record Content(String baseCommit, Map<String, Entry> entries, Set<String> baseEntries)
+    {
+        private static Content empty()
+        {
+            return new Content("", new HashMap<>(), new HashSet<>());
+        }
+    }
+
+    private record Entry(long size, long lastModified, String contentHash, List<SpecificationItem> items)
+    {
+        private void write(final DataOutput out) throws IOException
+        {
+            out.writeLong(this.size);
+            out.writeLong(this.lastModified);
+            SpecificationItemCodec.writeString(out, this.contentHash);
+            SpecificationItemCodec.writeItems(out, this.items);
+        }
+
+        private static Entry read(final DataInput in) throws IOException
+        {
+            final long size = in.readLong();
+            final long lastModified = in.readLong();
+            final String contentHash = SpecificationItemCodec.readString(in);
+            return new Entry(size, lastModified, contentHash, SpecificationItemCodec.readItems(in));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+
+/**
+ * Imports files in a pipeline that overlaps walking the input roots, reading
+ * and parsing files and collecting the results.
+ * <p>
+ * One thread walks the roots and puts the files into a bounded queue. Worker
+ * threads take files from this queue, import them and put the items into a
+ * second bounded queue. The calling thread collects the items and restores
+ * the order of the files. The bounded queues apply backpressure, so that
+ * walking does not run arbitrarily far ahead of importing.
+ * <p>
+ * This helps most when reading files has a high latency, e.g. on network
+ * volumes, because many files are read at the same time while others are
+ * parsed.
+ */
+final class ImportPipeline
+{
+    private final int workers;
+    private final int queueSize;
+    private int fileCount;
+
+    /**
+     * Create a new pipeline.
+     *
+     * @param workers
+     *            number of worker threads importing files
+     * @param queueSize
+     *            capacity of the queues between the stages
+     */
+    ImportPipeline(final int workers, final int queueSize)
+    {
+        this.workers = Math.max(1, workers);
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    /**
+     * Import all files below the given roots.
+     *
+     * @param roots
+     *            input files and directories
+     * @param inputFilter
+     *            include and exclude patterns
+     * @param supportsFile
+     *            selects the files to import
+     * @param fileImporter
+     *            imports a single file
+     * @return items in the order of the files
+     */
+    List<SpecificationItem> run(final List<Path> roots, final InputFilter inputFilter,
+            final Predicate<Path> supportsFile, final Function<Path, List<SpecificationItem>> fileImporter)
+    {
+        final BlockingQueue<FileTask> files = new ArrayBlockingQueue<>(this.queueSize);
+        final BlockingQueue<Result> results = new ArrayBlockingQueue<>(this.queueSize);
+        final ExecutorService executor = Executors.newFixedThreadPool(this.workers + 1);
+        try
+        {
+            executor.execute(() -> walk(roots, inputFilter, supportsFile, files, results));
+            for (int i = 0; i < this.workers; i++)
+            {
+                executor.execute(() -> importFiles(fileImporter, files, results));
+            }
+            return collect(results);
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing specification items.", exception);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void walk(final List<Path> roots, final InputFilter inputFilter, final Predicate<Path> supportsFile,
+            final BlockingQueue<FileTask> files, final BlockingQueue<Result> results)
+    {
+        final AtomicInteger nextIndex = new AtomicInteger();
+        RuntimeException failure = null;
+        try
+        {
+            SourceFileCollector.walk(roots, inputFilter, file -> {
+                if (supportsFile.test(file))
+                {
+                    put(files, new FileTask(nextIndex.getAndIncrement(), file));
+                }
+            });
+        }
+        catch (final RuntimeException exception)
+        {
+            failure = exception;
+        }
+        try
+        {
+            for (int i = 0; i < this.workers; i++)
+            {
+                files.put(FileTask.END);
+            }
+            results.put(new Result(nextIndex.get(), null, failure, true));
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void importFiles(final Function<Path, List<SpecificationItem>> fileImporter,
+            final BlockingQueue<FileTask> files, final BlockingQueue<Result> results)
+    {
+        try
+        {
+            FileTask task = files.take();
+            while (task != FileTask.END)
+            {
+                results.put(importFile(fileImporter, task));
+                task = files.take();
+            }
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Result importFile(final Function<Path, List<SpecificationItem>> fileImporter,
+            final FileTask task)
+    {
+        try
+        {
+            return new Result(task.index(), fileImporter.apply(task.file()), null, false);
+        }
+        catch (final RuntimeException exception)
+        {
+            return new Result(task.index(), null, exception, false);
+        }
+    }
+
+    private List<SpecificationItem> collect(final BlockingQueue<Result> results) throws InterruptedException
+    {
+        final Map<Integer, List<SpecificationItem>> pending = new HashMap<>();
+        final List<SpecificationItem> items = new ArrayList<>();
+        int nextIndex = 0;
+        int total = -1;
+        while (total < 0 || nextIndex < total)
+        {
+            final Result result = results.take();
+            if (result.error() != null)
+            {
+                throw result.error();
+            }
+            if (result.end())
+            {
+                total = result.index();
+                continue;
+            }
+            pending.put(result.index(), result.items());
+            while (pending.containsKey(nextIndex))
+            {
+                items.addAll(pending.remove(nextIndex));
+                nextIndex++;
+            }
+        }
+        this.fileCount = total;
+        return items;
+    }
+
+    private static void put(final BlockingQueue<FileTask> files, final FileTask task)
+    {
+        try
+        {
+            files.put(task);
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while walking the input roots.", exception);
+        }
+    }
+
+    /**
+     * Get the number of files imported by the last run.
+     *
+     * @return number of files
+     */
+    int getFileCount()
+    {
+        return this.fileCount;
+    }
+
+    private record FileTask(int index, Path file)
+    {
+        private static final FileTask END = new FileTask(-1, null);
+    }
+
+    private record Result(int index, List<SpecificationItem> items, RuntimeException error, boolean end)
+    {
+    }
+}
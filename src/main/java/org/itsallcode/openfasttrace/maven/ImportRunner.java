@@ -0,0 +1,421 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import org.apache.maven.plugin.logging.Log;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+
+/**
+ * Imports specification items file by file.
+ * <p>
+ * Depending on the configuration, files without specification items are
+ * skipped by a {@link ContentPrefilter}, unchanged files are served from an
+ * {@link ImportCache} or a {@link SharedImportCache} and files are imported
+ * concurrently in shards or in an {@link ImportPipeline}. The result always
+ * lists the items in the order of the input files, no matter how many threads
+ * are used.
+ */
+final class ImportRunner
+{
+    private static final int SHARDS_PER_THREAD = 4;
+
+    private final Log log;
+    private final ImportSettings settings;
+    private final Path cacheFile;
+    private final ImportCache cache;
+    private final int threads;
+    private final ContentPrefilter prefilter;
+    private final InputFilter inputFilter;
+    private final SharedImportCache sharedCache;
+    private final long sharedCacheMaxItems;
+    private final ChangedScope changedScope;
+    private final int pipelineQueueSize;
+    private int fileCount;
+
+    private ImportRunner(final Builder builder)
+    {
+        this.log = builder.log;
+        this.settings = builder.settings;
+        this.cacheFile = builder.cacheFile;
+        this.cache = builder.cache;
+        this.threads = builder.threads;
+        this.prefilter = builder.prefilter;
+        this.inputFilter = builder.inputFilter;
+        this.sharedCache = builder.sharedCache;
+        this.sharedCacheMaxItems = builder.sharedCacheMaxItems;
+        this.changedScope = builder.changedScope;
+        this.pipelineQueueSize = builder.pipelineQueueSize;
+    }
+
+    /**
+     * Create a new builder.
+     *
+     * @return builder
+     */
+    static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Import all items from the inputs of the import settings.
+     *
+     * @return imported items
+     */
+    List<SpecificationItem> importItems()
+    {
+        final FileImporter importer = this.sharedCache == null ? new FileImporter(this.settings)
+                : this.sharedCache.getImporter(this.settings);
+        final boolean ownsCache = this.cache == null && this.cacheFile != null;
+        final ImportCache cache = ownsCache
+                ? ImportCache.load(this.log, this.cacheFile, getCacheKey(), this.changedScope)
+                : this.cache;
+        final SharedImportCache.Session sharedSession = this.sharedCache == null ? null
+                : this.sharedCache.openSession(getCacheKey(), this.sharedCacheMaxItems);
+        final Function<Path, List<SpecificationItem>> fileImporter = createFileImporter(importer, this.prefilter,
+                cache, sharedSession);
+        final List<SpecificationItem> items = this.pipelineQueueSize > 0
+                ? importInPipeline(importer, fileImporter)
+                : importCollectedFiles(importer, fileImporter);
+        if (this.prefilter != null)
+        {
+            this.log.info("Content pre-filter skipped " + this.prefilter.formatSkippedFiles() + " of "
+                    + this.fileCount + " files.");
+        }
+        if (sharedSession != null)
+        {
+            this.log.info("Shared import cache: " + sharedSession.formatStatistics() + ".");
+        }
+        if (ownsCache)
+        {
+            cache.save();
+            this.log.info("Import cache: " + cache.formatStatistics() + ".");
+        }
+        return items;
+    }
+
+    /**
+     * Get the number of files handed to the importers by the last call of
+     * {@link #importItems()}, including files skipped by the pre-filter.
+     *
+     * @return number of files
+     */
+    int getFileCount()
+    {
+        return this.fileCount;
+    }
+
+    private String getCacheKey()
+    {
+        return this.sharedCache == null ? ImportCache.createKey(this.settings)
+                : this.sharedCache.getKey(this.settings);
+    }
+
+    /**
+     * Create a function importing single files through the given pre-filter
+     * and caches. Files rejected by the pre-filter result in no items, the
+     * import cache is asked before the shared import cache.
+     *
+     * @param importer
+     *            imports files on cache misses
+     * @param prefilter
+     *            content pre-filter or {@code null}
+     * @param cache
+     *            persistent import cache or {@code null}
+     * @param sharedSession
+     *            session of the shared import cache or {@code null}
+     * @return function importing single files
+     */
+    static Function<Path, List<SpecificationItem>> createFileImporter(final FileImporter importer,
+            final ContentPrefilter prefilter, final ImportCache cache, final SharedImportCache.Session sharedSession)
+    {
+        final Function<Path, List<SpecificationItem>> sharedImporter = sharedSession == null ? importer::importFile
+                : path -> sharedSession.getOrImport(path, importer::importFile);
+        final Function<Path, List<SpecificationItem>> cachedImporter = cache == null ? sharedImporter
+                : path -> cache.getOrImport(path, sharedImporter);
+        return prefilter == null ? cachedImporter
+                : path -> prefilter.accepts(path) ? cachedImporter.apply(path) : List.of();
+    }
+
+    private List<SpecificationItem> importInPipeline(final FileImporter importer,
+            final Function<Path, List<SpecificationItem>> fileImporter)
+    {
+        this.log.info("Importing files in a pipeline using " + this.threads + " threads and queues of "
+                + this.pipelineQueueSize + " files.");
+        final ImportPipeline pipeline = new ImportPipeline(this.threads, this.pipelineQueueSize);
+        final List<SpecificationItem> items = pipeline.run(this.settings.getInputs(), this.inputFilter,
+                importer::supportsFile, fileImporter);
+        this.fileCount = pipeline.getFileCount();
+        return items;
+    }
+
+    private List<SpecificationItem> importCollectedFiles(final FileImporter importer,
+            final Function<Path, List<SpecificationItem>> fileImporter)
+    {
+        final List<Path> files = SourceFileCollector.collect(this.settings.getInputs(), this.inputFilter).stream()
+                .filter(importer::supportsFile)
+                .toList();
+        this.fileCount = files.size();
+        return this.threads > 1
+                ? importInParallel(files, fileImporter)
+                : importSequentially(files, fileImporter);
+    }
+
+    private static List<SpecificationItem> importSequentially(final List<Path> files,
+            final Function<Path, List<SpecificationItem>> fileImporter)
+    {
+        final List<SpecificationItem> items = new ArrayList<>();
+        for (final Path file : files)
+        {
+            items.addAll(fileImporter.apply(file));
+        }
+        return items;
+    }
+
+    private List<SpecificationItem> importInParallel(final List<Path> files,
+            final Function<Path, List<SpecificationItem>> fileImporter)
+    {
+        final List<List<Path>> shards = createShards(files, this.threads * SHARDS_PER_THREAD);
+        this.log.info("Importing " + files.size() + " files in " + shards.size() + " shards using " + this.threads
+                + " threads.");
+        final List<Callable<List<SpecificationItem>>> tasks = shards.stream()
+                .<Callable<List<SpecificationItem>>> map(shard -> () -> importSequentially(shard, fileImporter))
+                .toList();
+        final ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try
+        {
+            final List<SpecificationItem> items = new ArrayList<>();
+            for (final Future<List<SpecificationItem>> future : pool.invokeAll(tasks))
+            {
+                items.addAll(future.get());
+            }
+            return items;
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing specification items.", exception);
+        }
+        catch (final ExecutionException exception)
+        {
+            if (exception.getCause() instanceof final RuntimeException runtimeException)
+            {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to import specification items.", exception.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Split the files into contiguous shards of roughly equal size.
+     *
+     * @param files
+     *            files to split
+     * @param maxShards
+     *            maximum number of shards
+     * @return shards in the order of the files
+     */
+    static List<List<Path>> createShards(final List<Path> files, final int maxShards)
+    {
+        if (files.isEmpty())
+        {
+            return List.of();
+        }
+        final int shardCount = Math.min(files.size(), Math.max(1, maxShards));
+        final List<List<Path>> shards = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++)
+        {
+            final int from = (int) ((long) files.size() * shard / shardCount);
+            final int to = (int) ((long) files.size() * (shard + 1) / shardCount);
+            shards.add(files.subList(from, to));
+        }
+        return shards;
+    }
+
+    /**
+     * Builder for {@link ImportRunner}.
+     */
+    static final class Builder
+    {
+        private Log log;
+        private ImportSettings settings;
+        private Path cacheFile;
+        private ImportCache cache;
+        private int threads = 1;
+        private ContentPrefilter prefilter;
+        private InputFilter inputFilter = InputFilter.none();
+        private SharedImportCache sharedCache;
+        private long sharedCacheMaxItems;
+        private ChangedScope changedScope;
+        private int pipelineQueueSize;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Set the log.
+         *
+         * @param log
+         *            maven log
+         * @return this builder
+         */
+        Builder log(final Log log)
+        {
+            this.log = log;
+            return this;
+        }
+
+        /**
+         * Set the import settings.
+         *
+         * @param settings
+         *            import settings
+         * @return this builder
+         */
+        Builder settings(final ImportSettings settings)
+        {
+            this.settings = settings;
+            return this;
+        }
+
+        /**
+         * Enable the import cache.
+         *
+         * @param cacheFile
+         *            file storing the cache or {@code null} to disable the
+         *            cache
+         * @return this builder
+         */
+        Builder cacheFile(final Path cacheFile)
+        {
+            this.cacheFile = cacheFile;
+            return this;
+        }
+
+        /**
+         * Use an import cache loaded by the caller, e.g. when the inputs are
+         * imported by several runners. The runner neither loads nor saves
+         * this cache, it replaces the cache file.
+         *
+         * @param cache
+         *            loaded import cache or {@code null} to use the cache
+         *            file
+         * @return this builder
+         */
+        Builder cache(final ImportCache cache)
+        {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Set the number of threads used for importing.
+         *
+         * @param threads
+         *            number of threads, {@code 1} imports sequentially
+         * @return this builder
+         */
+        Builder threads(final int threads)
+        {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Skip files that cannot contain specification items.
+         *
+         * @param prefilter
+         *            pre-filter or {@code null} to import all files
+         * @return this builder
+         */
+        Builder prefilter(final ContentPrefilter prefilter)
+        {
+            this.prefilter = prefilter;
+            return this;
+        }
+
+        /**
+         * Set the include and exclude patterns for the files below the
+         * inputs.
+         *
+         * @param inputFilter
+         *            input filter
+         * @return this builder
+         */
+        Builder inputFilter(final InputFilter inputFilter)
+        {
+            this.inputFilter = inputFilter;
+            return this;
+        }
+
+        /**
+         * Use an import cache shared between executions in the same JVM.
+         *
+         * @param sharedCache
+         *            shared cache or {@code null} to disable it
+         * @param maxItems
+         *            maximum number of items kept in the shared cache, see
+         *            {@link SharedImportCache#openSession(String, long)}
+         * @return this builder
+         */
+        Builder sharedCache(final SharedImportCache sharedCache, final long maxItems)
+        {
+            this.sharedCache = sharedCache;
+            this.sharedCacheMaxItems = maxItems;
+            return this;
+        }
+
+        /**
+         * Reuse cached items of files unchanged since the base commit of the
+         * given scope without validating them. Only has an effect with an
+         * import cache.
+         *
+         * @param changedScope
+         *            files changed since the base commit or {@code null} to
+         *            validate all cached files
+         * @return this builder
+         */
+        Builder changedScope(final ChangedScope changedScope)
+        {
+            this.changedScope = changedScope;
+            return this;
+        }
+
+        /**
+         * Import the files in an {@link ImportPipeline} instead of collecting
+         * all files first. The number of workers is set by
+         * {@link #threads(int)}.
+         *
+         * @param queueSize
+         *            capacity of the queues between the pipeline stages,
+         *            {@code 0} disables the pipeline
+         * @return this builder
+         */
+        Builder pipeline(final int queueSize)
+        {
+            this.pipelineQueueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * Build a new runner.
+         *
+         * @return new runner
+         */
+        ImportRunner build()
+        {
+            Objects.requireNonNull(this.log, "log");
+            Objects.requireNonNull(this.settings, "settings");
+            return new ImportRunner(this);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+
+/**
+ * Keeps the items imported from each file in memory and re-imports only the
+ * files that changed.
+ * <p>
+ * On every update the input roots are walked again to find new and deleted
+ * files. Walking is cheap compared to importing, so only new and changed
+ * files are read. The items are always kept in the order of the input files.
+ * Linking modifies the items, so the kept items are never handed out, see
+ * {@link #getItems()}.
+ */
+final class IncrementalImport
+{
+    private final FileImporter importer;
+    private final Function<Path, List<SpecificationItem>> fileImporter;
+    private final List<Path> roots;
+    private final InputFilter inputFilter;
+    private Map<Path, List<SpecificationItem>> itemsByFile = new LinkedHashMap<>();
+
+    /**
+     * Create a new incremental import.
+     *
+     * @param importer
+     *            decides which files are imported
+     * @param fileImporter
+     *            imports single files, e.g. through the import caches, see
+     *            {@link ImportRunner#createFileImporter}
+     * @param roots
+     *            input files and directories
+     * @param inputFilter
+     *            include and exclude patterns
+     */
+    IncrementalImport(final FileImporter importer, final Function<Path, List<SpecificationItem>> fileImporter,
+            final List<Path> roots, final InputFilter inputFilter)
+    {
+        this.importer = importer;
+        this.fileImporter = fileImporter;
+        this.roots = roots;
+        this.inputFilter = inputFilter;
+    }
+
+    /**
+     * Import all files.
+     *
+     * @return number of imported files
+     */
+    int importAll()
+    {
+        return update(file -> true);
+    }
+
+    /**
+     * Re-import the changed files, import new files and drop the items of
+     * deleted files.
+     *
+     * @param changedPaths
+     *            changed files; a directory marks all files below it as
+     *            changed
+     * @return number of imported files
+     */
+    int update(final Collection<Path> changedPaths)
+    {
+        final List<Path> normalizedPaths = changedPaths.stream()
+                .map(path -> path.toAbsolutePath().normalize())
+                .toList();
+        return update(file -> normalizedPaths.stream().anyMatch(file::startsWith));
+    }
+
+    private int update(final Predicate<Path> changed)
+    {
+        final Map<Path, List<SpecificationItem>> updatedItems = new LinkedHashMap<>();
+        int importedFiles = 0;
+        for (final Path file : SourceFileCollector.collect(this.roots, this.inputFilter))
+        {
+            final Path normalizedFile = file.toAbsolutePath().normalize();
+            final List<SpecificationItem> previousItems = this.itemsByFile.get(normalizedFile);
+            if (previousItems != null && !changed.test(normalizedFile))
+            {
+                updatedItems.put(normalizedFile, previousItems);
+            }
+            else if (this.importer.supportsFile(file))
+            {
+                updatedItems.put(normalizedFile, this.fileImporter.apply(file));
+                importedFiles++;
+            }
+        }
+        this.itemsByFile = updatedItems;
+        return importedFiles;
+    }
+
+    /**
+     * Get copies of the items of all files in the order of the input files.
+     * Linking the copies does not change the items used for the next trace.
+     *
+     * @return copies of all items
+     */
+    List<SpecificationItem> getItems()
+    {
+        final List<SpecificationItem> items = new ArrayList<>();
+        this.itemsByFile.values().forEach(fileItems -> items.addAll(SpecificationItemCopy.copyAll(fileItems)));
+        return items;
+    }
+
+    /**
+     * Get the number of imported files.
+     *
+     * @return number of files
+     */
+    int getFileCount()
+    {
+        return this.itemsByFile.size();
+    }
+}
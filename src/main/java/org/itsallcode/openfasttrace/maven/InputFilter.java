@@ -0,0 +1,231 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Include and exclude glob patterns for the files below the traced roots.
+ * <p>
+ * Patterns are relative to the root they are applied to, e.g.
+ * {@code **}{@code /*.png} or {@code fixtures/**}. Exclude patterns can be
+ * configured for all roots or for the roots of one {@link RootType}. A
+ * directory is not walked at all if it matches an exclude pattern or an
+ * exclude pattern of the form {@code dir/**}. Like in Ant patterns, a leading
+ * {@code **}{@code /} also matches zero directories.
+ * <p>
+ * Files below a root that is nested inside the walked root, e.g. a source
+ * root {@code src/main/java} inside a resource root {@code src/main}, are
+ * judged by the nested root: patterns are relative to it and the exclude
+ * patterns of its type apply. This gives the same result as walking the
+ * nested root on its own, see {@link InputRoots}.
+ */
+final class InputFilter
+{
+    private static final InputFilter NONE = new InputFilter(List.of(), List.of(), Map.of(), Map.of());
+
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final Map<RootType, List<String>> typeExcludes;
+    private final Map<Path, RootType> rootTypes;
+    private final List<PathMatcher> includeMatchers;
+    private final List<PathMatcher> excludeMatchers;
+    private final Map<RootType, List<PathMatcher>> typeExcludeMatchers;
+
+    /**
+     * Create a new filter.
+     *
+     * @param includes
+     *            files must match at least one of these patterns, an empty
+     *            list includes all files
+     * @param excludes
+     *            files matching one of these patterns are excluded from all
+     *            roots
+     * @param typeExcludes
+     *            additional exclude patterns by root type
+     * @param rootTypes
+     *            type of each root
+     */
+    InputFilter(final List<String> includes, final List<String> excludes,
+            final Map<RootType, List<String>> typeExcludes, final Map<Path, RootType> rootTypes)
+    {
+        this.includes = List.copyOf(includes);
+        this.excludes = List.copyOf(excludes);
+        this.typeExcludes = new EnumMap<>(RootType.class);
+        this.typeExcludeMatchers = new EnumMap<>(RootType.class);
+        typeExcludes.forEach((type, patterns) -> {
+            this.typeExcludes.put(type, List.copyOf(patterns));
+            this.typeExcludeMatchers.put(type, createExcludeMatchers(patterns));
+        });
+        this.rootTypes = new HashMap<>();
+        rootTypes.forEach((root, type) -> this.rootTypes.put(normalize(root), type));
+        this.includeMatchers = includes.stream().flatMap(pattern -> createMatchers(pattern).stream()).toList();
+        this.excludeMatchers = createExcludeMatchers(excludes);
+    }
+
+    /**
+     * Get a filter that accepts all files.
+     *
+     * @return filter without patterns
+     */
+    static InputFilter none()
+    {
+        return NONE;
+    }
+
+    private static List<PathMatcher> createExcludeMatchers(final List<String> patterns)
+    {
+        final List<PathMatcher> matchers = new ArrayList<>();
+        for (final String pattern : patterns)
+        {
+            matchers.addAll(createMatchers(pattern));
+            if (pattern.endsWith("/**"))
+            {
+                matchers.addAll(createMatchers(pattern.substring(0, pattern.length() - "/**".length())));
+            }
+        }
+        return matchers;
+    }
+
+    private static List<PathMatcher> createMatchers(final String pattern)
+    {
+        final FileSystem fileSystem = FileSystems.getDefault();
+        if (pattern.startsWith("**/"))
+        {
+            return List.of(fileSystem.getPathMatcher("glob:" + pattern),
+                    fileSystem.getPathMatcher("glob:" + pattern.substring("**/".length())));
+        }
+        return List.of(fileSystem.getPathMatcher("glob:" + pattern));
+    }
+
+    /**
+     * Check if any pattern is configured.
+     *
+     * @return {@code true} if this filter does not exclude anything
+     */
+    boolean isEmpty()
+    {
+        return this.includes.isEmpty() && this.excludes.isEmpty()
+                && this.typeExcludes.values().stream().allMatch(List::isEmpty);
+    }
+
+    /**
+     * Check if the given directory below a root must be walked.
+     *
+     * @param root
+     *            traced root
+     * @param directory
+     *            directory below the root
+     * @return {@code true} if the directory must be walked
+     */
+    boolean acceptDirectory(final Path root, final Path directory)
+    {
+        final Path normalizedDirectory = normalize(directory);
+        final Path effectiveRoot = getMostSpecificRoot(normalize(root), normalizedDirectory);
+        if (normalizedDirectory.equals(effectiveRoot))
+        {
+            return true;
+        }
+        return !isExcluded(effectiveRoot, effectiveRoot.relativize(normalizedDirectory))
+                || containsNestedRoot(effectiveRoot, normalizedDirectory);
+    }
+
+    /**
+     * Check if the given file below a root must be imported.
+     *
+     * @param root
+     *            traced root
+     * @param file
+     *            file below the root
+     * @return {@code true} if the file must be imported
+     */
+    boolean acceptFile(final Path root, final Path file)
+    {
+        final Path normalizedFile = normalize(file);
+        final Path effectiveRoot = getMostSpecificRoot(normalize(root), normalizedFile);
+        if (normalizedFile.equals(effectiveRoot))
+        {
+            return true;
+        }
+        final Path relativePath = effectiveRoot.relativize(normalizedFile);
+        if (isExcluded(effectiveRoot, relativePath))
+        {
+            return false;
+        }
+        return this.includeMatchers.isEmpty() || matchesAny(this.includeMatchers, relativePath);
+    }
+
+    private Path getMostSpecificRoot(final Path root, final Path path)
+    {
+        if (this.rootTypes.isEmpty())
+        {
+            return root;
+        }
+        for (Path candidate = path; candidate != null && !candidate.equals(root); candidate = candidate.getParent())
+        {
+            if (this.rootTypes.containsKey(candidate) && candidate.startsWith(root))
+            {
+                return candidate;
+            }
+        }
+        return root;
+    }
+
+    private boolean containsNestedRoot(final Path root, final Path directory)
+    {
+        for (final Path nestedRoot : this.rootTypes.keySet())
+        {
+            if (!nestedRoot.equals(directory) && nestedRoot.startsWith(directory) && nestedRoot.startsWith(root))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcluded(final Path root, final Path relativePath)
+    {
+        if (matchesAny(this.excludeMatchers, relativePath))
+        {
+            return true;
+        }
+        final RootType type = this.rootTypes.get(root);
+        return type != null && matchesAny(this.typeExcludeMatchers.getOrDefault(type, List.of()), relativePath);
+    }
+
+    private static boolean matchesAny(final List<PathMatcher> matchers, final Path path)
+    {
+        for (final PathMatcher matcher : matchers)
+        {
+            if (matcher.matches(path))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Path normalize(final Path path)
+    {
+        return path.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[includes: " + this.includes + ", excludes: " + this.excludes + ", excludes by root type: "
+                + this.typeExcludes + "]";
+    }
+
+    /**
+     * Type of a traced root.
+     */
+    enum RootType
+    {
+        /** Compile and test compile source roots. */
+        SOURCES,
+        /** Resource and test resource directories. */
+        RESOURCES,
+        /** The {@code doc} directory of a project. */
+        DOC
+    }
+}
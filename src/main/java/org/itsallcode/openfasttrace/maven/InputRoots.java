@@ -0,0 +1,125 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Canonical list of the roots to import.
+ * <p>
+ * Roots are resolved to their real path, so that symbolic links and
+ * relative segments like {@code ..} do not hide duplicates. A root is dropped
+ * if it is a duplicate of another root or if it is nested inside another
+ * directory root, e.g. a resource directory {@code src/main/resources} next to
+ * a resource directory {@code src/main}. The files of dropped roots would
+ * otherwise be imported twice. The order of the remaining roots is kept.
+ * <p>
+ * Only the files are de-duplicated: the {@link InputFilter} still judges the
+ * files of a nested root by that root, so they keep its type and its base
+ * for relative patterns.
+ */
+final class InputRoots
+{
+    private final List<Path> roots;
+    private final List<Path> droppedRoots;
+
+    private InputRoots(final List<Path> roots, final List<Path> droppedRoots)
+    {
+        this.roots = roots;
+        this.droppedRoots = droppedRoots;
+    }
+
+    /**
+     * Canonicalize the given roots and remove duplicate and nested roots.
+     *
+     * @param roots
+     *            input files or directories
+     * @return canonical roots
+     */
+    static InputRoots canonicalize(final List<Path> roots)
+    {
+        final Set<Path> canonicalRoots = new LinkedHashSet<>();
+        final List<Path> droppedRoots = new ArrayList<>();
+        for (final Path root : roots)
+        {
+            final Path canonicalRoot = toRealPath(root);
+            if (!canonicalRoots.add(canonicalRoot))
+            {
+                droppedRoots.add(canonicalRoot);
+            }
+        }
+        final List<Path> directories = canonicalRoots.stream().filter(Files::isDirectory).toList();
+        final List<Path> remainingRoots = new ArrayList<>();
+        for (final Path root : canonicalRoots)
+        {
+            if (isNestedInAny(root, directories))
+            {
+                droppedRoots.add(root);
+            }
+            else
+            {
+                remainingRoots.add(root);
+            }
+        }
+        return new InputRoots(List.copyOf(remainingRoots), List.copyOf(droppedRoots));
+    }
+
+    private static boolean isNestedInAny(final Path root, final List<Path> directories)
+    {
+        for (final Path directory : directories)
+        {
+            if (!root.equals(directory) && root.startsWith(directory))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the real path of a root. Roots that do not exist are only
+     * normalized.
+     *
+     * @param root
+     *            input file or directory
+     * @return real path
+     */
+    static Path toRealPath(final Path root)
+    {
+        if (!Files.exists(root))
+        {
+            return AbstractTraceMojo.normalize(root);
+        }
+        try
+        {
+            return root.toRealPath();
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error resolving real path of '" + root + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    /**
+     * Get the roots to import.
+     *
+     * @return canonical roots without duplicates and nested roots
+     */
+    List<Path> getRoots()
+    {
+        return this.roots;
+    }
+
+    /**
+     * Get the roots that were dropped because they are duplicates or nested
+     * inside another root.
+     *
+     * @return dropped roots
+     */
+    List<Path> getDroppedRoots()
+    {
+        return this.droppedRoots;
+    }
+}
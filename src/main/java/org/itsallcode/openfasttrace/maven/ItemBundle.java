@@ -0,0 +1,122 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.itsallcode.openfasttrace.api.FilterSettings;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.importer.SpecificationListBuilder;
+
+/**
+ * Bundle of the specification items imported from one module.
+ * <p>
+ * Bundles are written by the {@code bundle} goal and attached to the build
+ * with classifier {@value #CLASSIFIER} and type {@value #TYPE}. Downstream
+ * projects load the items from the bundles of their dependencies instead of
+ * importing the sources of the dependencies again.
+ * <p>
+ * A bundle is a GZIP compressed stream with a header, the ID of the project
+ * that created it and the items encoded with {@link SpecificationItemCodec}.
+ */
+final class ItemBundle
+{
+    /** Classifier of attached bundles. */
+    static final String CLASSIFIER = "oft-items";
+    /** Type and extension of attached bundles. */
+    static final String TYPE = "oftb";
+
+    private static final String MAGIC = "OFT-ITEM-BUNDLE";
+    private static final int FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ItemBundle()
+    {
+        // not instantiable
+    }
+
+    /**
+     * Write a bundle.
+     *
+     * @param file
+     *            bundle file
+     * @param projectId
+     *            ID of the project the items belong to
+     * @param items
+     *            items to write
+     */
+    static void write(final Path file, final String projectId, final List<SpecificationItem> items)
+    {
+        final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try
+        {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE), BUFFER_SIZE)))
+            {
+                out.writeUTF(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                SpecificationItemCodec.writeString(out, projectId);
+                SpecificationItemCodec.writeItems(out, items);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error writing item bundle '" + file + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    /**
+     * Read the items of a bundle that match the given filter settings.
+     *
+     * @param file
+     *            bundle file
+     * @param filterSettings
+     *            filter settings of the consuming project
+     * @return matching items
+     */
+    static List<SpecificationItem> read(final Path file, final FilterSettings filterSettings)
+    {
+        final SpecificationListBuilder builder = SpecificationListBuilder.createWithFilter(filterSettings);
+        read(file).forEach(builder::addSpecificationItem);
+        return builder.build();
+    }
+
+    /**
+     * Read all items of a bundle.
+     *
+     * @param file
+     *            bundle file
+     * @return items
+     */
+    static List<SpecificationItem> read(final Path file)
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE)))
+        {
+            if (!MAGIC.equals(in.readUTF()))
+            {
+                throw new IOException("not an item bundle");
+            }
+            final int formatVersion = in.readInt();
+            if (formatVersion != FORMAT_VERSION)
+            {
+                throw new IOException("unsupported format version " + formatVersion + ", expected "
+                        + FORMAT_VERSION);
+            }
+            SpecificationItemCodec.readString(in);
+            return SpecificationItemCodec.readItems(in);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error reading item bundle '" + file + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+}
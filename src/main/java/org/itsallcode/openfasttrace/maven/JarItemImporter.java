@@ -0,0 +1,140 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.itsallcode.openfasttrace.api.importer.input.InputFile;
+
+/**
+ * Imports the specification items packaged in the
+ * {@value #DIRECTORY} directory of JAR files.
+ * <p>
+ * The JARs are opened as zip {@link FileSystem}s, so only the central
+ * directory and the entries below {@value #DIRECTORY} are read and nothing is
+ * extracted to disk. Entries ending with {@code .}{@value ItemBundle#TYPE} are
+ * read as {@link ItemBundle}s, all other entries are imported with the
+ * importers OpenFastTrace discovers on the class path. The filter settings
+ * are applied to both.
+ */
+final class JarItemImporter
+{
+    /** Directory inside the JARs containing the specification items. */
+    static final String DIRECTORY = "META-INF/openfasttrace";
+
+    private final ImportSettings settings;
+    private final FileImporter fileImporter;
+
+    /**
+     * Create a new importer.
+     *
+     * @param settings
+     *            import settings, only the filter settings are used
+     */
+    JarItemImporter(final ImportSettings settings)
+    {
+        this.settings = settings;
+        this.fileImporter = new FileImporter(settings);
+    }
+
+    /**
+     * Import the specification items of a JAR.
+     *
+     * @param jar
+     *            JAR file
+     * @return items in the order of the entry names, empty if the JAR has no
+     *         {@value #DIRECTORY} directory
+     */
+    List<SpecificationItem> importJar(final Path jar)
+    {
+        try (FileSystem fileSystem = FileSystems.newFileSystem(jar))
+        {
+            final Path directory = fileSystem.getPath(DIRECTORY);
+            if (!Files.isDirectory(directory))
+            {
+                return List.of();
+            }
+            final List<SpecificationItem> items = new ArrayList<>();
+            for (final Path entry : listEntries(directory))
+            {
+                items.addAll(importEntry(jar, entry));
+            }
+            return items;
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error reading specification items from '" + jar + "': "
+                    + exception.getMessage(), exception);
+        }
+    }
+
+    private static List<Path> listEntries(final Path directory) throws IOException
+    {
+        try (Stream<Path> entries = Files.walk(directory))
+        {
+            return entries.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+
+    private List<SpecificationItem> importEntry(final Path jar, final Path entry)
+    {
+        if (entry.getFileName().toString().endsWith("." + ItemBundle.TYPE))
+        {
+            return ItemBundle.read(entry, this.settings.getFilters());
+        }
+        final InputFile input = new JarEntryInput(jar, entry);
+        return this.fileImporter.supportsInput(input) ? this.fileImporter.importInput(input) : List.of();
+    }
+
+    /**
+     * Input for an entry of a JAR. The path shown in reports names the JAR and
+     * the entry.
+     */
+    private static final class JarEntryInput implements InputFile
+    {
+        private final Path jar;
+        private final Path entry;
+
+        private JarEntryInput(final Path jar, final Path entry)
+        {
+            this.jar = jar;
+            this.entry = entry;
+        }
+
+        @Override
+        public BufferedReader createReader() throws IOException
+        {
+            return new BufferedReader(
+                    new InputStreamReader(Files.newInputStream(this.entry), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String getPath()
+        {
+            return this.jar + "!" + this.entry.toAbsolutePath();
+        }
+
+        @Override
+        public boolean isRealFile()
+        {
+            return false;
+        }
+
+        @Override
+        public Path toPath()
+        {
+            return this.entry;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getPath();
+        }
+    }
+}
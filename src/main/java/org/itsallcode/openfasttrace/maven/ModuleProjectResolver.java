@@ -0,0 +1,221 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.*;
+
+/**
+ * Resolves the {@link MavenProject}s of the modules declared by a project.
+ * <p>
+ * Modules that are part of the current reactor are taken from the session.
+ * These projects are already built and contain source roots added by other
+ * plugins in earlier phases. Only modules outside the reactor are built with
+ * the {@link ProjectBuilder}. Built projects are cached per POM for the whole
+ * session.
+ * <p>
+ * Building module projects can be done in parallel, see
+ * {@link #resolveModuleTree(MavenProject)}.
+ */
+final class ModuleProjectResolver
+{
+    private static final String SESSION_CACHE_KEY = ModuleProjectResolver.class.getName() + ".builtProjects";
+
+    private final Log log;
+    private final ProjectBuilder projectBuilder;
+    private final MavenSession session;
+    private final int threads;
+    private final Map<Path, MavenProject> reactorProjects;
+    private final Map<Path, MavenProject> builtProjects;
+
+    /**
+     * Create a new resolver.
+     *
+     * @param log
+     *            maven log
+     * @param projectBuilder
+     *            builder used for modules that are not part of the reactor
+     * @param session
+     *            current session or {@code null} if not available
+     * @param threads
+     *            number of threads used for building module projects
+     */
+    ModuleProjectResolver(final Log log, final ProjectBuilder projectBuilder, final MavenSession session,
+            final int threads)
+    {
+        this.log = log;
+        this.projectBuilder = projectBuilder;
+        this.session = session;
+        this.threads = threads;
+        this.reactorProjects = getReactorProjects(session);
+        this.builtProjects = getBuiltProjectsCache(session);
+    }
+
+    private static Map<Path, MavenProject> getReactorProjects(final MavenSession session)
+    {
+        final Map<Path, MavenProject> projects = new HashMap<>();
+        if (session == null)
+        {
+            return projects;
+        }
+        final List<MavenProject> allProjects = session.getAllProjects() != null ? session.getAllProjects()
+                : session.getProjects();
+        if (allProjects == null)
+        {
+            return projects;
+        }
+        for (final MavenProject project : allProjects)
+        {
+            if (project.getFile() != null)
+            {
+                projects.put(normalize(project.getFile().toPath()), project);
+            }
+        }
+        return projects;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Path, MavenProject> getBuiltProjectsCache(final MavenSession session)
+    {
+        if (session == null || session.getRepositorySession() == null)
+        {
+            return new ConcurrentHashMap<>();
+        }
+        return (Map<Path, MavenProject>) session.getRepositorySession().getData()
+                .computeIfAbsent(SESSION_CACHE_KEY, ConcurrentHashMap::new);
+    }
+
+    /**
+     * Resolve all modules below the given project, building sibling modules
+     * in parallel.
+     * <p>
+     * The module tree is resolved level by level. Resolved projects are cached,
+     * so that subsequent calls to {@link #getModules(MavenProject)} return
+     * immediately. This does nothing if only one thread is configured.
+     *
+     * @param root
+     *            root project
+     */
+    void resolveModuleTree(final MavenProject root)
+    {
+        if (this.threads <= 1 || root.getModules().isEmpty())
+        {
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try
+        {
+            List<MavenProject> level = List.of(root);
+            while (!level.isEmpty())
+            {
+                level = resolveModulesInParallel(executor, level);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<MavenProject> resolveModulesInParallel(final ExecutorService executor,
+            final List<MavenProject> parents)
+    {
+        final List<Callable<MavenProject>> tasks = new ArrayList<>();
+        for (final MavenProject parent : parents)
+        {
+            for (final String moduleName : parent.getModules())
+            {
+                tasks.add(() -> getModule(parent, moduleName));
+            }
+        }
+        try
+        {
+            final List<MavenProject> modules = new ArrayList<>(tasks.size());
+            for (final Future<MavenProject> future : executor.invokeAll(tasks))
+            {
+                modules.add(future.get());
+            }
+            return modules;
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while resolving sub modules.", exception);
+        }
+        catch (final ExecutionException exception)
+        {
+            if (exception.getCause() instanceof final RuntimeException runtimeException)
+            {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to resolve sub modules.", exception.getCause());
+        }
+    }
+
+    /**
+     * Get the direct modules of the given project in declaration order.
+     *
+     * @param project
+     *            parent project
+     * @return module projects
+     */
+    List<MavenProject> getModules(final MavenProject project)
+    {
+        return project.getModules().stream()
+                .map(moduleName -> getModule(project, moduleName))
+                .toList();
+    }
+
+    private MavenProject getModule(final MavenProject parent, final String moduleName)
+    {
+        final Path pomFile = getPomOfModule(parent, moduleName);
+        final MavenProject reactorProject = this.reactorProjects.get(pomFile);
+        if (reactorProject != null)
+        {
+            this.log.debug("Using reactor project for module " + pomFile);
+            return reactorProject;
+        }
+        final MavenProject builtProject = this.builtProjects.get(pomFile);
+        if (builtProject != null)
+        {
+            return builtProject;
+        }
+        final MavenProject project = readProject(pomFile);
+        final MavenProject concurrentlyBuiltProject = this.builtProjects.putIfAbsent(pomFile, project);
+        return concurrentlyBuiltProject != null ? concurrentlyBuiltProject : project;
+    }
+
+    private static Path getPomOfModule(final MavenProject parent, final String moduleName)
+    {
+        final Path modulePath = parent.getBasedir().toPath().resolve(moduleName);
+        final Path pomFile = Files.isRegularFile(modulePath) ? modulePath : modulePath.resolve("pom.xml");
+        return normalize(pomFile);
+    }
+
+    private MavenProject readProject(final Path pomFile)
+    {
+        this.log.debug("Building project for module " + pomFile);
+        try
+        {
+            // The session's request is mutable and modules are built concurrently, so each build gets a copy
+            final ProjectBuildingRequest request = new DefaultProjectBuildingRequest(
+                    this.session.getProjectBuildingRequest());
+            final ProjectBuildingResult build = this.projectBuilder.build(pomFile.toFile(), request);
+            return build.getProject();
+        }
+        catch (final ProjectBuildingException exception)
+        {
+            throw new IllegalStateException(
+                    "Failed to read sub module \"" + pomFile + "\".", exception);
+        }
+    }
+
+    private static Path normalize(final Path path)
+    {
+        return path.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,464 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import org.itsallcode.openfasttrace.api.DetailsSectionDisplay;
+import org.itsallcode.openfasttrace.api.ReportSettings;
+import org.itsallcode.openfasttrace.api.core.*;
+import org.itsallcode.openfasttrace.api.report.ReportVerbosity;
+
+/**
+ * Writes an HTML tracing report split into an index page and pages of at
+ * most a fixed number of items.
+ * <p>
+ * The index page shows the item and defect counts per artifact type, links
+ * to the pages and lists the first defects. The items of each artifact type
+ * are sorted by ID and split into pages, which are written to a directory
+ * next to the index page, named like the index page without extension. Each
+ * page is streamed to its file, so only the page assignment of the items is
+ * kept in memory. The details of an item are stored in an inert
+ * {@code <template>} and only rendered when the item is expanded.
+ * <p>
+ * The report verbosity selects the listed items: summary levels only write
+ * the index page, failure levels list the defect items and {@code ALL} lists
+ * all items. The names of the written pages are stored in a manifest in the
+ * page directory, so that the next report only deletes its own pages.
+ */
+final class PagedHtmlReport
+{
+    private static final int MAX_INDEX_DEFECTS = 1000;
+    private static final String PAGE_EXTENSION = ".html";
+    private static final String MANIFEST_FILE = "pages.txt";
+    private static final String STYLE = "<style>"
+            + "body{font-family:sans-serif;margin:1em 2em}"
+            + "table{border-collapse:collapse}td,th{border:1px solid #ccc;padding:.2em .6em;text-align:left}"
+            + "details{margin:.2em 0}summary{cursor:pointer}"
+            + ".ok>summary::before{content:'\\2714  ';color:green}"
+            + ".defect>summary::before{content:'\\2718  ';color:red}"
+            + ".text{white-space:pre-wrap}dl{margin:.3em 1.5em}dt{font-weight:bold}"
+            + "</style>\n";
+    private static final String SCRIPT = "<script>document.addEventListener('toggle',function(e){"
+            + "var t=e.target.querySelector(':scope>template');"
+            + "if(e.target.open&&t){e.target.appendChild(t.content.cloneNode(true));t.remove();}},true);"
+            + "</script>\n";
+
+    private final int pageSize;
+
+    /**
+     * Create a new paged report.
+     *
+     * @param pageSize
+     *            maximum number of items per page
+     */
+    PagedHtmlReport(final int pageSize)
+    {
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Get the directory containing the pages of a report.
+     *
+     * @param indexFile
+     *            index page of the report
+     * @return page directory
+     */
+    static Path getPageDirectory(final Path indexFile)
+    {
+        final String fileName = indexFile.getFileName().toString();
+        final int extension = fileName.lastIndexOf('.');
+        return indexFile.resolveSibling(extension > 0 ? fileName.substring(0, extension) : fileName + "-pages");
+    }
+
+    /**
+     * Get the files written to the page directory of a report, i.e. the
+     * manifest and the pages listed in it.
+     *
+     * @param indexFile
+     *            index page of the report
+     * @return manifest and page files or an empty list if the report has no
+     *         manifest
+     */
+    static List<Path> getPageFiles(final Path indexFile)
+    {
+        final Path manifest = getPageDirectory(indexFile).resolve(MANIFEST_FILE);
+        if (!Files.isRegularFile(manifest))
+        {
+            return List.of();
+        }
+        final List<Path> files = new ArrayList<>();
+        files.add(manifest);
+        files.addAll(readManifest(manifest));
+        return files;
+    }
+
+    /**
+     * Write the report.
+     *
+     * @param trace
+     *            trace result
+     * @param indexFile
+     *            index page, the pages are written to
+     *            {@link #getPageDirectory(Path)}
+     * @param settings
+     *            report settings, the verbosity, origin and details section
+     *            display are used
+     */
+    void write(final Trace trace, final Path indexFile, final ReportSettings settings)
+    {
+        final PageContent content = PageContent.of(settings.getReportVerbosity());
+        final Map<String, List<LinkedSpecificationItem>> itemsByType = groupByType(trace.getItems());
+        final Map<String, List<LinkedSpecificationItem>> listedItemsByType = selectListedItems(itemsByType,
+                content);
+        final Map<LinkedSpecificationItem, String> pages = assignPages(listedItemsByType);
+        final Path pageDirectory = getPageDirectory(indexFile);
+        prepareDirectory(pageDirectory);
+        final List<String> pageNames = new ArrayList<>();
+        for (final Map.Entry<String, List<LinkedSpecificationItem>> type : listedItemsByType.entrySet())
+        {
+            final List<LinkedSpecificationItem> items = type.getValue();
+            final int pageCount = countPages(items.size());
+            for (int page = 0; page < pageCount; page++)
+            {
+                final List<LinkedSpecificationItem> pageItems = items.subList(page * this.pageSize,
+                        Math.min(items.size(), (page + 1) * this.pageSize));
+                final String pageName = pages.get(pageItems.get(0));
+                final int pageNumber = page + 1;
+                writeFile(pageDirectory.resolve(pageName), writer -> writePage(writer, indexFile, type.getKey(),
+                        pageNumber, pageCount, pageItems, pages, settings, content.showsDetails()));
+                pageNames.add(pageName);
+            }
+        }
+        writeFile(pageDirectory.resolve(MANIFEST_FILE), writer -> writeManifest(writer, pageNames));
+        writeFile(indexFile, writer -> writeIndex(writer, trace, pageDirectory, itemsByType, listedItemsByType,
+                pages, content));
+    }
+
+    private static Map<String, List<LinkedSpecificationItem>> selectListedItems(
+            final Map<String, List<LinkedSpecificationItem>> itemsByType, final PageContent content)
+    {
+        final Map<String, List<LinkedSpecificationItem>> listedItemsByType = new TreeMap<>();
+        for (final Map.Entry<String, List<LinkedSpecificationItem>> type : itemsByType.entrySet())
+        {
+            final List<LinkedSpecificationItem> listedItems = type.getValue().stream().filter(content::lists)
+                    .toList();
+            if (!listedItems.isEmpty())
+            {
+                listedItemsByType.put(type.getKey(), listedItems);
+            }
+        }
+        return listedItemsByType;
+    }
+
+    private static Map<String, List<LinkedSpecificationItem>> groupByType(final List<LinkedSpecificationItem> items)
+    {
+        final Map<String, List<LinkedSpecificationItem>> itemsByType = new TreeMap<>();
+        for (final LinkedSpecificationItem item : items)
+        {
+            itemsByType.computeIfAbsent(item.getArtifactType(), type -> new ArrayList<>()).add(item);
+        }
+        itemsByType.values().forEach(typeItems -> typeItems.sort(Comparator.comparing(LinkedSpecificationItem::getId)));
+        return itemsByType;
+    }
+
+    private Map<LinkedSpecificationItem, String> assignPages(
+            final Map<String, List<LinkedSpecificationItem>> itemsByType)
+    {
+        final Map<LinkedSpecificationItem, String> pages = new IdentityHashMap<>();
+        final Set<String> usedPrefixes = new HashSet<>();
+        for (final Map.Entry<String, List<LinkedSpecificationItem>> type : itemsByType.entrySet())
+        {
+            final String prefix = createUniquePrefix(type.getKey(), usedPrefixes) + "-";
+            final List<LinkedSpecificationItem> items = type.getValue();
+            for (int index = 0; index < items.size(); index++)
+            {
+                pages.put(items.get(index), prefix + (index / this.pageSize + 1) + PAGE_EXTENSION);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Replace characters that are not allowed in file names and append a
+     * number if another artifact type already got the same name, ignoring
+     * case for case-insensitive file systems. The page number is appended
+     * after the last dash, so pages of different prefixes never collide.
+     */
+    private static String createUniquePrefix(final String artifactType, final Set<String> usedPrefixes)
+    {
+        final String sanitized = artifactType.replaceAll("[^A-Za-z0-9_-]", "_");
+        String prefix = sanitized;
+        for (int suffix = 2; !usedPrefixes.add(prefix.toLowerCase(Locale.ROOT)); suffix++)
+        {
+            prefix = sanitized + "_" + suffix;
+        }
+        return prefix;
+    }
+
+    private int countPages(final int itemCount)
+    {
+        return (itemCount + this.pageSize - 1) / this.pageSize;
+    }
+
+    private static void prepareDirectory(final Path pageDirectory)
+    {
+        try
+        {
+            Files.createDirectories(pageDirectory);
+            final Path manifest = pageDirectory.resolve(MANIFEST_FILE);
+            if (Files.isRegularFile(manifest))
+            {
+                for (final Path page : readManifest(manifest))
+                {
+                    Files.deleteIfExists(page);
+                }
+                Files.delete(manifest);
+            }
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error preparing report directory '" + pageDirectory + "': "
+                    + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Read the pages listed in a manifest. Entries that are not plain file
+     * names are ignored, so a modified manifest can't point outside of the
+     * page directory.
+     */
+    private static List<Path> readManifest(final Path manifest)
+    {
+        try
+        {
+            final Path pageDirectory = manifest.getParent();
+            return Files.readAllLines(manifest, StandardCharsets.UTF_8).stream()
+                    .filter(name -> !name.isBlank())
+                    .map(pageDirectory::resolve)
+                    .filter(page -> pageDirectory.equals(page.getParent()))
+                    .toList();
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error reading report manifest '" + manifest + "': "
+                    + exception.getMessage(), exception);
+        }
+    }
+
+    private static void writeManifest(final Writer writer, final List<String> pageNames) throws IOException
+    {
+        for (final String pageName : pageNames)
+        {
+            writer.write(pageName + "\n");
+        }
+    }
+
+    private void writeIndex(final Writer writer, final Trace trace, final Path pageDirectory,
+            final Map<String, List<LinkedSpecificationItem>> itemsByType,
+            final Map<String, List<LinkedSpecificationItem>> listedItemsByType,
+            final Map<LinkedSpecificationItem, String> pages, final PageContent content) throws IOException
+    {
+        final String pagePrefix = pageDirectory.getFileName() + "/";
+        writeHeader(writer, "Tracing report");
+        writer.write("<h1>Tracing report</h1>\n<p>" + trace.count() + " items, " + trace.countDefects()
+                + " defects</p>\n");
+        writer.write("<table>\n<tr><th>Artifact type</th><th>Items</th><th>Defects</th><th>Pages</th></tr>\n");
+        for (final Map.Entry<String, List<LinkedSpecificationItem>> type : itemsByType.entrySet())
+        {
+            final List<LinkedSpecificationItem> items = type.getValue();
+            final long defects = items.stream().filter(LinkedSpecificationItem::isDefect).count();
+            writer.write("<tr><td>" + escape(type.getKey()) + "</td><td>" + items.size() + "</td><td>" + defects
+                    + "</td><td>");
+            final List<LinkedSpecificationItem> listedItems = listedItemsByType.getOrDefault(type.getKey(),
+                    List.of());
+            for (int page = 0; page < countPages(listedItems.size()); page++)
+            {
+                final LinkedSpecificationItem first = listedItems.get(page * this.pageSize);
+                final LinkedSpecificationItem last = listedItems
+                        .get(Math.min(listedItems.size(), (page + 1) * this.pageSize) - 1);
+                writer.write("<a href=\"" + escape(pagePrefix + pages.get(first)) + "\" title=\""
+                        + escape(first.getId() + " .. " + last.getId()) + "\">" + (page + 1) + "</a> ");
+            }
+            writer.write("</td></tr>\n");
+        }
+        writer.write("</table>\n");
+        final List<LinkedSpecificationItem> defects = trace.getDefectItems();
+        if (content != PageContent.NONE && !defects.isEmpty())
+        {
+            writer.write("<h2>Defects</h2>\n<ul>\n");
+            for (final LinkedSpecificationItem defect : defects.subList(0, Math.min(defects.size(), MAX_INDEX_DEFECTS)))
+            {
+                writer.write("<li>" + itemLink(pagePrefix + pages.get(defect), defect) + "</li>\n");
+            }
+            if (defects.size() > MAX_INDEX_DEFECTS)
+            {
+                writer.write("<li>... " + (defects.size() - MAX_INDEX_DEFECTS) + " more defects</li>\n");
+            }
+            writer.write("</ul>\n");
+        }
+        writer.write("</body>\n</html>\n");
+    }
+
+    private static void writePage(final Writer writer, final Path indexFile, final String artifactType,
+            final int page, final int pageCount, final List<LinkedSpecificationItem> items,
+            final Map<LinkedSpecificationItem, String> pages, final ReportSettings settings,
+            final boolean showDetails) throws IOException
+    {
+        final String title = artifactType + " " + page + "/" + pageCount;
+        writeHeader(writer, title);
+        writer.write("<p><a href=\"../" + escape(indexFile.getFileName().toString()) + "\">Index</a></p>\n");
+        writer.write("<h1>" + escape(title) + "</h1>\n");
+        final boolean expand = showDetails && settings.getDetailsSectionDisplay() == DetailsSectionDisplay.EXPAND;
+        for (final LinkedSpecificationItem item : items)
+        {
+            writer.write("<details id=\"" + escape(item.getId().toString()) + "\" class=\""
+                    + (item.isDefect() ? "defect" : "ok") + "\"" + (expand ? " open" : "") + "><summary>"
+                    + escape(item.getId().toString()) + " " + escape(item.getTitleWithFallback()) + "</summary>");
+            if (showDetails)
+            {
+                writer.write(expand ? "" : "<template>");
+                writeDetails(writer, item, pages, settings.showOrigin());
+                writer.write(expand ? "" : "</template>");
+            }
+            writer.write("</details>\n");
+        }
+        writer.write("</body>\n</html>\n");
+    }
+
+    private static void writeDetails(final Writer writer, final LinkedSpecificationItem item,
+            final Map<LinkedSpecificationItem, String> pages, final boolean showOrigin) throws IOException
+    {
+        writer.write("<dl>");
+        writeEntry(writer, "Status", escape(String.valueOf(item.getStatus())));
+        writeTextEntry(writer, "Description", item.getDescription());
+        writeTextEntry(writer, "Rationale", item.getItem().getRationale());
+        writeTextEntry(writer, "Comment", item.getItem().getComment());
+        writeListEntry(writer, "Tags", item.getTags());
+        writeListEntry(writer, "Needs", item.getNeedsArtifactTypes());
+        writeListEntry(writer, "Uncovered", item.getUncoveredArtifactTypes());
+        if (showOrigin && item.getLocation() != null)
+        {
+            writeEntry(writer, "Origin", escape(item.getLocation().toString()));
+        }
+        for (final Map.Entry<LinkStatus, List<LinkedSpecificationItem>> links : item.getLinks().entrySet())
+        {
+            final StringBuilder targets = new StringBuilder();
+            for (final LinkedSpecificationItem target : links.getValue())
+            {
+                targets.append(itemLink(pages.get(target), target)).append(' ');
+            }
+            writeEntry(writer, escape(links.getKey().toString()), targets.toString());
+        }
+        writer.write("</dl>");
+    }
+
+    private static void writeTextEntry(final Writer writer, final String name, final String text)
+            throws IOException
+    {
+        if (text != null && !text.isEmpty())
+        {
+            writeEntry(writer, name, "<div class=\"text\">" + escape(text) + "</div>");
+        }
+    }
+
+    private static void writeListEntry(final Writer writer, final String name, final Collection<String> values)
+            throws IOException
+    {
+        if (!values.isEmpty())
+        {
+            writeEntry(writer, name, escape(String.join(", ", values)));
+        }
+    }
+
+    private static void writeEntry(final Writer writer, final String name, final String html) throws IOException
+    {
+        writer.write("<dt>" + name + "</dt><dd>" + html + "</dd>");
+    }
+
+    private static String itemLink(final String page, final LinkedSpecificationItem item)
+    {
+        final String id = escape(item.getId().toString());
+        return page == null ? id : "<a href=\"" + escape(page) + "#" + id + "\">" + id + "</a>";
+    }
+
+    private static void writeHeader(final Writer writer, final String title) throws IOException
+    {
+        writer.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n<title>" + escape(title)
+                + "</title>\n" + STYLE + SCRIPT + "</head>\n<body>\n");
+    }
+
+    private static void writeFile(final Path file, final PageWriter pageWriter)
+    {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+        {
+            pageWriter.write(writer);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error writing tracing report '" + file + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    private static String escape(final String text)
+    {
+        final StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++)
+        {
+            final char character = text.charAt(i);
+            switch (character)
+            {
+            case '<' -> builder.append("&lt;");
+            case '>' -> builder.append("&gt;");
+            case '&' -> builder.append("&amp;");
+            case '"' -> builder.append("&quot;");
+            default -> builder.append(character);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Items listed on the pages for a report verbosity.
+     */
+    private enum PageContent
+    {
+        /** Only write the index page. */
+        NONE,
+        /** List the defect items without details. */
+        DEFECTS,
+        /** List the defect items with details. */
+        DEFECT_DETAILS,
+        /** List all items with details. */
+        ALL;
+
+        static PageContent of(final ReportVerbosity verbosity)
+        {
+            return switch (verbosity)
+            {
+            case QUIET, MINIMAL, SUMMARY -> NONE;
+            case FAILURES, DIRECT_FAILURES, FAILURE_SUMMARIES, DIRECT_FAILURE_SUMMARIES -> DEFECTS;
+            case FAILURE_DETAILS, DIRECT_FAILURE_DETAILS -> DEFECT_DETAILS;
+            case ALL -> ALL;
+            };
+        }
+
+        boolean lists(final LinkedSpecificationItem item)
+        {
+            return this == ALL || (this != NONE && item.isDefect());
+        }
+
+        boolean showsDetails()
+        {
+            return this == ALL || this == DEFECT_DETAILS;
+        }
+    }
+
+    @FunctionalInterface
+    private interface PageWriter
+    {
+        void write(Writer writer) throws IOException;
+    }
+}
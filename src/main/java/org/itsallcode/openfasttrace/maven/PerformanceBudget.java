@@ -0,0 +1,134 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Limits for the duration, the number of imported files and the heap growth
+ * of a tracing run.
+ * <p>
+ * The duration is the wall time of all measured phases except writing the
+ * reports, i.e. resolve, up-to-date, git, import, count-files, focus, link
+ * and trace, as far as they ran.
+ * <p>
+ * A limit less than 1 is disabled. The heap delta is the difference of the
+ * used heap before the import and after tracing. It is only an estimate
+ * because the garbage collector may run in between, but it reliably catches
+ * a growing model.
+ */
+final class PerformanceBudget
+{
+    private static final String REPORT_PHASE = "report";
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final long maxTraceDurationMillis;
+    private final long maxImportedFiles;
+    private final long maxHeapDelta;
+
+    /**
+     * Create a new budget.
+     *
+     * @param maxTraceDurationMillis
+     *            maximum wall time of all measured phases except writing the
+     *            reports in milliseconds
+     * @param maxImportedFiles
+     *            maximum number of files handed to the importers
+     * @param maxHeapDelta
+     *            maximum growth of the used heap in bytes
+     */
+    PerformanceBudget(final long maxTraceDurationMillis, final long maxImportedFiles, final long maxHeapDelta)
+    {
+        this.maxTraceDurationMillis = maxTraceDurationMillis;
+        this.maxImportedFiles = maxImportedFiles;
+        this.maxHeapDelta = maxHeapDelta;
+    }
+
+    /**
+     * Check if at least one limit is configured.
+     *
+     * @return {@code true} if the budget must be checked
+     */
+    boolean isEnabled()
+    {
+        return this.maxTraceDurationMillis > 0 || this.maxImportedFiles > 0 || this.maxHeapDelta > 0;
+    }
+
+    /**
+     * Check if the number of imported files must be counted.
+     *
+     * @return {@code true} if the number of files is limited
+     */
+    boolean limitsImportedFiles()
+    {
+        return this.maxImportedFiles > 0;
+    }
+
+    /**
+     * Get the currently used heap memory.
+     *
+     * @return used heap in bytes
+     */
+    static long getUsedHeap()
+    {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Find the limits exceeded by a tracing run.
+     *
+     * @param metrics
+     *            metrics of the tracing run
+     * @param heapDelta
+     *            growth of the used heap during import, link and trace in
+     *            bytes
+     * @return description of each exceeded limit, empty if the run is within
+     *         budget
+     */
+    List<String> findViolations(final TraceMetrics metrics, final long heapDelta)
+    {
+        final List<String> violations = new ArrayList<>();
+        final long durationMillis = getTraceDurationMillis(metrics);
+        if (this.maxTraceDurationMillis > 0 && durationMillis > this.maxTraceDurationMillis)
+        {
+            violations.add("trace duration " + durationMillis + " ms exceeds maxTraceDuration "
+                    + this.maxTraceDurationMillis + " ms (" + formatPhases(metrics) + ")");
+        }
+        final OptionalLong files = metrics.getCount("files");
+        if (this.maxImportedFiles > 0 && files.isPresent() && files.getAsLong() > this.maxImportedFiles)
+        {
+            violations.add("imported files " + files.getAsLong() + " exceed maxImportedFiles "
+                    + this.maxImportedFiles);
+        }
+        if (this.maxHeapDelta > 0 && heapDelta > this.maxHeapDelta)
+        {
+            violations.add("heap delta " + heapDelta + " bytes exceeds maxHeapDelta " + this.maxHeapDelta
+                    + " bytes");
+        }
+        return violations;
+    }
+
+    private static long getTraceDurationMillis(final TraceMetrics metrics)
+    {
+        long nanos = 0;
+        for (final TraceMetrics.Phase phase : getBudgetedPhases(metrics))
+        {
+            nanos += phase.wallNanos();
+        }
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    private static String formatPhases(final TraceMetrics metrics)
+    {
+        final StringJoiner joiner = new StringJoiner(", ");
+        for (final TraceMetrics.Phase phase : getBudgetedPhases(metrics))
+        {
+            joiner.add(phase.name() + " " + phase.wallNanos() / NANOS_PER_MILLI + " ms");
+        }
+        return joiner.toString();
+    }
+
+    private static List<TraceMetrics.Phase> getBudgetedPhases(final TraceMetrics metrics)
+    {
+        return metrics.getPhases().stream().filter(phase -> !REPORT_PHASE.equals(phase.name())).toList();
+    }
+}
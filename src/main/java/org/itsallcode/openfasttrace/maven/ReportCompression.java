@@ -0,0 +1,29 @@
+package org.itsallcode.openfasttrace.maven;
+
+/**
+ * Compression of the written tracing reports.
+ */
+public enum ReportCompression
+{
+    /** Write uncompressed reports. */
+    NONE(""),
+    /** Write GZIP compressed reports with extension {@code .gz}. */
+    GZIP(".gz");
+
+    private final String extension;
+
+    ReportCompression(final String extension)
+    {
+        this.extension = extension;
+    }
+
+    /**
+     * Get the extension appended to the report file name.
+     *
+     * @return file name extension, empty if not compressed
+     */
+    String getExtension()
+    {
+        return this.extension;
+    }
+}
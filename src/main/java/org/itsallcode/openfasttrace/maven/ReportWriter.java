@@ -0,0 +1,187 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.itsallcode.openfasttrace.api.ReportSettings;
+import org.itsallcode.openfasttrace.api.core.Trace;
+import org.itsallcode.openfasttrace.api.report.Reportable;
+import org.itsallcode.openfasttrace.api.report.ReporterContext;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.report.ReporterFactoryLoader;
+
+/**
+ * Writes one or more reports for the same {@link Trace}.
+ * <p>
+ * The trace is not modified by the reporters, so multiple reports are
+ * rendered concurrently, each to its own file.
+ */
+final class ReportWriter
+{
+    private static final String HTML_FORMAT = "html";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Log log;
+    private final Oft oft;
+    private final int htmlPageSize;
+    private final ReportCompression compression;
+
+    /**
+     * Create a new report writer.
+     *
+     * @param log
+     *            maven log
+     * @param oft
+     *            OpenFastTrace instance used for rendering
+     * @param htmlPageSize
+     *            maximum number of items per page of a {@link PagedHtmlReport};
+     *            values less than 1 write HTML reports as a single file
+     * @param compression
+     *            compression of the reports, not applied to paged HTML reports
+     */
+    ReportWriter(final Log log, final Oft oft, final int htmlPageSize, final ReportCompression compression)
+    {
+        this.log = log;
+        this.oft = oft;
+        this.htmlPageSize = htmlPageSize;
+        this.compression = compression;
+    }
+
+    /**
+     * Check if a report is written as paged HTML report.
+     *
+     * @param format
+     *            report output format
+     * @param htmlPageSize
+     *            configured HTML page size
+     * @return {@code true} if the report is paged
+     */
+    static boolean isPaged(final String format, final int htmlPageSize)
+    {
+        return htmlPageSize > 0 && HTML_FORMAT.equals(format);
+    }
+
+    /**
+     * Get the files and directories written for the given reports, i.e. the
+     * report files and the page directories of paged HTML reports.
+     *
+     * @param reports
+     *            report settings by output path
+     * @return written files and directories
+     */
+    List<Path> getOutputPaths(final Map<Path, ReportSettings> reports)
+    {
+        final List<Path> paths = new ArrayList<>();
+        for (final Map.Entry<Path, ReportSettings> report : reports.entrySet())
+        {
+            paths.add(report.getKey());
+            if (isPaged(report.getValue().getOutputFormat(), this.htmlPageSize))
+            {
+                paths.add(PagedHtmlReport.getPageDirectory(report.getKey()));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Write all reports.
+     *
+     * @param trace
+     *            trace result
+     * @param reports
+     *            report settings by output path
+     */
+    void write(final Trace trace, final Map<Path, ReportSettings> reports)
+    {
+        if (reports.size() == 1)
+        {
+            final Map.Entry<Path, ReportSettings> report = reports.entrySet().iterator().next();
+            write(trace, report.getKey(), report.getValue());
+            return;
+        }
+        final int threads = Math.min(reports.size(), Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            final List<Callable<Void>> tasks = reports.entrySet().stream()
+                    .<Callable<Void>> map(report -> () -> {
+                        write(trace, report.getKey(), report.getValue());
+                        return null;
+                    })
+                    .toList();
+            for (final Future<Void> future : executor.invokeAll(tasks))
+            {
+                future.get();
+            }
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing tracing reports.", exception);
+        }
+        catch (final ExecutionException exception)
+        {
+            if (exception.getCause() instanceof final RuntimeException runtimeException)
+            {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to write tracing reports.", exception.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void write(final Trace trace, final Path outputPath, final ReportSettings reportSettings)
+    {
+        this.log.info("Writing tracing report to " + outputPath + " using settings " + formatSettings(reportSettings));
+        if (isPaged(reportSettings.getOutputFormat(), this.htmlPageSize))
+        {
+            new PagedHtmlReport(this.htmlPageSize).write(trace, outputPath, reportSettings);
+            this.log.info("Wrote pages of at most " + this.htmlPageSize + " items to "
+                    + PagedHtmlReport.getPageDirectory(outputPath));
+            return;
+        }
+        if (this.compression == ReportCompression.GZIP)
+        {
+            writeCompressed(trace, outputPath, reportSettings);
+            return;
+        }
+        this.oft.reportToPath(trace, outputPath, reportSettings);
+    }
+
+    private static void writeCompressed(final Trace trace, final Path outputPath,
+            final ReportSettings reportSettings)
+    {
+        final Reportable report = new ReporterFactoryLoader(new ReporterContext(reportSettings))
+                .getReporterFactory(reportSettings.getOutputFormat())
+                .createImporter(trace);
+        try (OutputStream out = new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(outputPath), BUFFER_SIZE), BUFFER_SIZE))
+        {
+            report.renderToStream(out);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error writing tracing report '" + outputPath + "': "
+                    + exception.getMessage(), exception);
+        }
+    }
+
+    private String formatSettings(final ReportSettings reportSettings)
+    {
+        return "[output format: " + reportSettings.getOutputFormat()
+                + ", verbosity: " + reportSettings.getReportVerbosity()
+                + ", show origin: " + reportSettings.showOrigin()
+                + ", newline: " + reportSettings.getNewline().name()
+                + ", detailsSectionDisplay: " + reportSettings.getDetailsSectionDisplay().name()
+                + ", compression: " + this.compression
+                + "]";
+    }
+}
@@ -0,0 +1,265 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+
+/**
+ * Import cache shared by all executions of the plugin in the same JVM.
+ * <p>
+ * Under the Maven daemon or when the goal runs for several modules of a
+ * reactor, the plugin class realm and with it this cache survive between
+ * executions. Entries are validated like in the persistent
+ * {@link ImportCache}: by size and modification time and, if the
+ * modification time changed, by the SHA-256 hash of the content. The cache
+ * holds at most a configured number of items, the least recently used files
+ * are evicted first. By default the limit is derived from the maximum heap
+ * size, so that a long running Maven daemon does not keep most of its heap
+ * in the cache.
+ * <p>
+ * Linking modifies the items, so the cached items are never handed out.
+ * Each execution gets its own copies, see {@link SpecificationItemCopy}.
+ * <p>
+ * The cache also keeps the cache key and the {@link FileImporter} per import
+ * configuration, so that the importer plugins are discovered only once.
+ * <p>
+ * All methods are thread safe. Files are imported outside the lock, so
+ * concurrent module executions do not wait for each other.
+ */
+final class SharedImportCache
+{
+    private static final SharedImportCache INSTANCE = new SharedImportCache();
+    /** Estimated heap usage of a cached item including its strings and lists. */
+    private static final long ESTIMATED_ITEM_BYTES = 2048;
+    /** The default limit uses a tenth of the maximum heap. */
+    private static final long HEAP_SHARE_DIVISOR = 10;
+
+    private final Map<CacheKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, String> keys = new ConcurrentHashMap<>();
+    private final Map<String, FileImporter> importers = new ConcurrentHashMap<>();
+    private long cachedItems;
+
+    /**
+     * Create a new, empty cache. Use {@link #instance()} to get the cache
+     * shared in the JVM.
+     */
+    SharedImportCache()
+    {
+    }
+
+    /**
+     * Get the cache shared by all executions in this JVM.
+     *
+     * @return shared cache
+     */
+    static SharedImportCache instance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the cache key for the given import settings, see
+     * {@link ImportCache#createKey(ImportSettings)}. The key is calculated
+     * only once per import configuration.
+     *
+     * @param settings
+     *            import settings
+     * @return cache key
+     */
+    String getKey(final ImportSettings settings)
+    {
+        return this.keys.computeIfAbsent(ImportCache.formatConfiguration(settings),
+                configuration -> ImportCache.createKey(settings));
+    }
+
+    /**
+     * Get the default maximum number of cached items.
+     *
+     * @param maxMemory
+     *            maximum heap size in bytes, see {@link Runtime#maxMemory()}
+     * @return number of items that fit in a tenth of the heap
+     */
+    static long getDefaultMaxItems(final long maxMemory)
+    {
+        return Math.max(1, maxMemory / HEAP_SHARE_DIVISOR / ESTIMATED_ITEM_BYTES);
+    }
+
+    /**
+     * Get a file importer for the given import settings. Importers are reused
+     * for the same import configuration. A new importer loads its plugins
+     * while the map holds the lock for the key, so other threads only get
+     * completely initialized importers.
+     *
+     * @param settings
+     *            import settings
+     * @return file importer
+     */
+    FileImporter getImporter(final ImportSettings settings)
+    {
+        return this.importers.computeIfAbsent(getKey(settings), key -> new FileImporter(settings));
+    }
+
+    /**
+     * Create a view of this cache for one execution that counts hits and
+     * misses.
+     *
+     * @param key
+     *            cache key of the import configuration
+     * @param maxItems
+     *            maximum number of items kept in the cache, {@code 0}
+     *            disables the limit, negative values use
+     *            {@link #getDefaultMaxItems(long)} for the current heap
+     * @return view for one execution
+     */
+    Session openSession(final String key, final long maxItems)
+    {
+        return new Session(key, maxItems);
+    }
+
+    private synchronized Entry get(final CacheKey key)
+    {
+        return this.entries.get(key);
+    }
+
+    private synchronized void put(final CacheKey key, final Entry entry, final long maxItems)
+    {
+        final Entry previous = this.entries.put(key, entry);
+        if (previous != null)
+        {
+            this.cachedItems -= previous.items().size();
+        }
+        this.cachedItems += entry.items().size();
+        final Iterator<Entry> eldest = this.entries.values().iterator();
+        while (maxItems > 0 && this.cachedItems > maxItems && eldest.hasNext())
+        {
+            this.cachedItems -= eldest.next().items().size();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Get the number of cached files.
+     *
+     * @return number of cached files
+     */
+    synchronized int getCachedFiles()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Get the number of cached items.
+     *
+     * @return number of cached items
+     */
+    synchronized long getCachedItems()
+    {
+        return this.cachedItems;
+    }
+
+    /**
+     * Remove all entries, cache keys and importers.
+     */
+    synchronized void clear()
+    {
+        this.entries.clear();
+        this.cachedItems = 0;
+        this.keys.clear();
+        this.importers.clear();
+    }
+
+    /**
+     * Access to the shared cache for one execution.
+     */
+    final class Session
+    {
+        private final String key;
+        private final long maxItems;
+        private final AtomicInteger hits = new AtomicInteger();
+        private final AtomicInteger misses = new AtomicInteger();
+
+        private Session(final String key, final long maxItems)
+        {
+            this.key = key;
+            this.maxItems = maxItems < 0 ? getDefaultMaxItems(Runtime.getRuntime().maxMemory()) : maxItems;
+        }
+
+        /**
+         * Get the items of the given file from the cache or import them if
+         * the file is not cached or changed.
+         *
+         * @param file
+         *            file to import
+         * @param importer
+         *            imports the file in case of a cache miss
+         * @return copies of the items imported from the file, owned by the
+         *         caller
+         */
+        List<SpecificationItem> getOrImport(final Path file, final Function<Path, List<SpecificationItem>> importer)
+        {
+            final CacheKey cacheKey = new CacheKey(this.key, file.toAbsolutePath().normalize());
+            final BasicFileAttributes attributes = readAttributes(file);
+            final long size = attributes.size();
+            final long lastModified = attributes.lastModifiedTime().toMillis();
+            final Entry cached = get(cacheKey);
+            if (cached != null && cached.size() == size && cached.lastModified() == lastModified)
+            {
+                this.hits.incrementAndGet();
+                return SpecificationItemCopy.copyAll(cached.items());
+            }
+            final String contentHash = ImportCache.hash(file);
+            if (cached != null && cached.size() == size && cached.contentHash().equals(contentHash))
+            {
+                this.hits.incrementAndGet();
+                put(cacheKey, new Entry(size, lastModified, contentHash, cached.items()), this.maxItems);
+                return SpecificationItemCopy.copyAll(cached.items());
+            }
+            this.misses.incrementAndGet();
+            final List<SpecificationItem> items = importer.apply(file);
+            put(cacheKey, new Entry(size, lastModified, contentHash, List.copyOf(SpecificationItemCopy.copyAll(items))),
+                    this.maxItems);
+            return items;
+        }
+
+        /**
+         * Describe the hits and misses of this execution and the cache size.
+         *
+         * @return description for logging
+         */
+        String formatStatistics()
+        {
+            return this.hits.get() + " files reused, " + this.misses.get() + " files imported, "
+                    + getCachedFiles() + " files with " + getCachedItems() + " items cached";
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(final Path file)
+    {
+        try
+        {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error reading attributes of '" + file + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    private record CacheKey(String importKey, Path file)
+    {
+    }
+
+    private record Entry(long size, long lastModified, String contentHash, List<SpecificationItem> items)
+    {
+    }
+}
@@ -0,0 +1,114 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects the regular files below a list of input roots.
+ * <p>
+ * Roots may be files or directories. Files are returned in the order of the
+ * roots and, within a directory, in the order the file system reports them.
+ * An {@link InputFilter} can exclude files and whole directories, excluded
+ * directories are not walked.
+ */
+final class SourceFileCollector
+{
+    private SourceFileCollector()
+    {
+        // not instantiable
+    }
+
+    /**
+     * Collect all regular files below the given roots.
+     *
+     * @param roots
+     *            input files or directories
+     * @return regular files
+     */
+    static List<Path> collect(final List<Path> roots)
+    {
+        return collect(roots, InputFilter.none());
+    }
+
+    /**
+     * Collect the regular files below the given roots that are accepted by
+     * the filter.
+     *
+     * @param roots
+     *            input files or directories
+     * @param filter
+     *            include and exclude patterns
+     * @return regular files
+     */
+    static List<Path> collect(final List<Path> roots, final InputFilter filter)
+    {
+        final List<Path> files = new ArrayList<>();
+        walk(roots, filter, files::add);
+        return files;
+    }
+
+    /**
+     * Pass the regular files below the given roots that are accepted by the
+     * filter to a consumer while walking the roots, in the same order as
+     * {@link #collect(List, InputFilter)}.
+     *
+     * @param roots
+     *            input files or directories
+     * @param filter
+     *            include and exclude patterns
+     * @param consumer
+     *            receives the files
+     */
+    static void walk(final List<Path> roots, final InputFilter filter, final Consumer<Path> consumer)
+    {
+        for (final Path root : roots)
+        {
+            walk(root, filter, consumer);
+        }
+    }
+
+    private static void walk(final Path root, final InputFilter filter, final Consumer<Path> consumer)
+    {
+        if (Files.isRegularFile(root))
+        {
+            consumer.accept(root);
+            return;
+        }
+        if (!Files.isDirectory(root))
+        {
+            return;
+        }
+        try
+        {
+            Files.walkFileTree(root, new SimpleFileVisitor<>()
+            {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+                {
+                    return filter.acceptDirectory(root, dir) ? FileVisitResult.CONTINUE
+                            : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+                {
+                    if (attrs.isRegularFile() && filter.acceptFile(root, file))
+                    {
+                        consumer.accept(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error collecting files in '" + root + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+}
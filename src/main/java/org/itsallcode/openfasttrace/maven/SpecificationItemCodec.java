@@ -0,0 +1,232 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.itsallcode.openfasttrace.api.core.*;
+
+/**
+ * Compact binary encoding of {@link SpecificationItem}s.
+ * <p>
+ * The encoding preserves everything the linker, tracer and reporters use:
+ * ID, texts, status, covered and depended-on IDs, needed artifact types,
+ * tags, location and the forwarding flag. Source ranges of located IDs are
+ * not preserved.
+ */
+final class SpecificationItemCodec
+{
+    private static final int NULL_LENGTH = -1;
+
+    private SpecificationItemCodec()
+    {
+        // not instantiable
+    }
+
+    /**
+     * Write a list of items.
+     *
+     * @param out
+     *            output to write to
+     * @param items
+     *            items to write
+     * @throws IOException
+     *             if writing fails
+     */
+    static void writeItems(final DataOutput out, final List<SpecificationItem> items) throws IOException
+    {
+        out.writeInt(items.size());
+        for (final SpecificationItem item : items)
+        {
+            writeItem(out, item);
+        }
+    }
+
+    /**
+     * Read a list of items written by {@link #writeItems(DataOutput, List)}.
+     *
+     * @param in
+     *            input to read from
+     * @return items
+     * @throws IOException
+     *             if reading fails
+     */
+    static List<SpecificationItem> readItems(final DataInput in) throws IOException
+    {
+        final int count = in.readInt();
+        final List<SpecificationItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            items.add(readItem(in));
+        }
+        return items;
+    }
+
+    private static void writeItem(final DataOutput out, final SpecificationItem item) throws IOException
+    {
+        writeId(out, item.getId());
+        writeString(out, item.getTitle());
+        writeString(out, item.getDescription());
+        writeString(out, item.getRationale());
+        writeString(out, item.getComment());
+        writeString(out, item.getStatus() == null ? null : item.getStatus().name());
+        writeIds(out, item.getCoveredIds());
+        writeIds(out, item.getDependOnIds());
+        writeStrings(out, item.getNeedsArtifactTypes());
+        writeStrings(out, item.getTags());
+        writeLocation(out, item.getLocation());
+        out.writeBoolean(item.isForwarding());
+    }
+
+    private static SpecificationItem readItem(final DataInput in) throws IOException
+    {
+        final SpecificationItem.Builder builder = SpecificationItem.builder()
+                .id(readId(in))
+                .title(readString(in))
+                .description(readString(in))
+                .rationale(readString(in))
+                .comment(readString(in));
+        final String status = readString(in);
+        if (status != null)
+        {
+            builder.status(ItemStatus.valueOf(status));
+        }
+        readIds(in).forEach(builder::addCoveredId);
+        readIds(in).forEach(builder::addDependOnId);
+        readStrings(in).forEach(builder::addNeedsArtifactType);
+        readStrings(in).forEach(builder::addTag);
+        final Location location = readLocation(in);
+        if (location != null)
+        {
+            builder.location(location);
+        }
+        return builder.forwards(in.readBoolean()).build();
+    }
+
+    private static void writeId(final DataOutput out, final SpecificationItemId id) throws IOException
+    {
+        writeString(out, id.getArtifactType());
+        writeString(out, id.getName());
+        out.writeInt(id.getRevision());
+    }
+
+    private static SpecificationItemId readId(final DataInput in) throws IOException
+    {
+        final String artifactType = readString(in);
+        final String name = readString(in);
+        return SpecificationItemId.createId(artifactType, name, in.readInt());
+    }
+
+    private static void writeIds(final DataOutput out, final List<SpecificationItemId> ids) throws IOException
+    {
+        out.writeInt(ids.size());
+        for (final SpecificationItemId id : ids)
+        {
+            writeId(out, id);
+        }
+    }
+
+    private static List<SpecificationItemId> readIds(final DataInput in) throws IOException
+    {
+        final int count = in.readInt();
+        final List<SpecificationItemId> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            ids.add(readId(in));
+        }
+        return ids;
+    }
+
+    private static void writeLocation(final DataOutput out, final Location location) throws IOException
+    {
+        out.writeBoolean(location != null);
+        if (location != null)
+        {
+            writeString(out, location.getPath());
+            out.writeInt(location.getLine());
+            out.writeInt(location.getColumn());
+        }
+    }
+
+    private static Location readLocation(final DataInput in) throws IOException
+    {
+        if (!in.readBoolean())
+        {
+            return null;
+        }
+        return Location.builder()
+                .path(readString(in))
+                .line(in.readInt())
+                .column(in.readInt())
+                .build();
+    }
+
+    private static void writeStrings(final DataOutput out, final List<String> values) throws IOException
+    {
+        out.writeInt(values.size());
+        for (final String value : values)
+        {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(final DataInput in) throws IOException
+    {
+        final int count = in.readInt();
+        final List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    /**
+     * Write a nullable string of arbitrary length. In contrast to
+     * {@link DataOutput#writeUTF(String)} this is not limited to 64 KiB.
+     *
+     * @param out
+     *            output to write to
+     * @param value
+     *            string to write or {@code null}
+     * @throws IOException
+     *             if writing fails
+     */
+    static void writeString(final DataOutput out, final String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param in
+     *            input to read from
+     * @return string or {@code null}
+     * @throws IOException
+     *             if reading fails
+     */
+    static String readString(final DataInput in) throws IOException
+    {
+        final int length = in.readInt();
+        if (length == NULL_LENGTH)
+        {
+            return null;
+        }
+        if (length < 0)
+        {
+            throw new IOException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,79 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.itsallcode.openfasttrace.api.core.LocatedSpecificationItemId;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+
+/**
+ * Creates independent copies of {@link SpecificationItem}s.
+ * <p>
+ * Linking modifies the items: OpenFastTrace adds the IDs of items with
+ * outdated, predated, shallow or unwanted coverage to the covered IDs of the
+ * covering item. Items that are kept between traces, e.g. in the
+ * {@link SharedImportCache} or by the {@code watch} goal, must therefore be
+ * copied before each link, otherwise one trace changes the result of the
+ * next and concurrent links modify the same lists.
+ */
+final class SpecificationItemCopy
+{
+    private SpecificationItemCopy()
+    {
+        // not instantiable
+    }
+
+    /**
+     * Copy a list of items.
+     *
+     * @param items
+     *            items to copy
+     * @return new list with a copy of each item in the same order
+     */
+    static List<SpecificationItem> copyAll(final List<SpecificationItem> items)
+    {
+        final List<SpecificationItem> copies = new ArrayList<>(items.size());
+        for (final SpecificationItem item : items)
+        {
+            copies.add(copy(item));
+        }
+        return copies;
+    }
+
+    /**
+     * Copy an item including the source locations of its IDs.
+     *
+     * @param item
+     *            item to copy
+     * @return copy that does not share any mutable state with the item
+     */
+    static SpecificationItem copy(final SpecificationItem item)
+    {
+        final SpecificationItem.Builder builder = SpecificationItem.builder()
+                .id(item.getLocatedId())
+                .title(item.getTitle())
+                .description(item.getDescription())
+                .rationale(item.getRationale())
+                .comment(item.getComment())
+                .forwards(item.isForwarding());
+        if (item.getStatus() != null)
+        {
+            builder.status(item.getStatus());
+        }
+        if (item.getLocation() != null)
+        {
+            builder.location(item.getLocation());
+        }
+        for (final LocatedSpecificationItemId coveredId : item.getLocatedCoveredIds())
+        {
+            builder.addCoveredId(coveredId);
+        }
+        for (final LocatedSpecificationItemId dependOnId : item.getLocatedDependOnIds())
+        {
+            builder.addDependOnId(dependOnId);
+        }
+        item.getNeedsArtifactTypes().forEach(builder::addNeedsArtifactType);
+        item.getTags().forEach(builder::addTag);
+        return builder.build();
+    }
+}
@@ -0,0 +1,193 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.execution.ProjectDependencyGraph;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.*;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Trace requirements of all projects in the reactor at once using
+ * <a href="https://github.com/itsallcode/openfasttrace">OpenFastTrace</a>.
+ * <p>
+ * The source roots and {@code doc} directories of all projects in the current
+ * session are collected, de-duplicated and traced in a single run. When bound
+ * to a lifecycle phase the goal traces only once, when it has reached every
+ * project it is bound for, so that every file is imported only once per
+ * build. This also holds for parallel builds with {@code -T}, where the last
+ * project of the reactor does not necessarily run last. A parallel build
+ * additionally waits for the other running projects that do not run the goal
+ * and do not depend on the current project.
+ */
+@Mojo(name = "trace-aggregate", defaultPhase = LifecyclePhase.VERIFY, aggregator = true, threadSafe = true)
+public class TraceAggregateMojo extends AbstractTraceMojo
+{
+    private static final long PROJECT_POLL_MILLIS = 100;
+
+    /**
+     * Location of the directory where the reports are generated.
+     * <p>
+     * Default: <code>${session.topLevelProject.build.directory}</code>
+     */
+    @Parameter(property = "openfasttrace.outputDirectory", defaultValue = "${session.topLevelProject.build.directory}", required = true)
+    private File outputDirectory;
+
+    /**
+     * Location of the import cache file.
+     * <p>
+     * Default:
+     * <code>${session.topLevelProject.build.directory}/openfasttrace/import-cache.bin</code>
+     */
+    @Parameter(property = "openfasttrace.importCacheFile", defaultValue = "${session.topLevelProject.build.directory}/openfasttrace/import-cache.bin")
+    File importCacheFile;
+
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    MojoExecution mojoExecution;
+
+    /**
+     * Create a new instance.
+     */
+    public TraceAggregateMojo()
+    {
+        // Parameters are injected by Maven
+    }
+
+    @Override
+    public void execute() throws MojoFailureException
+    {
+        if (!isCommandLine() && !isTracingExecution())
+        {
+            getLog().info("Skipping OFT aggregate tracing for " + project.getArtifactId()
+                    + ", tracing runs once the goal has reached all projects of the reactor.");
+            return;
+        }
+        super.execute();
+    }
+
+    private boolean isCommandLine()
+    {
+        return mojoExecution != null && mojoExecution.getSource() == MojoExecution.Source.CLI;
+    }
+
+    /**
+     * Check whether this lifecycle execution traces. Only the execution that
+     * completes the projects the goal is bound for traces. In a parallel build
+     * it first waits for the other running projects without the goal.
+     *
+     * @return {@code true} if this execution traces
+     */
+    boolean isTracingExecution()
+    {
+        final List<MavenProject> projects = session.getProjects();
+        if (projects.isEmpty())
+        {
+            return true;
+        }
+        final List<MavenProject> aggregatingProjects = findAggregatingProjects(projects);
+        if (!TraceCoordinator.forSession(session).arriveAtAggregate(project, aggregatingProjects))
+        {
+            return false;
+        }
+        if (session.isParallel())
+        {
+            awaitOtherProjects(projects, aggregatingProjects);
+        }
+        return true;
+    }
+
+    private List<MavenProject> findAggregatingProjects(final List<MavenProject> projects)
+    {
+        final List<MavenProject> aggregatingProjects = projects.stream().filter(this::runsAggregateGoal).toList();
+        return containsProject(aggregatingProjects, project) ? aggregatingProjects : projects;
+    }
+
+    private boolean runsAggregateGoal(final MavenProject eachProject)
+    {
+        if (mojoExecution == null)
+        {
+            return false;
+        }
+        return eachProject.getBuildPlugins().stream()
+                .filter(plugin -> Objects.equals(plugin.getGroupId(), mojoExecution.getGroupId())
+                        && Objects.equals(plugin.getArtifactId(), mojoExecution.getArtifactId()))
+                .map(Plugin::getExecutions)
+                .flatMap(List::stream)
+                .anyMatch(execution -> execution.getGoals().contains(getGoal()));
+    }
+
+    private void awaitOtherProjects(final List<MavenProject> projects, final List<MavenProject> aggregatingProjects)
+    {
+        final ProjectDependencyGraph graph = session.getProjectDependencyGraph();
+        final List<MavenProject> downstreamProjects = graph == null ? List.of()
+                : graph.getDownstreamProjects(project, true);
+        final List<MavenProject> awaitedProjects = projects.stream()
+                .filter(eachProject -> eachProject != project && !containsProject(aggregatingProjects, eachProject)
+                        && !containsProject(downstreamProjects, eachProject))
+                .toList();
+        if (!awaitedProjects.stream().allMatch(this::isFinished))
+        {
+            getLog().info("Waiting for the other projects of the reactor to finish before aggregate tracing.");
+        }
+        try
+        {
+            while (!awaitedProjects.stream().allMatch(this::isFinished) && !session.getResult().hasExceptions())
+            {
+                TimeUnit.MILLISECONDS.sleep(PROJECT_POLL_MILLIS);
+            }
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isFinished(final MavenProject eachProject)
+    {
+        return session.getResult().getBuildSummary(eachProject) != null;
+    }
+
+    private static boolean containsProject(final List<MavenProject> projects, final MavenProject project)
+    {
+        return projects.stream().anyMatch(eachProject -> eachProject == project);
+    }
+
+    @Override
+    Path getOutputDirectory()
+    {
+        return outputDirectory.toPath();
+    }
+
+    @Override
+    String getGoal()
+    {
+        return "trace-aggregate";
+    }
+
+    @Override
+    Path getImportCacheFile()
+    {
+        return importCacheFile.toPath();
+    }
+
+    @Override
+    List<Path> getInputPaths()
+    {
+        final List<MavenProject> projects = session.getProjects();
+        final Set<Path> inputPaths = new LinkedHashSet<>();
+        for (final MavenProject eachProject : projects)
+        {
+            getOwnSourcePaths(eachProject).map(AbstractTraceMojo::normalize).forEach(inputPaths::add);
+            getDocPath(eachProject).map(AbstractTraceMojo::normalize).ifPresent(inputPaths::add);
+        }
+        final List<Path> result = new ArrayList<>(inputPaths);
+        logSourcePaths(session.getTopLevelProject().getBasedir().toPath().toAbsolutePath().normalize(), result);
+        getLog().info("Aggregating " + projects.size() + " projects of the reactor.");
+        return result;
+    }
+}
@@ -0,0 +1,229 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystemSession;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+
+/**
+ * Coordinates executions of the plugin that run concurrently in the same
+ * Maven session, e.g. for the modules of a parallel build with {@code -T}.
+ * <p>
+ * When several executions import the same input root with the same import
+ * configuration at the same time, only the first one imports it and the
+ * others wait for its result, including the number of imported files for
+ * the metrics and the performance budget. Linking modifies the items, so
+ * each waiting execution gets its own copy of the items, and the shared
+ * result is never handed out. Completed imports are not kept, so
+ * a later execution sees changes made by the build in between. Writes to the
+ * same report files are serialized. The coordinator also records which
+ * projects reached the {@code trace-aggregate} goal, so that it traces only
+ * once.
+ */
+final class TraceCoordinator
+{
+    private final Map<RootKey, CompletableFuture<ImportedRoot>> imports = new ConcurrentHashMap<>();
+    private final Map<Path, ReentrantLock> fileLocks = new ConcurrentHashMap<>();
+    private final Set<MavenProject> aggregateArrivals = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Create a new coordinator. Use {@link #forSession(MavenSession)} to get
+     * the coordinator shared in a Maven session.
+     */
+    TraceCoordinator()
+    {
+    }
+
+    /**
+     * Get the coordinator shared by all executions in the given session. The
+     * coordinator is stored in the session data of the repository session,
+     * which all project sessions of a parallel build share.
+     *
+     * @param session
+     *            Maven session, may be {@code null}
+     * @return shared coordinator or a new coordinator if the session has no
+     *         repository session
+     */
+    static TraceCoordinator forSession(final MavenSession session)
+    {
+        final RepositorySystemSession repositorySession = session == null ? null : session.getRepositorySession();
+        if (repositorySession == null || repositorySession.getData() == null)
+        {
+            return new TraceCoordinator();
+        }
+        return (TraceCoordinator) repositorySession.getData().computeIfAbsent(TraceCoordinator.class,
+                TraceCoordinator::new);
+    }
+
+    /**
+     * Import an input root or wait for a concurrent import of the same root.
+     *
+     * @param log
+     *            log
+     * @param configuration
+     *            description of everything besides the root that influences
+     *            the imported items
+     * @param root
+     *            input root
+     * @param importer
+     *            imports the root if no import is in progress
+     * @return imported root, owned by the caller
+     */
+    ImportedRoot importRoot(final Log log, final String configuration, final Path root,
+            final Supplier<ImportedRoot> importer)
+    {
+        final RootKey key = new RootKey(configuration, InputRoots.toRealPath(root));
+        final CompletableFuture<ImportedRoot> future = new CompletableFuture<>();
+        final CompletableFuture<ImportedRoot> inFlight = this.imports.putIfAbsent(key, future);
+        if (inFlight != null)
+        {
+            log.debug("Waiting for concurrent import of " + root);
+            return await(inFlight).copy();
+        }
+        try
+        {
+            final ImportedRoot importedRoot = importer.get();
+            future.complete(importedRoot.copy());
+            return importedRoot;
+        }
+        catch (final RuntimeException exception)
+        {
+            future.completeExceptionally(exception);
+            throw exception;
+        }
+        finally
+        {
+            this.imports.remove(key, future);
+        }
+    }
+
+    private static ImportedRoot await(final CompletableFuture<ImportedRoot> future)
+    {
+        try
+        {
+            return future.join();
+        }
+        catch (final CompletionException exception)
+        {
+            if (exception.getCause() instanceof final RuntimeException runtimeException)
+            {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Concurrent import failed.", exception.getCause());
+        }
+    }
+
+    /**
+     * Record that the {@code trace-aggregate} goal reached a project and check
+     * whether it has now reached all given projects.
+     *
+     * @param project
+     *            project the goal runs for
+     * @param aggregatingProjects
+     *            projects the goal runs for in this session
+     * @return {@code true} for exactly one arrival: the one that completes
+     *         the given projects
+     */
+    boolean arriveAtAggregate(final MavenProject project, final Collection<MavenProject> aggregatingProjects)
+    {
+        synchronized (this.aggregateArrivals)
+        {
+            final boolean completeBefore = this.aggregateArrivals.containsAll(aggregatingProjects);
+            this.aggregateArrivals.add(project);
+            return !completeBefore && this.aggregateArrivals.containsAll(aggregatingProjects);
+        }
+    }
+
+    /**
+     * Run an action while no other execution writes to one of the given files.
+     *
+     * @param files
+     *            files written by the action
+     * @param action
+     *            action writing the files
+     */
+    void writeExclusively(final Collection<Path> files, final Runnable action)
+    {
+        final List<ReentrantLock> locks = files.stream()
+                .map(file -> file.toAbsolutePath().normalize())
+                .distinct()
+                .sorted()
+                .map(file -> this.fileLocks.computeIfAbsent(file, path -> new ReentrantLock()))
+                .toList();
+        final Deque<ReentrantLock> acquired = new ArrayDeque<>();
+        try
+        {
+            for (final ReentrantLock lock : locks)
+            {
+                lock.lock();
+                acquired.push(lock);
+            }
+            action.run();
+        }
+        finally
+        {
+            while (!acquired.isEmpty())
+            {
+                acquired.pop().unlock();
+            }
+        }
+    }
+
+    /**
+     * Get the number of imports in progress.
+     *
+     * @return number of imports in progress
+     */
+    int getImportsInProgress()
+    {
+        return this.imports.size();
+    }
+
+    private record RootKey(String configuration, Path root)
+    {
+    }
+
+    /**
+     * Result of importing an input root.
+     *
+     * @param items
+     *            imported items
+     * @param fileCount
+     *            number of files handed to the importers
+     */
+    record ImportedRoot(List<SpecificationItem> items, long fileCount)
+    {
+        /**
+         * Create a new result.
+         *
+         * @param items
+         *            imported items, copied
+         * @param fileCount
+         *            number of files handed to the importers
+         */
+        ImportedRoot
+        {
+            items = List.copyOf(items);
+        }
+
+        /**
+         * Copy the result including the items, see
+         * {@link SpecificationItemCopy}.
+         *
+         * @return independent copy
+         */
+        ImportedRoot copy()
+        {
+            return new ImportedRoot(SpecificationItemCopy.copyAll(this.items), this.fileCount);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Wall time, CPU time and allocated bytes of the phases of a tracing run.
+ * <p>
+ * CPU time is the CPU time of the whole JVM process during a phase, so it
+ * includes worker threads, e.g. of {@code parallelImport}, and the garbage
+ * collector. Allocated bytes are only measured for the thread running the
+ * goal, allocations of worker threads are not included. Values that the JVM
+ * cannot measure are reported as {@code -1}.
+ */
+final class TraceMetrics
+{
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final String goal;
+    private final String project;
+    private final List<Phase> phases = new ArrayList<>();
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    private boolean upToDate;
+
+    /**
+     * Create new metrics.
+     *
+     * @param goal
+     *            name of the goal
+     * @param project
+     *            ID of the traced project
+     */
+    TraceMetrics(final String goal, final String project)
+    {
+        this.goal = goal;
+        this.project = project;
+    }
+
+    /**
+     * Measure a phase that returns a result.
+     *
+     * @param <T>
+     *            result type
+     * @param name
+     *            name of the phase
+     * @param phase
+     *            phase to run
+     * @return result of the phase
+     */
+    <T> T measure(final String name, final Supplier<T> phase)
+    {
+        final long wallStart = System.nanoTime();
+        final long cpuStart = getProcessCpuTime();
+        final long allocatedStart = getAllocatedBytes();
+        try
+        {
+            return phase.get();
+        }
+        finally
+        {
+            this.phases.add(new Phase(name, System.nanoTime() - wallStart,
+                    difference(cpuStart, getProcessCpuTime()), difference(allocatedStart, getAllocatedBytes())));
+        }
+    }
+
+    /**
+     * Measure a phase without result.
+     *
+     * @param name
+     *            name of the phase
+     * @param phase
+     *            phase to run
+     */
+    void run(final String name, final Runnable phase)
+    {
+        measure(name, () -> {
+            phase.run();
+            return null;
+        });
+    }
+
+    private static long difference(final long start, final long end)
+    {
+        return start < 0 || end < 0 ? -1 : end - start;
+    }
+
+    private static long getProcessCpuTime()
+    {
+        if (ManagementFactory
+                .getOperatingSystemMXBean() instanceof final com.sun.management.OperatingSystemMXBean bean)
+        {
+            return bean.getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    private static long getAllocatedBytes()
+    {
+        if (ManagementFactory.getThreadMXBean() instanceof final com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled())
+        {
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Add a value to a counter, e.g. the number of imported items.
+     *
+     * @param name
+     *            name of the counter
+     * @param value
+     *            value to add
+     */
+    void count(final String name, final long value)
+    {
+        this.counts.merge(name, value, Long::sum);
+    }
+
+    /**
+     * Get a counter.
+     *
+     * @param name
+     *            name of the counter
+     * @return value or an empty optional if the counter was not set
+     */
+    OptionalLong getCount(final String name)
+    {
+        final Long value = this.counts.get(name);
+        return value == null ? OptionalLong.empty() : OptionalLong.of(value);
+    }
+
+    /**
+     * Mark the run as skipped by the up-to-date check.
+     */
+    void upToDate()
+    {
+        this.upToDate = true;
+    }
+
+    /**
+     * Get the measured phases in the order they were run.
+     *
+     * @return phases
+     */
+    List<Phase> getPhases()
+    {
+        return List.copyOf(this.phases);
+    }
+
+    /**
+     * Get the throughput of the phases, i.e. imported files and items per
+     * second of the import phase and links per second of the link phase.
+     *
+     * @return throughput by name
+     */
+    Map<String, Double> getThroughput()
+    {
+        final Map<String, Double> throughput = new LinkedHashMap<>();
+        addThroughput(throughput, "filesPerSecond", "files", "import");
+        addThroughput(throughput, "itemsPerSecond", "items", "import");
+        addThroughput(throughput, "linksPerSecond", "links", "link");
+        return throughput;
+    }
+
+    private void addThroughput(final Map<String, Double> throughput, final String name, final String counter,
+            final String phaseName)
+    {
+        final Long count = this.counts.get(counter);
+        final Optional<Phase> phase = getPhase(phaseName);
+        if (count != null && phase.isPresent() && phase.get().wallNanos() > 0)
+        {
+            throughput.put(name, count * NANOS_PER_SECOND / phase.get().wallNanos());
+        }
+    }
+
+    /**
+     * Get a measured phase by name.
+     *
+     * @param name
+     *            name of the phase
+     * @return the first phase with the given name or an empty optional if it
+     *         was not measured
+     */
+    Optional<Phase> getPhase(final String name)
+    {
+        return this.phases.stream().filter(phase -> phase.name().equals(name)).findFirst();
+    }
+
+    /**
+     * Log a summary of the metrics.
+     *
+     * @param log
+     *            maven log
+     */
+    void log(final Log log)
+    {
+        log.info("Tracing metrics" + (this.upToDate ? " (up-to-date)" : "") + ":");
+        for (final Phase phase : this.phases)
+        {
+            log.info(String.format(Locale.ROOT, "  %-10s %8d ms wall, %8s CPU, %10s allocated", phase.name(),
+                    phase.wallNanos() / NANOS_PER_MILLI, formatMillis(phase.cpuNanos()),
+                    formatBytes(phase.allocatedBytes())));
+        }
+        final Map<String, Double> throughput = getThroughput();
+        if (!throughput.isEmpty())
+        {
+            final StringJoiner joiner = new StringJoiner(", ", "  throughput: ", "");
+            throughput.forEach((name, value) -> joiner
+                    .add(String.format(Locale.ROOT, "%.0f %s/s", value, name.replace("PerSecond", ""))));
+            log.info(joiner.toString());
+        }
+    }
+
+    private static String formatMillis(final long nanos)
+    {
+        return nanos < 0 ? "n/a" : toMillis(nanos) + " ms";
+    }
+
+    private static long toMillis(final long nanos)
+    {
+        return nanos < 0 ? -1 : nanos / NANOS_PER_MILLI;
+    }
+
+    private static String formatBytes(final long bytes)
+    {
+        return bytes < 0 ? "n/a" : String.format(Locale.ROOT, "%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Write the metrics as JSON.
+     *
+     * @param file
+     *            target file
+     */
+    void write(final Path file)
+    {
+        try
+        {
+            if (file.getParent() != null)
+            {
+                Files.createDirectories(file.getParent());
+            }
+            Files.writeString(file, toJson(), StandardCharsets.UTF_8);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error writing metrics to '" + file + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    /**
+     * Format the metrics as JSON.
+     *
+     * @return JSON document
+     */
+    String toJson()
+    {
+        final StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"goal\": ").append(quote(this.goal)).append(",\n");
+        json.append("  \"project\": ").append(quote(this.project)).append(",\n");
+        json.append("  \"timestamp\": ").append(quote(Instant.now().toString())).append(",\n");
+        json.append("  \"upToDate\": ").append(this.upToDate).append(",\n");
+        json.append("  \"counts\": {");
+        appendEntries(json, this.counts, String::valueOf);
+        json.append("},\n");
+        json.append("  \"phases\": [");
+        for (int i = 0; i < this.phases.size(); i++)
+        {
+            final Phase phase = this.phases.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": ").append(quote(phase.name()))
+                    .append(", \"wallTimeMillis\": ").append(phase.wallNanos() / NANOS_PER_MILLI)
+                    .append(", \"cpuTimeMillis\": ").append(toMillis(phase.cpuNanos()))
+                    .append(", \"allocatedBytes\": ").append(phase.allocatedBytes()).append("}");
+        }
+        json.append(this.phases.isEmpty() ? "" : "\n  ").append("],\n");
+        json.append("  \"throughput\": {");
+        appendEntries(json, getThroughput(), value -> String.format(Locale.ROOT, "%.1f", value));
+        json.append("}\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    private static <T> void appendEntries(final StringBuilder json, final Map<String, T> entries,
+            final Function<T, String> formatter)
+    {
+        final StringJoiner joiner = new StringJoiner(", ");
+        entries.forEach((name, value) -> joiner.add(quote(name) + ": " + formatter.apply(value)));
+        json.append(joiner);
+    }
+
+    private static String quote(final String value)
+    {
+        final StringBuilder quoted = new StringBuilder("\"");
+        for (final char character : value.toCharArray())
+        {
+            switch (character)
+            {
+            case '"' -> quoted.append("\\\"");
+            case '\\' -> quoted.append("\\\\");
+            case '\n' -> quoted.append("\\n");
+            case '\r' -> quoted.append("\\r");
+            case '\t' -> quoted.append("\\t");
+            default ->
+            {
+                if (character < 0x20)
+                {
+                    quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) character));
+                }
+                else
+                {
+                    quoted.append(character);
+                }
+            }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Metrics of one phase.
+     *
+     * @param name
+     *            name of the phase
+     * @param wallNanos
+     *            elapsed wall time in nanoseconds
+     * @param cpuNanos
+     *            CPU time of the process in nanoseconds or {@code -1}
+     * @param allocatedBytes
+     *            bytes allocated by the goal thread or {@code -1}
+     */
+    record Phase(String name, long wallNanos, long cpuNanos, long allocatedBytes)
+    {
+    }
+}
@@ -1,37 +1,23 @@
 package org.itsallcode.openfasttrace.maven;
 
-import static java.util.Collections.emptySet;
-
-import java.io.*;
-import java.nio.file.Files;
+import java.io.File;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
-import org.apache.maven.execution.MavenSession;
-import org.apache.maven.model.Resource;
-import org.apache.maven.plugin.AbstractMojo;
-import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.*;
 import org.apache.maven.project.*;
-import org.itsallcode.openfasttrace.api.*;
-import org.itsallcode.openfasttrace.api.core.*;
-import org.itsallcode.openfasttrace.api.importer.ImportSettings;
-import org.itsallcode.openfasttrace.api.report.ReportVerbosity;
-import org.itsallcode.openfasttrace.core.Oft;
-import org.itsallcode.openfasttrace.core.OftRunner;
+import org.eclipse.aether.RepositorySystem;
 
 /**
  * Trace requirements using
  * <a href="https://github.com/itsallcode/openfasttrace">OpenFastTrace</a>.
  */
 @Mojo(name = "trace", defaultPhase = LifecyclePhase.VERIFY, threadSafe = true)
-public class TraceMojo extends AbstractMojo
+public class TraceMojo extends AbstractTraceMojo
 {
-    private static final String WILDCARD_TAG = "_";
-
     /**
      * Location of the directory where the reports are generated.
      * <p>
@@ -41,127 +27,81 @@ public class TraceMojo extends AbstractMojo
     private File outputDirectory;
 
     /**
-     * Let build fail when tracing fails.
+     * Location of the import cache file.
      * <p>
-     * Default: {@code true}
-     */
-    @Parameter(property = "openfasttrace.failBuild", defaultValue = "true", required = true)
-    private boolean failBuild;
-
-    /**
-     * The report output format.
-     * <ul>
-     * <li>{@code html}: HTML format (default)</li>
-     * <li>{@code plain}: Plain text format</li>
-     * </ul>
+     * Default:
+     * <code>${project.build.directory}/openfasttrace/import-cache.bin</code>
      */
-    @Parameter(property = "openfasttrace.reportOutputFormat", defaultValue = "html", required = true)
-    private String reportOutputFormat;
+    @Parameter(property = "openfasttrace.importCacheFile", defaultValue = "${project.build.directory}/openfasttrace/import-cache.bin")
+    File importCacheFile;
 
     /**
-     * The report verbosity.
-     * <ul>
-     * <li>{@code QUIET}</li>
-     * <li>{@code MINIMAL}</li>
-     * <li>{@code SUMMARY}</li>
-     * <li>{@code FAILURES}</li>
-     * <li>{@code FAILURE_SUMMARIES}</li>
-     * <li>{@code FAILURE_DETAILS} (default)</li>
-     * <li>{@code ALL}</li>
-     * </ul>
-     */
-    @Parameter(property = "openfasttrace.reportVerbosity", defaultValue = "FAILURE_DETAILS", required = true)
-    private ReportVerbosity reportVerbosity;
-
-    /**
-     * Show the origin in the tracing report.
+     * Number of threads used for building the projects of sub-modules that
+     * are not part of the current reactor. Sibling modules are built in
+     * parallel, the order of the traced directories is not affected.
      * <p>
-     * Default: <code>false</code>
-     */
-    @Parameter(property = "openfasttrace.reportShowOrigin", defaultValue = "false", required = true)
-    private boolean reportShowOrigin;
-
-    /**
-     * Determines if the details sections for specification items in the HTML
-     * report are hidden or visible.
-     * <ul>
-     * <li>{@code COLLAPSE}: hide details sections (default)</li>
-     * <li>{@code EXPAND}: show details section</li>
-     * </ul>
-     */
-    @Parameter(property = "openfasttrace.detailsSectionDisplay", defaultValue = "COLLAPSE", required = true)
-    private DetailsSectionDisplay detailsSectionDisplay;
-
-    /**
-     * Determines which artifact types should be imported.
-     * <ul>
-     * <li>If the artifactTypes set is null, no filtering based on artifact type
-     * will be applied.</li>
-     * <li>If the artifactTypes set is not null, only artifacts with types that
-     * match the specified types will be imported.</li>
-     * </ul>
+     * Default: {@code 1}
      */
-    @Parameter(property = "openfasttrace.artifactTypes")
-    Set<String> artifactTypes;
+    @Parameter(property = "openfasttrace.resolverThreads", defaultValue = "1")
+    int resolverThreads;
 
     /**
-     * Determines which tags should be imported.
+     * Load the specification items of the dependencies of the project from
+     * their item bundles, see the {@code bundle} goal. Bundles are taken from
+     * projects of the current reactor or, for dependencies matching
+     * {@link #dependencyBundleIncludes}, resolved from the repositories.
+     * Dependencies without a bundle are skipped.
      * <p>
-     * Import only specification items that have at least one of the listed
-     * tags. If you add a single underscore {@code _}, specification items that
-     * have no tags at all are also imported.
-     * <p>
-     * Default: Import all specification items.
+     * Default: <code>false</code>
      */
-    @Parameter(property = "openfasttrace.tags")
-    Set<String> tags;
+    @Parameter(property = "openfasttrace.dependencyBundles", defaultValue = "false")
+    boolean dependencyBundles;
 
     /**
-     * Determines which statuses should be imported.
-     * <p>
-     * Only artifacts with statuses that match the specified statuses will be
-     * imported. Artifacts without an explicit status are considered
-     * {@code APPROVED}.
+     * Dependencies whose item bundles are resolved from the repositories when
+     * {@link #dependencyBundles} is enabled. Each entry is a {@code groupId}
+     * or {@code groupId:artifactId}, {@code *} matches any characters. Other
+     * dependencies are not looked up, so the build doesn't ask the remote
+     * repositories for bundles that were never published.
      * <p>
-     * Default: {@code APPROVED}
-     * <p>
-     * Valid values: {@code APPROVED}, {@code PROPOSED}, {@code DRAFT},
-     * {@code REJECTED}.
+     * Default: only use bundles of projects in the current reactor
      */
-    @Parameter(property = "openfasttrace.statuses", defaultValue = "APPROVED")
-    Set<ItemStatus> statuses;
+    @Parameter(property = "openfasttrace.dependencyBundleIncludes")
+    List<String> dependencyBundleIncludes;
 
     /**
-     * Skip running OFT.
+     * Import the specification items packaged in the
+     * {@code META-INF/openfasttrace} directory of the JARs of the project's
+     * dependencies. The JARs are read in place without extracting them.
+     * Entries ending with {@code .oftb} are read as item bundles, all other
+     * entries are imported like traced files.
      * <p>
      * Default: <code>false</code>
      */
-    @Parameter(property = "openfasttrace.skip", defaultValue = "false")
-    private boolean skip;
-
-    @Parameter(defaultValue = "${project}", readonly = true)
-    private MavenProject project;
-
-    @Parameter(defaultValue = "${session}", readonly = true)
-    private MavenSession session;
+    @Parameter(property = "openfasttrace.dependencyJars", defaultValue = "false")
+    boolean dependencyJars;
 
     private final ProjectBuilder mavenProjectBuilder;
+    private final RepositorySystem repositorySystem;
 
     /**
      * Create a new instance.
-     * 
+     *
      * @param mavenProjectBuilder
      *            maven project builder
+     * @param repositorySystem
+     *            repository system used for resolving item bundles and JARs
      */
     @Inject
-    public TraceMojo(final ProjectBuilder mavenProjectBuilder)
+    public TraceMojo(final ProjectBuilder mavenProjectBuilder, final RepositorySystem repositorySystem)
     {
         this.mavenProjectBuilder = mavenProjectBuilder;
+        this.repositorySystem = repositorySystem;
     }
 
     /**
      * Constructor used in unit tests.
-     * 
+     *
      * @param mavenProjectBuilder
      *            maven project builder
      * @param project
@@ -169,230 +109,78 @@ public class TraceMojo extends AbstractMojo
      */
     TraceMojo(final ProjectBuilder mavenProjectBuilder, final MavenProject project)
     {
-        this(mavenProjectBuilder);
+        this(mavenProjectBuilder, (RepositorySystem) null);
         this.project = project;
     }
 
     @Override
-    public void execute() throws MojoFailureException
-    {
-        if (skip)
-        {
-            getLog().warn("Skipping OFT tracing because property 'openfasttrace.skip' was set to 'true'.");
-            return;
-        }
-        final Oft oft = new OftRunner();
-        getLog().info("Importing spec items...");
-        final ImportSettings importSettings = createImportSettings();
-        final List<SpecificationItem> items = oft.importItems(importSettings);
-        getLog().info("Imported " + items.size() + " items using settings " + formatImportSettings(importSettings));
-        final List<LinkedSpecificationItem> linkedItems = oft.link(items);
-        final Trace trace = oft.trace(linkedItems);
-        writeTracingReport(oft, trace);
-        if (trace.countDefects() == 0)
-        {
-            getLog().info("Tracing found no defects in " + trace.count() + " items");
-            return;
-        }
-        final String message = "Tracing found " + trace.countDefects() + " defects out of " + trace.count() + " items";
-        getLog().warn(message);
-        logTracingReport(oft, trace);
-        if (failBuild)
-        {
-            throw new MojoFailureException(message);
-        }
-    }
-
-    private static String formatImportSettings(final ImportSettings settings)
-    {
-        return "[inputs: " + settings.getInputs()
-                + ", path config: " + settings.getPathConfigs()
-                + ", filters: " + formatFilterSettings(settings.getFilters())
-                + "]";
-    }
-
-    private static String formatFilterSettings(final FilterSettings settings)
-    {
-        return "[any criteria set: " + settings.isAnyCriteriaSet() +
-                ", artifact type criteria set: " + settings.isArtifactTypeCriteriaSet() +
-                ", artifact types: " + settings.getArtifactTypes()
-                + ", tag criteria set: " + settings.isTagCriteriaSet()
-                + ", tags: " + settings.getTags() +
-                ", status criteria set: " + settings.isStatusCriteriaSet() +
-                ", statuses: " + settings.getWantedStatuses() +
-                ", without tags: " + settings.withoutTags() + "]";
-    }
-
-    private static void logTracingReport(final Oft oft, final Trace trace)
-    {
-        final ReportSettings reportSettings = ReportSettings.builder()
-                .outputFormat("plain")
-                .verbosity(ReportVerbosity.FAILURE_DETAILS)
-                .showOrigin(false)
-                .build();
-        oft.reportToStdOut(trace, reportSettings);
-    }
-
-    private void writeTracingReport(final Oft oft, final Trace trace)
+    Path getOutputDirectory()
     {
-        final Path outputPath = getOutputPath();
-        final ReportSettings reportSettings = ReportSettings.builder()
-                .outputFormat(reportOutputFormat)
-                .verbosity(reportVerbosity)
-                .showOrigin(reportShowOrigin)
-                .detailsSectionDisplay(detailsSectionDisplay)
-                .build();
-        getLog().info("Writing tracing report to " + outputPath + " using settings " + formatSettings(reportSettings));
-        oft.reportToPath(trace, outputPath, reportSettings);
+        return outputDirectory.toPath();
     }
 
-    private static String formatSettings(final ReportSettings reportSettings)
+    @Override
+    String getGoal()
     {
-        return "[output format: " + reportSettings.getOutputFormat()
-                + ", verbosity: " + reportSettings.getReportVerbosity()
-                + ", show origin: " + reportSettings.showOrigin()
-                + ", newline: " + reportSettings.getNewline().name()
-                + ", detailsSectionDisplay: " + reportSettings.getDetailsSectionDisplay().name()
-                + "]";
+        return "trace";
     }
 
-    private Path getOutputPath()
+    @Override
+    Path getImportCacheFile()
     {
-        final String reportSuffix = "html".equals(reportOutputFormat) ? "html" : "txt";
-        final Path outputPath = outputDirectory.toPath().resolve("tracing-report." + reportSuffix);
-        createDir(outputPath.getParent());
-        return outputPath;
+        return importCacheFile.toPath();
     }
 
-    private static void createDir(final Path path)
-    {
-        if (path.toFile().exists())
-        {
-            return;
-        }
-        try
-        {
-            Files.createDirectories(path);
-        }
-        catch (final IOException exception)
-        {
-            throw new UncheckedIOException("Error creating directory '" + path + "': " + exception.getMessage(),
-                    exception);
-        }
-    }
-
-    ImportSettings createImportSettings()
+    @Override
+    List<Path> getInputPaths()
     {
         final List<Path> sourcePaths = getSourcePaths();
-        logSourcePaths(sourcePaths);
-        final ImportSettings.Builder settings = ImportSettings.builder()
-                .addInputs(sourcePaths);
-        final Optional<Path> docPath = getProjectSubPath("doc");
+        logSourcePaths(project.getBasedir().toPath(), sourcePaths);
+        final List<Path> inputPaths = new ArrayList<>(sourcePaths);
+        final Optional<Path> docPath = getDocPath(project);
         if (docPath.isPresent())
         {
             getLog().info("Tracing doc directory " + docPath.get());
-            settings.addInputs(docPath.get());
-        }
-        final FilterSettings filterSettings = FilterSettings.builder()
-                .artifactTypes(getFilteredArtifactTypes())
-                .tags(getFilteredTags())
-                .wantedStatuses(getFilteredStatuses())
-                .withoutTags(isFilterWithoutTags())
-                .build();
-        settings.filter(filterSettings);
-        return settings.build();
-    }
-
-    private Set<String> getFilteredArtifactTypes()
-    {
-        return artifactTypes == null ? emptySet() : artifactTypes;
-    }
-
-    private Set<ItemStatus> getFilteredStatuses()
-    {
-        return statuses == null ? emptySet() : statuses;
-    }
-
-    private Set<String> getFilteredTags()
-    {
-        if (tags == null)
-        {
-            return emptySet();
+            inputPaths.add(docPath.get());
         }
-        final Set<String> copy = new HashSet<>(tags);
-        copy.remove(WILDCARD_TAG);
-        return copy;
+        return inputPaths;
     }
 
-    private boolean isFilterWithoutTags()
+    @Override
+    List<Path> getDependencyBundles()
     {
-        if (tags == null || tags.isEmpty())
+        if (!dependencyBundles)
         {
-            return true;
+            return List.of();
         }
-        return tags.contains(WILDCARD_TAG);
+        return new DependencyBundleResolver(getLog(), this.repositorySystem, this.session)
+                .resolve(this.project, this.dependencyBundleIncludes);
     }
 
-    private void logSourcePaths(final List<Path> sourcePaths)
+    @Override
+    List<Path> getDependencyJars()
     {
-        if (!getLog().isInfoEnabled())
+        if (!dependencyJars)
         {
-            return;
+            return List.of();
         }
-        final Path baseDir = project.getBasedir().toPath();
-        final List<Path> relativePaths = sourcePaths.stream().map(baseDir::relativize).toList();
-        getLog().info(
-                "Tracing " + sourcePaths.size() + " sub-directories of base dir " + baseDir + ": "
-                        + relativePaths);
+        return new DependencyBundleResolver(getLog(), this.repositorySystem, this.session)
+                .resolveJars(this.project);
     }
 
     private List<Path> getSourcePaths()
     {
-        return getSourcePathOfProject(this.project);
-    }
-
-    private Path getPomOfSubModule(final String moduleName)
-    {
-        return this.project.getBasedir().toPath().resolve(moduleName).resolve("pom.xml");
-    }
-
-    private MavenProject readProject(final Path pomFile)
-    {
-        try
-        {
-            final ProjectBuildingResult build = this.mavenProjectBuilder.build(pomFile.toFile(),
-                    this.session.getProjectBuildingRequest());
-            return build.getProject();
-        }
-        catch (final ProjectBuildingException exception)
-        {
-            throw new IllegalStateException(
-                    "Failed to read sub module \"" + pomFile + "\".", exception);
-        }
-    }
-
-    private List<Path> getSourcePathOfProject(final MavenProject mavenProject)
-    {
-        final Stream<Path> sourcePathsOfSubModules = mavenProject.getModules().stream()
-                .map(moduleName -> readProject(getPomOfSubModule(moduleName)))
-                .flatMap(eachProject -> this.getSourcePathOfProject(eachProject).stream());
-        final List<String> compileSourceRoots = mavenProject.getCompileSourceRoots();
-        final List<String> testCompileSourceRoots = mavenProject.getTestCompileSourceRoots();
-        final List<String> resourceDirs = mavenProject.getResources().stream().map(Resource::getDirectory)
-                .toList();
-        final List<String> testResourceDirs = mavenProject.getTestResources().stream().map(Resource::getDirectory)
-                .toList();
-        final Stream<Path> sourcePaths = Stream
-                .of(compileSourceRoots, resourceDirs, testCompileSourceRoots, testResourceDirs)
-                .flatMap(List::stream)
-                .map(Path::of)
-                .filter(Files::exists);
-        return Stream.concat(sourcePathsOfSubModules, sourcePaths).toList();
+        final ModuleProjectResolver moduleResolver = new ModuleProjectResolver(getLog(), this.mavenProjectBuilder,
+                this.session, this.resolverThreads);
+        moduleResolver.resolveModuleTree(this.project);
+        return getSourcePathOfProject(moduleResolver, this.project);
     }
 
-    private Optional<Path> getProjectSubPath(final String dir)
+    private List<Path> getSourcePathOfProject(final ModuleProjectResolver moduleResolver,
+            final MavenProject mavenProject)
     {
-        final File file = new File(project.getBasedir(), dir);
-        return file.exists() ? Optional.of(file.toPath()) : Optional.empty();
+        final Stream<Path> sourcePathsOfSubModules = moduleResolver.getModules(mavenProject).stream()
+                .flatMap(eachProject -> this.getSourcePathOfProject(moduleResolver, eachProject).stream());
+        return Stream.concat(sourcePathsOfSubModules, getOwnSourcePaths(mavenProject)).toList();
     }
 }
@@ -0,0 +1,323 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import org.apache.maven.plugin.logging.Log;
+import org.itsallcode.openfasttrace.api.ReportSettings;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+
+/**
+ * Decides whether tracing can be skipped because neither the traced files nor
+ * the configuration changed since the last run.
+ * <p>
+ * The fingerprint covers the import cache key (OpenFastTrace version,
+ * importer plugins and filter settings, see
+ * {@link ImportCache#createKey(ImportSettings)}), the remaining import
+ * configuration like input filter and content pre-filter, the settings and
+ * locations of all reports and path, size and modification time of every
+ * input file.
+ * The fingerprint and the outcome of the last run are stored in a properties
+ * file together with size and modification time of the written reports, so
+ * that a deleted or modified report is detected as well. For paged HTML
+ * reports this includes the manifest and all pages in the page directory.
+ */
+final class UpToDateCheck
+{
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String ITEM_COUNT = "items";
+    private static final String DEFECT_COUNT = "defects";
+    private static final String REPORT_PREFIX = "report.";
+    private static final String SIZE_SUFFIX = ".size";
+    private static final String LAST_MODIFIED_SUFFIX = ".lastModified";
+
+    private final Log log;
+    private final Path stateFile;
+    private final Map<Path, ReportSettings> reports;
+    private final InputFilter inputFilter;
+    private final int htmlPageSize;
+
+    /**
+     * Create a new check.
+     *
+     * @param log
+     *            maven log
+     * @param stateFile
+     *            file storing the fingerprint and outcome of the last run
+     * @param reports
+     *            settings of the tracing reports by output path
+     * @param inputFilter
+     *            include and exclude patterns for the traced files
+     * @param htmlPageSize
+     *            page size of paged HTML reports, less than 1 for single file
+     *            HTML reports
+     */
+    UpToDateCheck(final Log log, final Path stateFile, final Map<Path, ReportSettings> reports,
+            final InputFilter inputFilter, final int htmlPageSize)
+    {
+        this.log = log;
+        this.stateFile = stateFile;
+        this.reports = reports;
+        this.inputFilter = inputFilter;
+        this.htmlPageSize = htmlPageSize;
+    }
+
+    /**
+     * Calculate the fingerprint for the given import settings and
+     * configuration, the report settings, the files found below the inputs of
+     * the import settings and the item bundles and JARs of dependencies.
+     *
+     * @param importSettings
+     *            import settings
+     * @param importConfiguration
+     *            description of all other settings that influence the
+     *            imported items, e.g. the input filter and the content
+     *            pre-filter
+     * @param dependencyFiles
+     *            item bundles and JARs loaded in addition to the inputs
+     * @param focus
+     *            IDs of the focus items, empty if all items are traced
+     * @return fingerprint
+     */
+    String createFingerprint(final ImportSettings importSettings, final String importConfiguration,
+            final List<Path> dependencyFiles, final List<String> focus)
+    {
+        final MessageDigest digest = createDigest();
+        update(digest, ImportCache.createKey(importSettings));
+        update(digest, "import configuration: " + importConfiguration);
+        final Set<Path> outputFiles = new HashSet<>();
+        final List<Path> outputDirectories = new ArrayList<>();
+        outputFiles.add(normalize(this.stateFile));
+        for (final Map.Entry<Path, ReportSettings> report : this.reports.entrySet())
+        {
+            final ReportSettings reportSettings = report.getValue();
+            update(digest, "report: " + reportSettings.getOutputFormat()
+                    + ", " + reportSettings.getReportVerbosity()
+                    + ", " + reportSettings.showOrigin()
+                    + ", " + reportSettings.getDetailsSectionDisplay()
+                    + ", " + normalize(report.getKey()));
+            outputFiles.add(normalize(report.getKey()));
+            if (isPaged(report.getKey()))
+            {
+                outputDirectories.add(normalize(PagedHtmlReport.getPageDirectory(report.getKey())));
+            }
+        }
+        if (this.htmlPageSize > 0)
+        {
+            update(digest, "html page size: " + this.htmlPageSize);
+        }
+        update(digest, "inputs: " + importSettings.getInputs() + ", focus: " + focus);
+        int fileCount = 0;
+        for (final Path file : SourceFileCollector.collect(importSettings.getInputs(), this.inputFilter))
+        {
+            final Path path = normalize(file);
+            if (outputFiles.contains(path) || outputDirectories.stream().anyMatch(path::startsWith))
+            {
+                continue;
+            }
+            final BasicFileAttributes attributes = readAttributes(path);
+            update(digest, path + "\t" + attributes.size() + "\t" + attributes.lastModifiedTime().toMillis());
+            fileCount++;
+        }
+        for (final Path dependencyFile : dependencyFiles)
+        {
+            final Path path = normalize(dependencyFile);
+            final BasicFileAttributes attributes = readAttributes(path);
+            update(digest, "dependency: " + path + "\t" + attributes.size() + "\t"
+                    + attributes.lastModifiedTime().toMillis());
+        }
+        this.log.debug("Calculated fingerprint of " + fileCount + " input files and " + dependencyFiles.size()
+                + " dependency files.");
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(final MessageDigest digest, final String value)
+    {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    /**
+     * Get the outcome of the last run if it used the same fingerprint and the
+     * report was not changed since.
+     *
+     * @param fingerprint
+     *            current fingerprint
+     * @return outcome of the last run or an empty optional if tracing must run
+     */
+    Optional<Outcome> getPreviousOutcome(final String fingerprint)
+    {
+        final Optional<Properties> state = readState();
+        if (state.isEmpty())
+        {
+            return Optional.empty();
+        }
+        final Properties properties = state.get();
+        if (!fingerprint.equals(properties.getProperty(FINGERPRINT)))
+        {
+            this.log.info("Traced files or configuration changed since last run.");
+            return Optional.empty();
+        }
+        final Optional<Path> changedReport = this.reports.keySet().stream()
+                .filter(reportFile -> !isReportUnchanged(properties, reportFile))
+                .findFirst();
+
+        if (changedReport.isPresent())
+        {
+            this.log.info("Tracing report " + changedReport.get() + " is missing or was modified.");
+            return Optional.empty();
+        }
+        try
+        {
+            return Optional.of(new Outcome(Integer.parseInt(properties.getProperty(ITEM_COUNT)),
+                    Integer.parseInt(properties.getProperty(DEFECT_COUNT))));
+        }
+        catch (final NumberFormatException exception)
+        {
+            this.log.warn("Invalid tracing state in " + this.stateFile + ": " + exception.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Optional<Properties> readState()
+    {
+        if (!Files.exists(this.stateFile))
+        {
+            return Optional.empty();
+        }
+        final Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(this.stateFile, StandardCharsets.UTF_8))
+        {
+            properties.load(reader);
+            return Optional.of(properties);
+        }
+        catch (final IOException | IllegalArgumentException exception)
+        {
+            this.log.warn("Failed to read tracing state " + this.stateFile + ": " + exception.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private boolean isReportUnchanged(final Properties properties, final Path reportFile)
+    {
+        if (!isFileUnchanged(properties, reportFile))
+        {
+            return false;
+        }
+        if (!isPaged(reportFile))
+        {
+            return true;
+        }
+        final List<Path> pageFiles = PagedHtmlReport.getPageFiles(reportFile);
+        return !pageFiles.isEmpty() && pageFiles.stream().allMatch(file -> isFileUnchanged(properties, file));
+    }
+
+    private static boolean isFileUnchanged(final Properties properties, final Path file)
+    {
+        if (!Files.isRegularFile(file))
+        {
+            return false;
+        }
+        final BasicFileAttributes attributes = readAttributes(file);
+        final String key = REPORT_PREFIX + normalize(file);
+        return String.valueOf(attributes.size()).equals(properties.getProperty(key + SIZE_SUFFIX))
+                && String.valueOf(attributes.lastModifiedTime().toMillis())
+                        .equals(properties.getProperty(key + LAST_MODIFIED_SUFFIX));
+    }
+
+    /**
+     * Store the fingerprint and outcome of the current run.
+     *
+     * @param fingerprint
+     *            current fingerprint
+     * @param outcome
+     *            outcome of the current run
+     */
+    void save(final String fingerprint, final Outcome outcome)
+    {
+        final Properties properties = new Properties();
+        properties.setProperty(FINGERPRINT, fingerprint);
+        properties.setProperty(ITEM_COUNT, String.valueOf(outcome.itemCount()));
+        properties.setProperty(DEFECT_COUNT, String.valueOf(outcome.defectCount()));
+        for (final Path reportFile : this.reports.keySet())
+        {
+            recordFile(properties, reportFile);
+            if (isPaged(reportFile))
+            {
+                PagedHtmlReport.getPageFiles(reportFile).forEach(file -> recordFile(properties, file));
+            }
+        }
+        try
+        {
+            Files.createDirectories(this.stateFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(this.stateFile, StandardCharsets.UTF_8))
+            {
+                properties.store(writer, "OpenFastTrace tracing state");
+            }
+        }
+        catch (final IOException exception)
+        {
+            this.log.warn("Failed to write tracing state " + this.stateFile + ": " + exception.getMessage());
+        }
+    }
+
+    private static void recordFile(final Properties properties, final Path file)
+    {
+        final BasicFileAttributes attributes = readAttributes(file);
+        final String key = REPORT_PREFIX + normalize(file);
+        properties.setProperty(key + SIZE_SUFFIX, String.valueOf(attributes.size()));
+        properties.setProperty(key + LAST_MODIFIED_SUFFIX, String.valueOf(attributes.lastModifiedTime().toMillis()));
+    }
+
+    private boolean isPaged(final Path reportFile)
+    {
+        return ReportWriter.isPaged(this.reports.get(reportFile).getOutputFormat(), this.htmlPageSize);
+    }
+
+    private static BasicFileAttributes readAttributes(final Path file)
+    {
+        try
+        {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error reading attributes of '" + file + "': " + exception.getMessage(),
+                    exception);
+        }
+    }
+
+    private static Path normalize(final Path path)
+    {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (final NoSuchAlgorithmException exception)
+        {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", exception);
+        }
+    }
+
+    /**
+     * Outcome of a tracing run.
+     *
+     * @param itemCount
+     *            number of traced items
+     * @param defectCount
+     *            number of defect items
+     */
+    record Outcome(int itemCount, int defectCount)
+    {
+    }
+}
@@ -0,0 +1,165 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+import javax.inject.Inject;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.*;
+import org.apache.maven.project.ProjectBuilder;
+import org.eclipse.aether.RepositorySystem;
+import org.itsallcode.openfasttrace.api.ReportSettings;
+import org.itsallcode.openfasttrace.api.core.LinkedSpecificationItem;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.core.SpecificationItemId;
+import org.itsallcode.openfasttrace.api.core.Trace;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.OftRunner;
+
+/**
+ * Trace requirements continuously while editing specifications and sources.
+ * <p>
+ * The traced directories are resolved and imported once, like for the
+ * {@code trace} goal. Then the goal watches the directories and on each
+ * change re-imports only the changed files, traces again, rewrites the
+ * reports and logs which defects were added or fixed. Changes of the reports
+ * themselves are ignored. Stop the goal with Ctrl+C.
+ * <p>
+ * Each trace links fresh copies of the kept items, because linking modifies
+ * them. Item bundles and JARs of dependencies are loaded once at the start.
+ * The content pre-filter and the import caches apply to every imported
+ * file. {@code changedSince} is rejected, because files change while
+ * watching.
+ */
+@Mojo(name = "watch", aggregator = true, threadSafe = true)
+public class WatchMojo extends TraceMojo
+{
+    /**
+     * Time in milliseconds without further changes before tracing again, so
+     * that saving several files at once results in a single trace.
+     * <p>
+     * Default: {@code 200}
+     */
+    @Parameter(property = "openfasttrace.watchDebounce", defaultValue = "200")
+    long watchDebounce;
+
+    /**
+     * Create a new instance.
+     *
+     * @param mavenProjectBuilder
+     *            maven project builder
+     * @param repositorySystem
+     *            repository system used for resolving item bundles and JARs
+     */
+    @Inject
+    public WatchMojo(final ProjectBuilder mavenProjectBuilder, final RepositorySystem repositorySystem)
+    {
+        super(mavenProjectBuilder, repositorySystem);
+    }
+
+    @Override
+    String getGoal()
+    {
+        return "watch";
+    }
+
+    @Override
+    public void execute() throws MojoFailureException
+    {
+        if (skip)
+        {
+            getLog().warn("Skipping OFT watch because property 'openfasttrace.skip' was set to 'true'.");
+            return;
+        }
+        if (changedSince != null && !changedSince.isBlank())
+        {
+            throw new MojoFailureException("The watch goal does not support 'changedSince' because files change"
+                    + " while watching. Remove 'changedSince' from the configuration of the watch goal.");
+        }
+        final ImportSettings importSettings = createImportSettings();
+        final InputFilter inputFilter = createInputFilter();
+        final Map<Path, ReportSettings> reports = createReports();
+        final FocusClosure focusClosure = createFocusClosure();
+        final Oft oft = new OftRunner();
+        final List<SpecificationItem> dependencyItems = addDependencyItems(List.of(), getDependencyBundles(),
+                getDependencyJars(), importSettings);
+        final ContentPrefilter prefilter = contentPrefilter ? new ContentPrefilter(prefilterMaxFileSize) : null;
+        final ImportCache cache = importCache ? ImportCache.load(getLog(), getImportCacheFile(),
+                ImportCache.createKey(importSettings)) : null;
+        final SharedImportCache sharedCache = sharedImportCache ? SharedImportCache.instance() : null;
+        final FileImporter importer = sharedCache == null ? new FileImporter(importSettings)
+                : sharedCache.getImporter(importSettings);
+        final Function<Path, List<SpecificationItem>> fileImporter = ImportRunner.createFileImporter(importer,
+                prefilter, cache, sharedCache == null ? null
+                        : sharedCache.openSession(sharedCache.getKey(importSettings), sharedImportCacheMaxItems));
+        final IncrementalImport incrementalImport = new IncrementalImport(importer, fileImporter,
+                importSettings.getInputs(), inputFilter);
+        try (FileWatcher watcher = FileWatcher.watch(importSettings.getInputs(), inputFilter,
+                createReportWriter(oft).getOutputPaths(reports)))
+        {
+            final long start = System.nanoTime();
+            incrementalImport.importAll();
+            saveCache(cache);
+            getLog().info("Imported " + incrementalImport.getFileCount() + " files.");
+            Set<SpecificationItemId> defects = trace(oft, incrementalImport, dependencyItems, focusClosure,
+                    reports, Set.of(), start);
+            getLog().info("Watching " + watcher.getWatchedDirectoryCount()
+                    + " directories for changes, press Ctrl+C to stop.");
+            while (!Thread.currentThread().isInterrupted())
+            {
+                final Set<Path> changes = watcher.awaitChanges(Duration.ofMillis(watchDebounce));
+                final long changeStart = System.nanoTime();
+                try
+                {
+                    final int importedFiles = incrementalImport.update(changes);
+                    saveCache(cache);
+                    getLog().info("Re-imported " + importedFiles + " of " + incrementalImport.getFileCount()
+                            + " files.");
+                    defects = trace(oft, incrementalImport, dependencyItems, focusClosure, reports, defects,
+                            changeStart);
+                }
+                catch (final UncheckedIOException exception)
+                {
+                    getLog().warn("Failed to trace changes, waiting for the next change: " + exception.getMessage());
+                }
+            }
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+        getLog().info("Stopped watching for changes.");
+    }
+
+    private void saveCache(final ImportCache cache)
+    {
+        if (cache != null)
+        {
+            cache.save();
+            getLog().debug("Import cache: " + cache.formatStatistics() + ".");
+        }
+    }
+
+    private Set<SpecificationItemId> trace(final Oft oft, final IncrementalImport incrementalImport,
+            final List<SpecificationItem> dependencyItems, final FocusClosure focusClosure,
+            final Map<Path, ReportSettings> reports, final Set<SpecificationItemId> previousDefects, final long start)
+    {
+        final List<SpecificationItem> importedItems = incrementalImport.getItems();
+        importedItems.addAll(SpecificationItemCopy.copyAll(dependencyItems));
+        final List<SpecificationItem> items = focusClosure == null ? importedItems
+                : applyFocus(focusClosure, importedItems);
+        final List<LinkedSpecificationItem> linkedItems = oft.link(items);
+        final Trace trace = oft.trace(focusClosure == null ? linkedItems : focusClosure.selectTraced(linkedItems));
+        createReportWriter(oft).write(trace, reports);
+        final DefectDelta delta = DefectDelta.compare(previousDefects, trace);
+        final List<String> lines = delta.format(consoleMaxDefects);
+        getLog().info("Traced in " + (System.nanoTime() - start) / 1_000_000 + " ms: " + lines.get(0));
+        lines.subList(1, lines.size()).forEach(getLog()::info);
+        return DefectDelta.getDefectIds(trace);
+    }
+}
@@ -0,0 +1,116 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChangedScopeTest
+{
+    @TempDir
+    Path tempDir;
+
+    Path repo;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.repo = tempDir.toRealPath().resolve("repo");
+        Files.createDirectories(repo.resolve("doc"));
+        Files.writeString(repo.resolve("doc/unchanged.md"), "unchanged");
+        Files.writeString(repo.resolve("doc/modified.md"), "original");
+        Files.writeString(repo.resolve(".gitignore"), "target/\n");
+        git("init", "--quiet");
+        git("add", ".");
+        git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "--quiet", "-m", "base");
+        git("branch", "base");
+    }
+
+    @Test
+    void findsModifiedAndUntrackedFiles() throws Exception
+    {
+        Files.writeString(repo.resolve("doc/modified.md"), "changed");
+        Files.writeString(repo.resolve("doc/new.md"), "new");
+        final ChangedScope scope = ChangedScope.fromGit(repo.resolve("doc"), "base");
+        assertThat(scope.isChanged(repo.resolve("doc/modified.md")), is(true));
+        assertThat(scope.isChanged(repo.resolve("doc/new.md")), is(true));
+        assertThat(scope.isChanged(repo.resolve("doc/unchanged.md")), is(false));
+        assertThat(scope.getChangedFileCount(), equalTo(2));
+    }
+
+    @Test
+    void treatsIgnoredFileAsChanged() throws Exception
+    {
+        Files.createDirectories(repo.resolve("target"));
+        Files.writeString(repo.resolve("target/ignored.md"), "ignored");
+        final ChangedScope scope = ChangedScope.fromGit(repo, "base");
+        assertThat(scope.isChanged(repo.resolve("target/ignored.md")), is(true));
+        assertThat(scope.getChangedFileCount(), equalTo(0));
+    }
+
+    @Test
+    void treatsFileOutsideRepositoryAsChanged() throws Exception
+    {
+        final Path outside = Files.writeString(tempDir.toRealPath().resolve("outside.md"), "outside");
+        final ChangedScope scope = ChangedScope.fromGit(repo, "base");
+        assertThat(scope.isChanged(outside), is(true));
+    }
+
+    @Test
+    void findsFilesChangedInCommitsSinceMergeBase() throws Exception
+    {
+        Files.writeString(repo.resolve("doc/modified.md"), "committed change");
+        git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "--quiet", "-am", "change");
+        final ChangedScope scope = ChangedScope.fromGit(repo, "base");
+        assertThat(scope.isChanged(repo.resolve("doc/modified.md")), is(true));
+        assertThat(scope.isChanged(repo.resolve("doc/unchanged.md")), is(false));
+        assertThat(scope.getBaseCommit(), equalTo(git("rev-parse", "base").trim()));
+    }
+
+    @Test
+    void failsForUnknownReference()
+    {
+        final IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> ChangedScope.fromGit(repo, "does-not-exist"));
+        assertThat(exception.getMessage(), containsString("fatal:"));
+    }
+
+    @Test
+    void failsOutsideGitRepository() throws IOException
+    {
+        final Path noRepo = Files.createDirectories(tempDir.resolve("no-repo"));
+        Files.writeString(noRepo.resolve(".git"), "gitdir: does-not-exist");
+        assertThrows(IllegalStateException.class, () -> ChangedScope.fromGit(noRepo, "base"));
+    }
+
+    @Test
+    void normalizesPaths()
+    {
+        final ChangedScope scope = new ChangedScope("commit", Set.of(repo.resolve("doc/./other.md")),
+                Set.of(repo.resolve("doc/../doc/file.md")));
+        assertThat(scope.isChanged(repo.resolve("doc/file.md")), is(true));
+        assertThat(scope.isChanged(repo.resolve("doc/other.md")), is(false));
+    }
+
+    private String git(final String... arguments) throws Exception
+    {
+        final List<String> command = new ArrayList<>(List.of("git"));
+        command.addAll(Arrays.asList(arguments));
+        final Process process = new ProcessBuilder(command).directory(repo.toFile()).redirectErrorStream(true)
+                .start();
+        final String output = new String(process.getInputStream().readAllBytes());
+        assertThat(output, process.waitFor(), equalTo(0));
+        return output;
+    }
+}
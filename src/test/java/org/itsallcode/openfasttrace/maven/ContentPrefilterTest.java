@@ -0,0 +1,108 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContentPrefilterTest
+{
+    @TempDir
+    Path tempDir;
+
+    private final ContentPrefilter prefilter = new ContentPrefilter(1024 * 1024);
+
+    @Test
+    void acceptsFileWithItemId() throws IOException
+    {
+        assertThat(prefilter.accepts(file("spec.md", "# Title\n`req~title~1`\n")), is(true));
+    }
+
+    @Test
+    void acceptsFileWithCoverageTag() throws IOException
+    {
+        assertThat(prefilter.accepts(file("Source.java", "// [impl->dsn~feature~1]\nclass Source {}\n")), is(true));
+    }
+
+    @Test
+    void acceptsSpecObjectFile() throws IOException
+    {
+        assertThat(prefilter.accepts(file("spec.xml", "<specdocument><specobjects doctype=\"req\">"
+                + "<specobject><id>name</id></specobject></specobjects></specdocument>")), is(true));
+    }
+
+    @Test
+    void acceptsMarkerBehindFirstBuffer() throws IOException
+    {
+        assertThat(prefilter.accepts(file("large.txt", "x".repeat(200_000) + "req~a~1")), is(true));
+    }
+
+    @Test
+    void acceptsSpecObjectAcrossBufferBoundary() throws IOException
+    {
+        assertThat(prefilter.accepts(file("large.xml", "x".repeat(64 * 1024 - 4) + "<specobject>")), is(true));
+    }
+
+    @Test
+    void reusedBufferDoesNotLeakContentOfPreviousFile() throws IOException
+    {
+        assertThat(prefilter.accepts(file("first.md", "x".repeat(1000) + "req~a~1")), is(true));
+        assertThat(prefilter.accepts(file("second.txt", "plain text")), is(false));
+    }
+
+    @Test
+    void acceptsZipArchiveWithoutScanning() throws IOException
+    {
+        assertThat(prefilter.accepts(Files.write(tempDir.resolve("specs.zip"), new byte[] { 'P', 'K', 3, 4, 0 })),
+                is(true));
+    }
+
+    @Test
+    void skipsFileWithoutMarker() throws IOException
+    {
+        assertThat(prefilter.accepts(file("plain.txt", "nothing to see here\n")), is(false));
+        assertThat(prefilter.formatSkippedFiles(),
+                equalTo("1 files (0 too large, 0 binary, 1 without specification item markers)"));
+    }
+
+    @Test
+    void skipsEmptyFile() throws IOException
+    {
+        assertThat(prefilter.accepts(file("empty.txt", "")), is(false));
+    }
+
+    @Test
+    void skipsBinaryFile() throws IOException
+    {
+        final Path file = Files.write(tempDir.resolve("image.png"), new byte[] { (byte) 0x89, 'P', 'N', 'G', 0, '~' });
+        assertThat(prefilter.accepts(file), is(false));
+        assertThat(prefilter.formatSkippedFiles(),
+                equalTo("1 files (0 too large, 1 binary, 0 without specification item markers)"));
+    }
+
+    @Test
+    void skipsFileLargerThanLimit() throws IOException
+    {
+        final Path file = file("huge.md", "req~a~1" + "x".repeat(100));
+        assertThat(new ContentPrefilter(100).accepts(file), is(false));
+    }
+
+    @Test
+    void noLimitForZeroMaxFileSize() throws IOException
+    {
+        final Path file = file("huge.md", "req~a~1" + "x".repeat(100));
+        assertThat(new ContentPrefilter(0).accepts(file), is(true));
+    }
+
+    private Path file(final String name, final String content) throws IOException
+    {
+        return Files.writeString(tempDir.resolve(name), content, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,72 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.itsallcode.openfasttrace.api.core.*;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.OftRunner;
+import org.junit.jupiter.api.Test;
+
+class DefectDeltaTest
+{
+    private static final SpecificationItemId A = SpecificationItemId.createId("req", "a", 1);
+    private static final SpecificationItemId B = SpecificationItemId.createId("req", "b", 1);
+    private static final SpecificationItemId C = SpecificationItemId.createId("req", "c", 1);
+
+    @Test
+    void findsNewAndFixedDefects()
+    {
+        final DefectDelta delta = DefectDelta.compare(Set.of(A, B), trace(uncovered(B), uncovered(C), covered(A)));
+        assertThat(delta.format(10), contains("4 items, 2 defects (1 new, 1 fixed)", "  + req~c~1", "  - req~a~1"));
+    }
+
+    @Test
+    void reportsNoChanges()
+    {
+        final DefectDelta delta = DefectDelta.compare(Set.of(A), trace(uncovered(A)));
+        assertThat(delta.format(10), contains("1 items, 1 defects (0 new, 0 fixed)"));
+    }
+
+    @Test
+    void limitsListedDefects()
+    {
+        final DefectDelta delta = DefectDelta.compare(Set.of(), trace(uncovered(A), uncovered(B), uncovered(C)));
+        assertThat(delta.format(1), contains("3 items, 3 defects (3 new, 0 fixed)", "  + req~a~1",
+                "  ... 2 more changes"));
+    }
+
+    @Test
+    void getsDefectIds()
+    {
+        assertThat(DefectDelta.getDefectIds(trace(uncovered(A), covered(B))), contains(A));
+    }
+
+    @SafeVarargs
+    private static Trace trace(final List<SpecificationItem> first, final List<SpecificationItem>... others)
+    {
+        final List<SpecificationItem> items = new ArrayList<>(first);
+        for (final List<SpecificationItem> other : others)
+        {
+            items.addAll(other);
+        }
+        final Oft oft = new OftRunner();
+        return oft.trace(oft.link(items));
+    }
+
+    private static List<SpecificationItem> uncovered(final SpecificationItemId id)
+    {
+        return List.of(SpecificationItem.builder().id(id).addNeedsArtifactType("impl").build());
+    }
+
+    private static List<SpecificationItem> covered(final SpecificationItemId id)
+    {
+        return List.of(SpecificationItem.builder().id(id).addNeedsArtifactType("impl").build(),
+                SpecificationItem.builder().id(SpecificationItemId.createId("impl", id.getName(), 1))
+                        .addCoveredId(id).build());
+    }
+}
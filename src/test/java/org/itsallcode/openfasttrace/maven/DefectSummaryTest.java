@@ -0,0 +1,69 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import java.util.List;
+
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.core.Trace;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.OftRunner;
+import org.junit.jupiter.api.Test;
+
+class DefectSummaryTest
+{
+    @Test
+    void summaryWithoutDefects()
+    {
+        final Trace trace = trace(item("req", "a").addNeedsArtifactType("dsn").build(),
+                item("dsn", "a").addCoveredId("req", "a", 1).build());
+        assertThat(DefectSummary.create(trace, 10).format(), contains("Defects per artifact type: {}", "Defects:"));
+    }
+
+    @Test
+    void summaryListsAllDefectsBelowLimit()
+    {
+        final Trace trace = trace(item("req", "a").addNeedsArtifactType("dsn").location("doc/spec.md", 3).build(),
+                item("feat", "b").addNeedsArtifactType("req").build());
+        assertThat(DefectSummary.create(trace, 10).format(), contains(
+                "Defects per artifact type: {feat=1, req=1}",
+                "Defects:",
+                "  req~a~1 (doc/spec.md:3): uncovered: dsn",
+                "  feat~b~1: uncovered: req"));
+    }
+
+    @Test
+    void summaryIsLimitedToMaxDefects()
+    {
+        final Trace trace = trace(item("req", "a").addNeedsArtifactType("dsn").build(),
+                item("req", "b").addNeedsArtifactType("dsn").build(),
+                item("req", "c").addNeedsArtifactType("dsn").build());
+        assertThat(DefectSummary.create(trace, 1).format(), contains(
+                "Defects per artifact type: {req=3}",
+                "First 1 of 3 defects:",
+                "  req~a~1: uncovered: dsn",
+                "  ... 2 more defects, see the tracing report for details."));
+    }
+
+    @Test
+    void summaryDescribesOrphanedCoverage()
+    {
+        final Trace trace = trace(item("dsn", "a").addCoveredId("req", "missing", 1).build());
+        assertThat(DefectSummary.create(trace, 10).format(), contains(
+                "Defects per artifact type: {dsn=1}",
+                "Defects:",
+                "  dsn~a~1: bad links: 1"));
+    }
+
+    private static SpecificationItem.Builder item(final String artifactType, final String name)
+    {
+        return SpecificationItem.builder().id(artifactType, name, 1);
+    }
+
+    private static Trace trace(final SpecificationItem... items)
+    {
+        final Oft oft = new OftRunner();
+        return oft.trace(oft.link(List.of(items)));
+    }
+}
@@ -0,0 +1,187 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.resolution.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class DependencyBundleResolverTest
+{
+    @Mock
+    Log logMock;
+    @Mock
+    RepositorySystem repositorySystemMock;
+    @Mock
+    MavenSession sessionMock;
+    @TempDir
+    Path tempDir;
+
+    private final DefaultRepositorySystemSession repositorySession = new DefaultRepositorySystemSession();
+    private MavenProject project;
+    private DependencyBundleResolver resolver;
+
+    @BeforeEach
+    void setup()
+    {
+        project = project("consumer");
+        resolver = new DependencyBundleResolver(logMock, repositorySystemMock, sessionMock);
+    }
+
+    @Test
+    void usesBundleAttachedByReactorProject()
+    {
+        final File bundle = tempDir.resolve("library-oft-items.oftb").toFile();
+        final List<org.apache.maven.artifact.Artifact> attachedArtifacts = List.of(
+                attachedArtifact("sources", tempDir.resolve("sources.jar").toFile()),
+                attachedArtifact(ItemBundle.CLASSIFIER, bundle));
+        final MavenProject dependencyProject = mock(MavenProject.class);
+        when(dependencyProject.getGroupId()).thenReturn("org.example");
+        when(dependencyProject.getArtifactId()).thenReturn("library");
+        when(dependencyProject.getVersion()).thenReturn("1.0");
+        when(dependencyProject.getAttachedArtifacts()).thenReturn(attachedArtifacts);
+        project.getDependencies().add(dependency("library"));
+        when(sessionMock.getProjects()).thenReturn(List.of(project, dependencyProject));
+        assertThat(resolver.resolve(project, List.of()), contains(bundle.toPath()));
+        verifyNoInteractions(repositorySystemMock);
+    }
+
+    @Test
+    void resolvesBundleFromRepository() throws ArtifactResolutionException
+    {
+        final File bundle = tempDir.resolve("library-1.0-oft-items.oftb").toFile();
+        project.getDependencies().add(dependency("library"));
+        when(sessionMock.getRepositorySession()).thenReturn(repositorySession);
+        final ArgumentCaptor<ArtifactRequest> request = ArgumentCaptor.forClass(ArtifactRequest.class);
+        when(repositorySystemMock.resolveArtifact(same(repositorySession), request.capture()))
+                .thenAnswer(invocation -> new ArtifactResult(invocation.getArgument(1))
+                        .setArtifact(request.getValue().getArtifact().setFile(bundle)));
+        assertThat(resolver.resolve(project, List.of("org.example:library")), contains(bundle.toPath()));
+        assertThat(request.getValue().getArtifact().toString(),
+                equalTo("org.example:library:oftb:oft-items:1.0"));
+    }
+
+    @Test
+    void resolvesBundlesOfIncludedGroupFromRepository() throws ArtifactResolutionException
+    {
+        final File bundle = tempDir.resolve("library-1.0-oft-items.oftb").toFile();
+        project.getDependencies().add(dependency("library"));
+        when(sessionMock.getRepositorySession()).thenReturn(repositorySession);
+        when(repositorySystemMock.resolveArtifact(same(repositorySession), any()))
+                .thenAnswer(invocation -> new ArtifactResult(invocation.getArgument(1)).setArtifact(
+                        invocation.<ArtifactRequest> getArgument(1).getArtifact().setFile(bundle)));
+        assertThat(resolver.resolve(project, List.of("org.*")), contains(bundle.toPath()));
+    }
+
+    @Test
+    void doesNotResolveBundleOfDependencyThatIsNotIncluded()
+    {
+        project.getDependencies().add(dependency("library"));
+        project.getDependencies().add(dependency("other"));
+        assertThat(resolver.resolve(project, List.of("org.example:other-*", "com.example")), empty());
+        verifyNoInteractions(repositorySystemMock);
+        verify(logMock, never()).info(any(CharSequence.class));
+    }
+
+    @Test
+    void skipsDependencyWithoutBundle() throws ArtifactResolutionException
+    {
+        project.getDependencies().add(dependency("library"));
+        project.getDependencies().add(dependency("other"));
+        when(sessionMock.getRepositorySession()).thenReturn(repositorySession);
+        when(repositorySystemMock.resolveArtifact(same(repositorySession), any()))
+                .thenThrow(new ArtifactResolutionException(List.of(), "not found"));
+        assertThat(resolver.resolve(project, List.of("org.example")), empty());
+        verify(logMock).info("No item bundle found for included dependencies "
+                + "[org.example:library, org.example:other]");
+    }
+
+    @Test
+    void doesNotResolveBundleOfReactorProjectWithoutBundle()
+    {
+        project.getDependencies().add(dependency("library"));
+        when(sessionMock.getProjects()).thenReturn(List.of(project("library")));
+        assertThat(resolver.resolve(project, List.of("org.example")), empty());
+        verifyNoInteractions(repositorySystemMock);
+    }
+
+    @Test
+    void resolvesJarsOfJarDependencies() throws ArtifactResolutionException
+    {
+        final File jar = tempDir.resolve("library-1.0.jar").toFile();
+        project.getDependencies().add(dependency("library"));
+        final Dependency pomDependency = dependency("bom");
+        pomDependency.setType("pom");
+        project.getDependencies().add(pomDependency);
+        when(sessionMock.getRepositorySession()).thenReturn(repositorySession);
+        final ArgumentCaptor<ArtifactRequest> request = ArgumentCaptor.forClass(ArtifactRequest.class);
+        when(repositorySystemMock.resolveArtifact(same(repositorySession), request.capture()))
+                .thenAnswer(invocation -> new ArtifactResult(invocation.getArgument(1))
+                        .setArtifact(request.getValue().getArtifact().setFile(jar)));
+        assertThat(resolver.resolveJars(project), contains(jar.toPath()));
+        assertThat(request.getValue().getArtifact().toString(), equalTo("org.example:library:jar:1.0"));
+    }
+
+    @Test
+    void usesJarOfReactorProject() throws IOException
+    {
+        final File jar = Files.writeString(tempDir.resolve("library-1.0.jar"), "jar").toFile();
+        final MavenProject dependencyProject = project("library");
+        final org.apache.maven.artifact.Artifact artifact = mock(org.apache.maven.artifact.Artifact.class);
+        when(artifact.getFile()).thenReturn(jar);
+        dependencyProject.setArtifact(artifact);
+        project.getDependencies().add(dependency("library"));
+        when(sessionMock.getProjects()).thenReturn(List.of(dependencyProject));
+        assertThat(resolver.resolveJars(project), contains(jar.toPath()));
+        verifyNoInteractions(repositorySystemMock);
+    }
+
+    private static MavenProject project(final String artifactId)
+    {
+        final Model model = new Model();
+        model.setGroupId("org.example");
+        model.setArtifactId(artifactId);
+        model.setVersion("1.0");
+        return new MavenProject(model);
+    }
+
+    private static Dependency dependency(final String artifactId)
+    {
+        final Dependency dependency = new Dependency();
+        dependency.setGroupId("org.example");
+        dependency.setArtifactId(artifactId);
+        dependency.setVersion("1.0");
+        return dependency;
+    }
+
+    private static org.apache.maven.artifact.Artifact attachedArtifact(final String classifier, final File file)
+    {
+        final org.apache.maven.artifact.Artifact artifact = mock(org.apache.maven.artifact.Artifact.class);
+        lenient().when(artifact.getClassifier()).thenReturn(classifier);
+        lenient().when(artifact.getFile()).thenReturn(file);
+        return artifact;
+    }
+}
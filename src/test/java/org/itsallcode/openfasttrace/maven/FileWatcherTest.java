@@ -0,0 +1,86 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileWatcherTest
+{
+    private static final Duration DEBOUNCE = Duration.ofMillis(100);
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private Path root;
+    private FileWatcher watcher;
+
+    @BeforeEach
+    void setup() throws IOException
+    {
+        this.root = Files.createDirectories(tempDir.toRealPath().resolve("root"));
+        Files.createDirectories(root.resolve("doc"));
+        Files.createDirectories(root.resolve("fixtures"));
+        Files.createDirectories(root.resolve("tracing-report"));
+        this.watcher = FileWatcher.watch(List.of(root),
+                new InputFilter(List.of(), List.of("fixtures/**"), Map.of(), Map.of()),
+                List.of(root.resolve("doc/tracing-report.html"), root.resolve("tracing-report")));
+    }
+
+    @AfterEach
+    void close()
+    {
+        watcher.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void skipsExcludedDirectories()
+    {
+        assertThat(watcher.getWatchedDirectoryCount(), equalTo(2));
+    }
+
+    @Test
+    void reportsChangedFile() throws Exception
+    {
+        final Future<Set<Path>> changes = executor.submit(() -> watcher.awaitChanges(DEBOUNCE));
+        final Path file = Files.writeString(root.resolve("doc/spec.md"), "content");
+        assertThat(changes.get(30, TimeUnit.SECONDS), hasItem(file));
+    }
+
+    @Test
+    void ignoresChangesOfReports() throws Exception
+    {
+        final Future<Set<Path>> changes = executor.submit(() -> watcher.awaitChanges(DEBOUNCE));
+        final Path report = Files.writeString(root.resolve("doc/tracing-report.html"), "report");
+        final Path page = Files.writeString(root.resolve("tracing-report/req-1.html"), "page");
+        Thread.sleep(DEBOUNCE.toMillis() * 3);
+        assertThat(changes.isDone(), is(false));
+        final Path file = Files.writeString(root.resolve("doc/spec.md"), "content");
+        assertThat(changes.get(30, TimeUnit.SECONDS), allOf(hasItem(file), not(hasItem(report)), not(hasItem(page))));
+    }
+
+    @Test
+    void watchesNewDirectories() throws Exception
+    {
+        final Future<Set<Path>> created = executor.submit(() -> watcher.awaitChanges(DEBOUNCE));
+        Files.createDirectories(root.resolve("doc/new"));
+        assertThat(created.get(30, TimeUnit.SECONDS), hasItem(root.resolve("doc/new")));
+        final Future<Set<Path>> changes = executor.submit(() -> watcher.awaitChanges(DEBOUNCE));
+        final Path file = Files.writeString(root.resolve("doc/new/spec.md"), "content");
+        assertThat(changes.get(30, TimeUnit.SECONDS), hasItem(file));
+    }
+}
@@ -0,0 +1,131 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.itsallcode.openfasttrace.api.core.*;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.OftRunner;
+import org.junit.jupiter.api.Test;
+
+class FocusClosureTest
+{
+    private static final SpecificationItem FEATURE = item("feat~login~1");
+    private static final SpecificationItem REQUIREMENT = item("req~login~1", "feat~login~1");
+    private static final SpecificationItem OTHER_REQUIREMENT = item("req~logout~1", "feat~login~1");
+    private static final SpecificationItem DESIGN = item("dsn~login~2", "req~login~1");
+    private static final SpecificationItem IMPLEMENTATION = item("impl~login~1", "dsn~login~2");
+    private static final SpecificationItem UNRELATED = item("req~unrelated~1");
+    private static final List<SpecificationItem> ITEMS = List.of(UNRELATED, IMPLEMENTATION, DESIGN,
+            OTHER_REQUIREMENT, REQUIREMENT, FEATURE);
+
+    @Test
+    void selectsTransitiveNeighborhoodWithoutSiblings()
+    {
+        assertThat(FocusClosure.of(List.of("dsn~login~2")).select(ITEMS),
+                contains(IMPLEMENTATION, DESIGN, REQUIREMENT, FEATURE));
+    }
+
+    @Test
+    void selectsAllItemsCoveringTopLevelItem()
+    {
+        assertThat(FocusClosure.of(List.of("feat~login~1")).select(ITEMS),
+                contains(IMPLEMENTATION, DESIGN, OTHER_REQUIREMENT, REQUIREMENT, FEATURE));
+    }
+
+    @Test
+    void combinesMultipleFocusItems()
+    {
+        assertThat(FocusClosure.of(List.of("impl~login~1", " req~unrelated~1 ")).select(ITEMS),
+                contains(UNRELATED, IMPLEMENTATION, DESIGN, REQUIREMENT, FEATURE));
+    }
+
+    @Test
+    void ignoresRevisions()
+    {
+        final SpecificationItem outdatedCoverage = item("impl~old~1", "dsn~login~1");
+        assertThat(FocusClosure.of(List.of("dsn~login~1")).select(List.of(DESIGN, outdatedCoverage)),
+                contains(DESIGN, outdatedCoverage));
+    }
+
+    @Test
+    void followsDependencies()
+    {
+        final SpecificationItem dependency = item("req~base~1");
+        final SpecificationItem dependent = SpecificationItem.builder().id(SpecificationItemId.parseId("req~top~1"))
+                .addDependOnId(dependency.getId()).build();
+        assertThat(FocusClosure.of(List.of("req~top~1")).select(List.of(dependency, dependent, UNRELATED)),
+                contains(dependency, dependent));
+    }
+
+    @Test
+    void linksTargetsOfCoveringItems()
+    {
+        final SpecificationItem otherDesign = item("dsn~other~1", "req~other~1");
+        final SpecificationItem otherRequirement = item("req~other~1");
+        final SpecificationItem implementation = item("impl~x~1", "dsn~login~2", "dsn~other~1");
+        assertThat(FocusClosure.of(List.of("dsn~login~2"))
+                .select(List.of(implementation, DESIGN, otherDesign, otherRequirement, REQUIREMENT, UNRELATED)),
+                contains(implementation, DESIGN, otherDesign, otherRequirement, REQUIREMENT));
+    }
+
+    @Test
+    void tracesFocusedItemsWithoutDefectsCausedByItemsOutsideFocus()
+    {
+        final SpecificationItem requirement = SpecificationItem.builder()
+                .id(SpecificationItemId.parseId("req~a~1")).addNeedsArtifactType("dsn")
+                .addNeedsArtifactType("uman").build();
+        final SpecificationItem focusDesign = design("dsn~focus~1");
+        final SpecificationItem otherDesign = design("dsn~other~1");
+        final SpecificationItem implementation = item("impl~x~1", "dsn~focus~1", "dsn~other~1");
+        final SpecificationItem userManual = item("uman~y~1", "req~a~1");
+        final List<SpecificationItem> items = List.of(requirement, focusDesign, otherDesign, implementation,
+                userManual, UNRELATED);
+        final Oft oft = new OftRunner();
+        final FocusClosure closure = FocusClosure.of(List.of("dsn~focus~1"));
+
+        final List<LinkedSpecificationItem> linkedItems = oft.link(closure.select(items));
+        final Trace trace = oft.trace(closure.selectTraced(linkedItems));
+
+        assertThat(linkedItems.size(), equalTo(4));
+        assertThat(trace.getItems().stream().map(LinkedSpecificationItem::getId).toList(),
+                contains(focusDesign.getId(), implementation.getId()));
+        assertThat(trace.countDefects(), equalTo(0));
+        assertThat(oft.trace(linkedItems).getDefectIds(), contains(requirement.getId()));
+    }
+
+    @Test
+    void reportsMissingFocusIds()
+    {
+        final FocusClosure closure = FocusClosure.of(List.of("req~login~1", "req~missing~1"));
+        assertThat(closure.select(ITEMS), hasItem(REQUIREMENT));
+        assertThat(closure.getMissingIds(), contains("req~missing~1"));
+    }
+
+    @Test
+    void rejectsInvalidId()
+    {
+        final IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> FocusClosure.of(List.of("not an id")));
+        assertThat(exception.getMessage(), startsWith("Invalid focus ID 'not an id'"));
+    }
+
+    private static SpecificationItem design(final String id)
+    {
+        return SpecificationItem.builder().id(SpecificationItemId.parseId(id))
+                .addCoveredId(SpecificationItemId.parseId("req~a~1")).addNeedsArtifactType("impl").build();
+    }
+
+    private static SpecificationItem item(final String id, final String... coveredIds)
+    {
+        final SpecificationItem.Builder builder = SpecificationItem.builder().id(SpecificationItemId.parseId(id));
+        for (final String coveredId : coveredIds)
+        {
+            builder.addCoveredId(SpecificationItemId.parseId(coveredId));
+        }
+        return builder.build();
+    }
+}
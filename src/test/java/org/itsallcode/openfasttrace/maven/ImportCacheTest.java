@@ -0,0 +1,206 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.maven.plugin.logging.Log;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ImportCacheTest
+{
+    private static final String KEY = "key";
+
+    @Mock
+    Log logMock;
+    @TempDir
+    Path tempDir;
+
+    Path cacheFile;
+    Path sourceFile;
+    AtomicInteger importCount;
+
+    @BeforeEach
+    void setup() throws IOException
+    {
+        this.cacheFile = tempDir.resolve("cache/import-cache.bin");
+        this.sourceFile = tempDir.resolve("spec.md");
+        Files.writeString(sourceFile, "content");
+        this.importCount = new AtomicInteger();
+    }
+
+    @Test
+    void importsFileOnFirstRun()
+    {
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY);
+        assertThat(cache.getOrImport(sourceFile, importer("first")), contains(item("first")));
+        assertThat(cache.getMisses(), equalTo(1));
+        assertThat(importCount.get(), equalTo(1));
+    }
+
+    @Test
+    void servesUnchangedFileFromCache()
+    {
+        importAndSave("first");
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY);
+        assertThat(cache.getOrImport(sourceFile, importer("second")), contains(item("first")));
+        assertThat(cache.getHits(), equalTo(1));
+        assertThat(importCount.get(), equalTo(1));
+    }
+
+    @Test
+    void servesTouchedFileWithSameContentFromCache() throws IOException
+    {
+        importAndSave("first");
+        Files.setLastModifiedTime(sourceFile, FileTime.fromMillis(0));
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY);
+        assertThat(cache.getOrImport(sourceFile, importer("second")), contains(item("first")));
+        assertThat(cache.getHits(), equalTo(1));
+    }
+
+    @Test
+    void reimportsChangedFile() throws IOException
+    {
+        importAndSave("first");
+        Files.writeString(sourceFile, "changed content");
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY);
+        assertThat(cache.getOrImport(sourceFile, importer("second")), contains(item("second")));
+        assertThat(cache.getMisses(), equalTo(1));
+    }
+
+    @Test
+    void discardsCacheWhenKeyChanges()
+    {
+        importAndSave("first");
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, "other key");
+        assertThat(cache.getOrImport(sourceFile, importer("second")), contains(item("second")));
+    }
+
+    @Test
+    void ignoresCorruptCacheFile() throws IOException
+    {
+        Files.createDirectories(cacheFile.getParent());
+        Files.writeString(cacheFile, "corrupt");
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY);
+        assertThat(cache.getOrImport(sourceFile, importer("first")), contains(item("first")));
+    }
+
+    @Test
+    void servesFileUnchangedSinceBaseCommitWithoutCheckingIt() throws IOException
+    {
+        importAndSave("first", unchanged("base"));
+        Files.writeString(sourceFile, "content not checked");
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY, unchanged("base"));
+        assertThat(cache.getOrImport(sourceFile, importer("second")), contains(item("first")));
+        assertThat(importCount.get(), equalTo(1));
+    }
+
+    @Test
+    void checksUnchangedFileWhenBaseCommitChanged() throws IOException
+    {
+        importAndSave("first", unchanged("base"));
+        Files.writeString(sourceFile, "changed content");
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY, unchanged("other base"));
+        assertThat(cache.getOrImport(sourceFile, importer("second")), contains(item("second")));
+    }
+
+    @Test
+    void checksFileChangedSinceBaseCommit() throws IOException
+    {
+        importAndSave("first", unchanged("base"));
+        Files.writeString(sourceFile, "changed content");
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY, changed("base"));
+        assertThat(cache.getOrImport(sourceFile, importer("second")), contains(item("second")));
+    }
+
+    @Test
+    void checksFileThatWasChangedInPreviousRun() throws IOException
+    {
+        importAndSave("first", changed("base"));
+        Files.writeString(sourceFile, "reverted content");
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY, unchanged("base"));
+        assertThat(cache.getOrImport(sourceFile, importer("second")), contains(item("second")));
+    }
+
+    @Test
+    void checksFilesCachedWithoutBaseCommit() throws IOException
+    {
+        importAndSave("first");
+        Files.writeString(sourceFile, "changed content");
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY, unchanged(""));
+        assertThat(cache.getOrImport(sourceFile, importer("second")), contains(item("second")));
+    }
+
+    @Test
+    void keepsEntriesBelowDirectoryThatWasNotRequested()
+    {
+        importAndSave("first");
+        final ImportCache keeping = ImportCache.load(logMock, cacheFile, KEY);
+        keeping.keepEntriesBelow(tempDir);
+        keeping.save();
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY);
+        assertThat(cache.getOrImport(sourceFile, importer("second")), contains(item("first")));
+        assertThat(importCount.get(), equalTo(1));
+    }
+
+    @Test
+    void dropsEntriesThatWereNotRequestedOrKept()
+    {
+        importAndSave("first");
+        final ImportCache other = ImportCache.load(logMock, cacheFile, KEY);
+        other.keepEntriesBelow(tempDir.resolve("other"));
+        other.save();
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY);
+        assertThat(cache.getOrImport(sourceFile, importer("second")), contains(item("second")));
+    }
+
+    private ChangedScope unchanged(final String baseCommit)
+    {
+        return new ChangedScope(baseCommit, Set.of(sourceFile), Set.of());
+    }
+
+    private ChangedScope changed(final String baseCommit)
+    {
+        return new ChangedScope(baseCommit, Set.of(sourceFile), Set.of(sourceFile));
+    }
+
+    private void importAndSave(final String name)
+    {
+        importAndSave(name, null);
+    }
+
+    private void importAndSave(final String name, final ChangedScope changedScope)
+    {
+        final ImportCache cache = ImportCache.load(logMock, cacheFile, KEY, changedScope);
+        cache.getOrImport(sourceFile, importer(name));
+        cache.save();
+    }
+
+    private Function<Path, List<SpecificationItem>> importer(final String name)
+    {
+        return file -> {
+            importCount.incrementAndGet();
+            return List.of(item(name));
+        };
+    }
+
+    private static SpecificationItem item(final String name)
+    {
+        return SpecificationItem.builder().id("req", name, 1).build();
+    }
+}
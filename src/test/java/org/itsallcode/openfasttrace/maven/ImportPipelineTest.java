@@ -0,0 +1,123 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImportPipelineTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keepsOrderOfFiles() throws IOException
+    {
+        final List<Path> files = createFiles(50);
+        final ImportPipeline pipeline = new ImportPipeline(4, 2);
+        final List<SpecificationItem> items = pipeline.run(List.of(tempDir), InputFilter.none(), file -> true,
+                slowImporter());
+        assertThat(names(items), equalTo(SourceFileCollector.collect(List.of(tempDir)).stream()
+                .map(file -> file.getFileName().toString()).toList()));
+        assertThat(pipeline.getFileCount(), equalTo(files.size()));
+    }
+
+    @Test
+    void importsOnlySupportedFiles() throws IOException
+    {
+        createFiles(10);
+        final ImportPipeline pipeline = new ImportPipeline(2, 4);
+        final List<SpecificationItem> items = pipeline.run(List.of(tempDir), InputFilter.none(),
+                file -> file.getFileName().toString().startsWith("file1"), slowImporter());
+        assertThat(names(items), contains("file1.md"));
+        assertThat(pipeline.getFileCount(), equalTo(1));
+    }
+
+    @Test
+    void handlesEmptyRoots()
+    {
+        final ImportPipeline pipeline = new ImportPipeline(2, 4);
+        assertThat(pipeline.run(List.of(tempDir.resolve("missing")), InputFilter.none(), file -> true,
+                slowImporter()), empty());
+        assertThat(pipeline.getFileCount(), equalTo(0));
+    }
+
+    @Test
+    void boundsQueuedFiles() throws IOException
+    {
+        createFiles(40);
+        final AtomicInteger walked = new AtomicInteger();
+        final AtomicInteger imported = new AtomicInteger();
+        final AtomicInteger maxAhead = new AtomicInteger();
+        new ImportPipeline(1, 2).run(List.of(tempDir), InputFilter.none(), file -> {
+            maxAhead.accumulateAndGet(walked.incrementAndGet() - imported.get(), Math::max);
+            return true;
+        }, file -> {
+            sleep(2);
+            imported.incrementAndGet();
+            return List.of();
+        });
+        assertThat(maxAhead.get(), lessThanOrEqualTo(6));
+    }
+
+    @Test
+    void propagatesImportFailure() throws IOException
+    {
+        createFiles(20);
+        final ImportPipeline pipeline = new ImportPipeline(3, 2);
+        final IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> pipeline.run(List.of(tempDir), InputFilter.none(), file -> true, file -> {
+                    throw new IllegalArgumentException("broken " + file.getFileName());
+                }));
+        assertThat(exception.getMessage(), startsWith("broken file"));
+    }
+
+    private List<Path> createFiles(final int count) throws IOException
+    {
+        final List<Path> files = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            final Path dir = Files.createDirectories(tempDir.resolve("dir" + i % 3));
+            files.add(Files.writeString(dir.resolve("file" + i + ".md"), ""));
+        }
+        return files;
+    }
+
+    private static Function<Path, List<SpecificationItem>> slowImporter()
+    {
+        return file -> {
+            sleep(ThreadLocalRandom.current().nextInt(3));
+            return List.of(SpecificationItem.builder().id("req", file.getFileName().toString(), 1).build());
+        };
+    }
+
+    private static List<String> names(final List<SpecificationItem> items)
+    {
+        return items.stream().map(SpecificationItem::getName).toList();
+    }
+
+    private static void sleep(final long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(exception);
+        }
+    }
+}
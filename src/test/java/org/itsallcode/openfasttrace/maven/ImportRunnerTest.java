@@ -0,0 +1,130 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.core.SpecificationItemId;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.itsallcode.openfasttrace.core.OftRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ImportRunnerTest
+{
+    private static final Path PROJECT = Paths.get("src/test/resources/project-with-multiple-languages")
+            .toAbsolutePath();
+
+    @Mock
+    Log logMock;
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void importsSameItemsAsOft()
+    {
+        assertThat(ids(runner().build().importItems()), containsInAnyOrder(ids(importWithOft()).toArray()));
+    }
+
+    @Test
+    void parallelImportKeepsOrderOfSequentialImport()
+    {
+        final List<SpecificationItemId> sequential = ids(runner().threads(1).build().importItems());
+        final List<SpecificationItemId> parallel = ids(runner().threads(4).build().importItems());
+        assertThat(parallel, equalTo(sequential));
+    }
+
+    @Test
+    void pipelinedImportKeepsOrderOfSequentialImport()
+    {
+        final List<SpecificationItemId> sequential = ids(runner().threads(1).build().importItems());
+        final List<SpecificationItemId> pipelined = ids(runner().threads(4).pipeline(2).build().importItems());
+        assertThat(pipelined, equalTo(sequential));
+    }
+
+    @Test
+    void parallelImportWithCache()
+    {
+        final Path cacheFile = tempDir.resolve("cache.bin");
+        final List<SpecificationItemId> firstRun = ids(runner().threads(4).cacheFile(cacheFile).build().importItems());
+        final List<SpecificationItemId> secondRun = ids(
+                runner().threads(4).cacheFile(cacheFile).build().importItems());
+        assertThat(secondRun, equalTo(firstRun));
+    }
+
+    @Test
+    void sharedCacheReusesItemsOfPreviousRun()
+    {
+        final SharedImportCache sharedCache = new SharedImportCache();
+        final List<SpecificationItemId> firstRun = ids(
+                runner().threads(4).sharedCache(sharedCache, 0).build().importItems());
+        final long cachedItems = sharedCache.getCachedItems();
+        final List<SpecificationItemId> secondRun = ids(
+                runner().threads(4).sharedCache(sharedCache, 0).build().importItems());
+        assertThat(secondRun, equalTo(firstRun));
+        assertThat(sharedCache.getCachedItems(), allOf(equalTo(cachedItems), equalTo((long) firstRun.size())));
+    }
+
+    @Test
+    void prefilteredImportFindsSameItems()
+    {
+        final List<SpecificationItemId> prefiltered = ids(
+                runner().prefilter(new ContentPrefilter(0)).build().importItems());
+        assertThat(prefiltered, equalTo(ids(runner().build().importItems())));
+    }
+
+    @Test
+    void createShardsForEmptyList()
+    {
+        assertThat(ImportRunner.createShards(List.of(), 4), empty());
+    }
+
+    @Test
+    void createShardsWithMoreShardsThanFiles()
+    {
+        assertThat(ImportRunner.createShards(paths(2), 4), contains(List.of(Path.of("0")), List.of(Path.of("1"))));
+    }
+
+    @Test
+    void createShardsKeepsOrder()
+    {
+        final List<List<Path>> shards = ImportRunner.createShards(paths(10), 3);
+        assertThat(shards, hasSize(3));
+        assertThat(shards.stream().flatMap(List::stream).toList(), equalTo(paths(10)));
+    }
+
+    private ImportRunner.Builder runner()
+    {
+        return ImportRunner.builder().log(logMock).settings(settings());
+    }
+
+    private static List<SpecificationItem> importWithOft()
+    {
+        return new OftRunner().importItems(settings());
+    }
+
+    private static ImportSettings settings()
+    {
+        return ImportSettings.builder().addInputs(PROJECT).build();
+    }
+
+    private static List<SpecificationItemId> ids(final List<SpecificationItem> items)
+    {
+        return items.stream().map(SpecificationItem::getId).toList();
+    }
+
+    private static List<Path> paths(final int count)
+    {
+        return IntStream.range(0, count).mapToObj(i -> Path.of(String.valueOf(i))).toList();
+    }
+}
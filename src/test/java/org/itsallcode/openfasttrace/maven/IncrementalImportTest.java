@@ -0,0 +1,122 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.core.SpecificationItemId;
+import org.itsallcode.openfasttrace.api.core.Trace;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.OftRunner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IncrementalImportTest
+{
+    @TempDir
+    Path tempDir;
+
+    private IncrementalImport incrementalImport;
+
+    @BeforeEach
+    void setup() throws IOException
+    {
+        write("doc/a.md", "a");
+        write("doc/b.md", "b");
+        final ImportSettings settings = ImportSettings.builder().addInputs(tempDir).build();
+        final FileImporter importer = new FileImporter(settings);
+        this.incrementalImport = new IncrementalImport(importer, importer::importFile, List.of(tempDir),
+                InputFilter.none());
+    }
+
+    @Test
+    void importsAllFiles()
+    {
+        assertThat(incrementalImport.importAll(), equalTo(2));
+        assertThat(names(), containsInAnyOrder("a", "b"));
+    }
+
+    @Test
+    void reimportsOnlyChangedFiles() throws IOException
+    {
+        incrementalImport.importAll();
+        final Path changed = write("doc/a.md", "a2");
+        assertThat(incrementalImport.update(List.of(changed)), equalTo(1));
+        assertThat(names(), containsInAnyOrder("a2", "b"));
+    }
+
+    @Test
+    void keepsItemsOfUnchangedFiles() throws IOException
+    {
+        incrementalImport.importAll();
+        write("doc/b.md", "b2");
+        assertThat(incrementalImport.update(List.of()), equalTo(0));
+        assertThat(names(), containsInAnyOrder("a", "b"));
+    }
+
+    @Test
+    void importsNewFilesAndDropsDeletedFiles() throws IOException
+    {
+        incrementalImport.importAll();
+        Files.delete(tempDir.resolve("doc/a.md"));
+        final Path added = write("doc/sub/c.md", "c");
+        assertThat(incrementalImport.update(List.of(tempDir.resolve("doc/a.md"), added.getParent())), equalTo(1));
+        assertThat(names(), containsInAnyOrder("b", "c"));
+        assertThat(incrementalImport.getFileCount(), equalTo(2));
+    }
+
+    @Test
+    void changedDirectoryReimportsAllFilesBelow() throws IOException
+    {
+        incrementalImport.importAll();
+        assertThat(incrementalImport.update(List.of(tempDir.resolve("doc"))), equalTo(2));
+    }
+
+    @Test
+    void linkingItemsDoesNotChangeNextTrace() throws IOException
+    {
+        write("doc/a.md", "a", 2);
+        Files.writeString(tempDir.resolve("doc/impl.md"), "`impl~x~1`\n\nCovers:\n\n* req~a~1\n");
+        incrementalImport.importAll();
+        final Oft oft = new OftRunner();
+        final Trace first = oft.trace(oft.link(incrementalImport.getItems()));
+        incrementalImport.update(List.of());
+        final Trace second = oft.trace(oft.link(incrementalImport.getItems()));
+        assertThat(first.getDefectIds(), hasItem(SpecificationItemId.createId("impl", "x", 1)));
+        assertThat(second.getDefectIds(), equalTo(first.getDefectIds()));
+    }
+
+    @Test
+    void usesGivenFileImporter()
+    {
+        final ImportSettings settings = ImportSettings.builder().addInputs(tempDir).build();
+        final IncrementalImport prefiltered = new IncrementalImport(new FileImporter(settings),
+                file -> List.of(), List.of(tempDir), InputFilter.none());
+        assertThat(prefiltered.importAll(), equalTo(2));
+        assertThat(prefiltered.getItems(), empty());
+    }
+
+    private List<String> names()
+    {
+        return incrementalImport.getItems().stream().map(SpecificationItem::getName).toList();
+    }
+
+    private Path write(final String path, final String name) throws IOException
+    {
+        return write(path, name, 1);
+    }
+
+    private Path write(final String path, final String name, final int revision) throws IOException
+    {
+        final Path file = tempDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, "`req~" + name + "~" + revision + "`\n\nDescription\n\nNeeds: impl\n");
+    }
+}
@@ -0,0 +1,118 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InputFilterTest
+{
+    @TempDir
+    Path tempDir;
+
+    Path sources;
+    Path resources;
+
+    @BeforeEach
+    void setup() throws IOException
+    {
+        sources = tempDir.resolve("src/main/java");
+        resources = tempDir.resolve("src/main/resources");
+        file(sources, "Main.java");
+        file(sources, "generated/Generated.java");
+        file(resources, "spec.md");
+        file(resources, "image.png");
+        file(resources, "fixtures/large/data.md");
+    }
+
+    @Test
+    void emptyFilterAcceptsAllFiles()
+    {
+        assertThat(InputFilter.none().isEmpty(), is(true));
+        assertThat(collect(InputFilter.none()), hasSize(5));
+    }
+
+    @Test
+    void includesSelectFiles()
+    {
+        final InputFilter filter = new InputFilter(List.of("**.md"), List.of(), Map.of(), Map.of());
+        assertThat(filter.isEmpty(), is(false));
+        assertThat(collect(filter), containsInAnyOrder(resources.resolve("spec.md"),
+                resources.resolve("fixtures/large/data.md")));
+    }
+
+    @Test
+    void excludesApplyToAllRoots()
+    {
+        final InputFilter filter = new InputFilter(List.of(), List.of("**/*.png", "generated/**"), Map.of(),
+                Map.of());
+        assertThat(collect(filter), containsInAnyOrder(sources.resolve("Main.java"), resources.resolve("spec.md"),
+                resources.resolve("fixtures/large/data.md")));
+    }
+
+    @Test
+    void excludedDirectoryIsNotWalked()
+    {
+        final InputFilter filter = new InputFilter(List.of(), List.of("fixtures/**"), Map.of(), Map.of());
+        assertThat(filter.acceptDirectory(resources, resources.resolve("fixtures")), is(false));
+        assertThat(filter.acceptDirectory(resources, resources), is(true));
+        assertThat(collect(filter), not(hasItem(resources.resolve("fixtures/large/data.md"))));
+    }
+
+    @Test
+    void typeExcludesApplyOnlyToRootsOfThatType()
+    {
+        final InputFilter filter = new InputFilter(List.of(), List.of(),
+                Map.of(InputFilter.RootType.RESOURCES, List.of("**")),
+                Map.of(sources, InputFilter.RootType.SOURCES, resources, InputFilter.RootType.RESOURCES));
+        assertThat(collect(filter), containsInAnyOrder(sources.resolve("Main.java"),
+                sources.resolve("generated/Generated.java")));
+    }
+
+    @Test
+    void filesOfNestedRootAreJudgedByNestedRoot() throws IOException
+    {
+        final Path main = tempDir.resolve("src/main");
+        file(main, "Other.java");
+        file(sources, "org/example/Example.java");
+        final InputFilter filter = new InputFilter(List.of(), List.of(),
+                Map.of(InputFilter.RootType.SOURCES, List.of("generated/**"),
+                        InputFilter.RootType.RESOURCES, List.of("**/*.java", "java/**")),
+                Map.of(main, InputFilter.RootType.RESOURCES, sources, InputFilter.RootType.SOURCES));
+        assertThat(SourceFileCollector.collect(List.of(main), filter), containsInAnyOrder(
+                sources.resolve("Main.java"), sources.resolve("org/example/Example.java"),
+                resources.resolve("spec.md"), resources.resolve("image.png"),
+                resources.resolve("fixtures/large/data.md")));
+    }
+
+    @Test
+    void includesOfNestedRootAreRelativeToNestedRoot() throws IOException
+    {
+        final Path main = tempDir.resolve("src/main");
+        file(sources, "org/example/Example.java");
+        final InputFilter filter = new InputFilter(List.of("org/**"), List.of(), Map.of(),
+                Map.of(main, InputFilter.RootType.RESOURCES, sources, InputFilter.RootType.SOURCES));
+        assertThat(SourceFileCollector.collect(List.of(main), filter),
+                contains(sources.resolve("org/example/Example.java")));
+    }
+
+    private List<Path> collect(final InputFilter filter)
+    {
+        return SourceFileCollector.collect(List.of(sources, resources), filter);
+    }
+
+    private static void file(final Path root, final String path) throws IOException
+    {
+        final Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "content");
+    }
+}
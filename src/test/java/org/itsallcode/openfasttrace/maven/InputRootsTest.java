@@ -0,0 +1,86 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InputRootsTest
+{
+    @TempDir
+    Path tempDir;
+
+    Path main;
+    Path resources;
+    Path doc;
+
+    @BeforeEach
+    void setup() throws IOException
+    {
+        tempDir = tempDir.toRealPath();
+        main = Files.createDirectories(tempDir.resolve("src/main"));
+        resources = Files.createDirectories(main.resolve("resources"));
+        doc = Files.createDirectories(tempDir.resolve("doc"));
+        Files.writeString(main.resolve("Main.java"), "content");
+        Files.writeString(resources.resolve("spec.md"), "content");
+        Files.writeString(resources.resolve("other.md"), "content");
+        Files.writeString(doc.resolve("design.md"), "content");
+    }
+
+    @Test
+    void keepsDistinctRoots()
+    {
+        final InputRoots roots = InputRoots.canonicalize(List.of(main, doc));
+        assertThat(roots.getRoots(), contains(main, doc));
+        assertThat(roots.getDroppedRoots(), empty());
+    }
+
+    @Test
+    void removesDuplicateRoots()
+    {
+        final InputRoots roots = InputRoots.canonicalize(List.of(doc, main, tempDir.resolve("src/../doc")));
+        assertThat(roots.getRoots(), contains(doc, main));
+        assertThat(roots.getDroppedRoots(), contains(doc));
+    }
+
+    @Test
+    void removesNestedRootsRegardlessOfOrder()
+    {
+        final InputRoots roots = InputRoots.canonicalize(List.of(resources, doc, main));
+        assertThat(roots.getRoots(), contains(doc, main));
+        assertThat(roots.getDroppedRoots(), contains(resources));
+    }
+
+    @Test
+    void removesFileInsideDirectoryRoot()
+    {
+        final Path file = resources.resolve("spec.md");
+        final InputRoots roots = InputRoots.canonicalize(List.of(file, main));
+        assertThat(roots.getRoots(), contains(main));
+        assertThat(roots.getDroppedRoots(), contains(file));
+    }
+
+    @Test
+    void resolvesSymbolicLinks() throws IOException
+    {
+        final Path link = Files.createSymbolicLink(tempDir.resolve("link"), doc);
+        final InputRoots roots = InputRoots.canonicalize(List.of(doc, link));
+        assertThat(roots.getRoots(), contains(doc));
+        assertThat(roots.getDroppedRoots(), contains(doc));
+    }
+
+    @Test
+    void keepsMissingRootsNormalized()
+    {
+        final Path missing = tempDir.resolve("missing/../absent");
+        final InputRoots roots = InputRoots.canonicalize(List.of(missing));
+        assertThat(roots.getRoots(), contains(tempDir.resolve("absent")));
+    }
+}
@@ -0,0 +1,64 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.itsallcode.openfasttrace.api.FilterSettings;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ItemBundleTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsWrittenItems()
+    {
+        final Path bundle = tempDir.resolve("target/module-oft-items.oftb");
+        final List<SpecificationItem> items = List.of(item("req", "a"), item("impl", "b"));
+        ItemBundle.write(bundle, "group:module:1.0", items);
+        assertThat(ItemBundle.read(bundle), equalTo(items));
+    }
+
+    @Test
+    void appliesFilterSettingsWhenReading()
+    {
+        final Path bundle = tempDir.resolve("module-oft-items.oftb");
+        ItemBundle.write(bundle, "group:module:1.0", List.of(item("req", "a"), item("impl", "b")));
+        final FilterSettings filter = FilterSettings.builder().artifactTypes(Set.of("req")).build();
+        assertThat(ItemBundle.read(bundle, filter), contains(item("req", "a")));
+    }
+
+    @Test
+    void overwritesExistingBundle()
+    {
+        final Path bundle = tempDir.resolve("module-oft-items.oftb");
+        ItemBundle.write(bundle, "group:module:1.0", List.of(item("req", "a")));
+        ItemBundle.write(bundle, "group:module:1.0", List.of(item("req", "b")));
+        assertThat(ItemBundle.read(bundle), contains(item("req", "b")));
+    }
+
+    @Test
+    void failsForInvalidBundle() throws IOException
+    {
+        final Path bundle = Files.writeString(tempDir.resolve("invalid.oftb"), "no bundle");
+        final UncheckedIOException exception = assertThrows(UncheckedIOException.class,
+                () -> ItemBundle.read(bundle));
+        assertThat(exception.getMessage(), startsWith("Error reading item bundle '" + bundle + "'"));
+    }
+
+    private static SpecificationItem item(final String artifactType, final String name)
+    {
+        return SpecificationItem.builder().id(artifactType, name, 1).build();
+    }
+}
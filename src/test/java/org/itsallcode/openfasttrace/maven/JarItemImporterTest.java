@@ -0,0 +1,109 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+
+import org.itsallcode.openfasttrace.api.FilterSettings;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.core.SpecificationItemId;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JarItemImporterTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void importsSpecificationFilesInJar() throws IOException
+    {
+        final Path jar = createJar(Map.of(
+                "META-INF/openfasttrace/b.md", "`req~b~1`\n",
+                "META-INF/openfasttrace/sub/a.md", "`req~a~1`\n"));
+        final List<SpecificationItem> items = importer(ImportSettings.builder().build()).importJar(jar);
+        assertThat(ids(items), contains("req~b~1", "req~a~1"));
+        assertThat(items.get(0).getLocation().getPath(), equalTo(jar + "!/META-INF/openfasttrace/b.md"));
+    }
+
+    @Test
+    void ignoresFilesOutsideOfSpecificationDirectory() throws IOException
+    {
+        final Path jar = createJar(Map.of("doc/spec.md", "`req~a~1`\n", "META-INF/MANIFEST.MF", "Version: 1\n"));
+        assertThat(importer(ImportSettings.builder().build()).importJar(jar), empty());
+    }
+
+    @Test
+    void readsItemBundlesInJar() throws IOException
+    {
+        final Path bundle = tempDir.resolve("items.oftb");
+        ItemBundle.write(bundle, "group:module:1.0", List.of(item("req", "a"), item("impl", "b")));
+        final Path jar = createJar(Map.of());
+        try (FileSystem fileSystem = FileSystems.newFileSystem(jar))
+        {
+            final Path entry = fileSystem.getPath("META-INF/openfasttrace/items.oftb");
+            Files.createDirectories(entry.getParent());
+            Files.copy(bundle, entry);
+        }
+        assertThat(importer(ImportSettings.builder().build()).importJar(jar),
+                contains(item("req", "a"), item("impl", "b")));
+    }
+
+    @Test
+    void appliesFilterSettings() throws IOException
+    {
+        final Path jar = createJar(Map.of("META-INF/openfasttrace/spec.md", "`req~a~1`\n\n`dsn~b~1`\n"));
+        final ImportSettings settings = ImportSettings.builder()
+                .filter(FilterSettings.builder().artifactTypes(Set.of("dsn")).build())
+                .build();
+        assertThat(ids(importer(settings).importJar(jar)), contains("dsn~b~1"));
+    }
+
+    @Test
+    void failsForInvalidJar() throws IOException
+    {
+        final Path jar = Files.writeString(tempDir.resolve("invalid.jar"), "no jar");
+        final UncheckedIOException exception = assertThrows(UncheckedIOException.class,
+                () -> importer(ImportSettings.builder().build()).importJar(jar));
+        assertThat(exception.getMessage(), startsWith("Error reading specification items from '" + jar + "'"));
+    }
+
+    private Path createJar(final Map<String, String> entries) throws IOException
+    {
+        final Path jar = tempDir.resolve("dependency-" + UUID.randomUUID() + ".jar");
+        try (FileSystem fileSystem = FileSystems.newFileSystem(jar, Map.of("create", "true")))
+        {
+            for (final Map.Entry<String, String> entry : entries.entrySet())
+            {
+                final Path path = fileSystem.getPath(entry.getKey());
+                if (path.getParent() != null)
+                {
+                    Files.createDirectories(path.getParent());
+                }
+                Files.writeString(path, entry.getValue());
+            }
+        }
+        return jar;
+    }
+
+    private static JarItemImporter importer(final ImportSettings settings)
+    {
+        return new JarItemImporter(settings);
+    }
+
+    private static List<String> ids(final List<SpecificationItem> items)
+    {
+        return items.stream().map(SpecificationItem::getId).map(SpecificationItemId::toString).toList();
+    }
+
+    private static SpecificationItem item(final String artifactType, final String name)
+    {
+        return SpecificationItem.builder().id(artifactType, name, 1).build();
+    }
+}
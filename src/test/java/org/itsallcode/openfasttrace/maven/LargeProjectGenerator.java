@@ -0,0 +1,373 @@
+package org.itsallcode.openfasttrace.maven;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Generates large multi-module Maven projects for scalability tests.
+ * <p>
+ * Each requirement {@code req~rN~1} in the {@code doc} directory of the root
+ * project needs {@code impl} and {@code utest}. The coverage tags
+ * {@code [impl->req~rN~1]} and {@code [utest->req~rN~1]} are spread over the
+ * main and test sources of the modules. For a share of the requirements given
+ * by the defect rate, the {@code utest} tag is left out, which makes the
+ * requirement a defect. Leaf modules are grouped below aggregator modules,
+ * the nesting depth is the number of module levels below the root project.
+ * The output only depends on the parameters, including the seed.
+ * <p>
+ * The JMH benchmarks in the {@code benchmarks} directory use this generator as
+ * well, so it is packaged in the test JAR of the {@code benchmarks} profile.
+ */
+final class LargeProjectGenerator
+{
+    private static final int REQUIREMENTS_PER_SPEC_FILE = 50;
+    private static final int LEAF_MODULES_PER_GROUP = 10;
+    private static final String PLUGIN_CONFIGURATION = """
+                <build>
+                    <plugins>
+                        <plugin>
+                            <groupId>org.itsallcode</groupId>
+                            <artifactId>openfasttrace-maven-plugin</artifactId>
+                            <configuration>
+                                <reportOutputFormat>plain</reportOutputFormat>
+                                <failBuild>false</failBuild>
+                            </configuration>
+                        </plugin>
+                    </plugins>
+                </build>
+            """;
+
+    private final int requirementCount;
+    private final int moduleCount;
+    private final int nestingDepth;
+    private final double sourceToSpecRatio;
+    private final double defectRate;
+    private final long seed;
+
+    private LargeProjectGenerator(final Builder builder)
+    {
+        this.requirementCount = builder.requirementCount;
+        this.moduleCount = Math.max(1, builder.moduleCount);
+        this.nestingDepth = Math.max(1, builder.nestingDepth);
+        this.sourceToSpecRatio = builder.sourceToSpecRatio;
+        this.defectRate = builder.defectRate;
+        this.seed = builder.seed;
+    }
+
+    /**
+     * Create a new builder.
+     *
+     * @return builder
+     */
+    static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Write the project.
+     *
+     * @param baseDir
+     *            directory of the root project, existing content is replaced
+     * @return summary of the generated project
+     */
+    GeneratedProject generate(final Path baseDir)
+    {
+        deleteRecursively(baseDir);
+        final Random random = new Random(this.seed);
+        final List<String> modules = writePoms(baseDir);
+        final StringBuilder spec = new StringBuilder();
+        final List<String> implTags = new ArrayList<>();
+        final List<String> utestTags = new ArrayList<>();
+        int defects = 0;
+        for (int requirement = 0; requirement < this.requirementCount; requirement++)
+        {
+            final String id = "req~r" + requirement + "~1";
+            spec.append("### Requirement ").append(requirement).append("\n`").append(id)
+                    .append("`\n\nThe system does thing ").append(requirement).append(".\n\nNeeds: impl, utest\n\n");
+            if ((requirement + 1) % REQUIREMENTS_PER_SPEC_FILE == 0 || requirement == this.requirementCount - 1)
+            {
+                write(baseDir.resolve("doc/spec-" + requirement / REQUIREMENTS_PER_SPEC_FILE + ".md"),
+                        "# Specification\n\n" + spec);
+                spec.setLength(0);
+            }
+            implTags.add("[impl->" + id + "]");
+            if (random.nextDouble() < this.defectRate)
+            {
+                defects++;
+            }
+            else
+            {
+                utestTags.add("[utest->" + id + "]");
+            }
+        }
+        // Impl and utest tags each get half of the source files
+        final int sourceFilesPerRoot = (int) Math.max(1,
+                Math.round(getSpecFileCount() * this.sourceToSpecRatio / 2));
+        writeSources(baseDir, modules, "src/main/java", "Feature", implTags, sourceFilesPerRoot);
+        writeSources(baseDir, modules, "src/test/java", "FeatureTest", utestTags, sourceFilesPerRoot);
+        return new GeneratedProject(baseDir, this.requirementCount + implTags.size() + utestTags.size(), defects);
+    }
+
+    private int getSpecFileCount()
+    {
+        return Math.max(1, (this.requirementCount + REQUIREMENTS_PER_SPEC_FILE - 1) / REQUIREMENTS_PER_SPEC_FILE);
+    }
+
+    /**
+     * Write the POMs of the root project, the aggregator modules and the leaf
+     * modules.
+     *
+     * @return paths of the leaf modules relative to the root project
+     */
+    private List<String> writePoms(final Path baseDir)
+    {
+        final int groupCount = Math.max(1, (this.moduleCount + LEAF_MODULES_PER_GROUP - 1) / LEAF_MODULES_PER_GROUP);
+        final Map<String, List<String>> aggregators = new LinkedHashMap<>();
+        aggregators.put("", new ArrayList<>());
+        final List<String> groups = new ArrayList<>();
+        for (int group = 0; group < groupCount; group++)
+        {
+            String parent = "";
+            for (int level = 1; level < this.nestingDepth; level++)
+            {
+                final String name = level == 1 ? "group-" + group : "level-" + level;
+                aggregators.get(parent).add(name);
+                parent = parent + name + "/";
+                aggregators.put(parent, new ArrayList<>());
+            }
+            groups.add(parent);
+        }
+        final List<String> modules = new ArrayList<>();
+        for (int module = 0; module < this.moduleCount; module++)
+        {
+            final String parent = groups.get(module % groupCount);
+            final String name = "module-" + module;
+            aggregators.get(parent).add(name);
+            modules.add(parent + name);
+            write(baseDir.resolve(parent + name).resolve("pom.xml"), modulePom(name));
+        }
+        for (final Map.Entry<String, List<String>> aggregator : aggregators.entrySet())
+        {
+            final String artifactId = aggregator.getKey().isEmpty() ? "root"
+                    : aggregator.getKey().substring(0, aggregator.getKey().length() - 1).replace('/', '-');
+            write(baseDir.resolve(aggregator.getKey()).resolve("pom.xml"),
+                    aggregatorPom(artifactId, aggregator.getValue(), aggregator.getKey().isEmpty()));
+        }
+        return modules;
+    }
+
+    private static void writeSources(final Path baseDir, final List<String> modules, final String sourceRoot,
+            final String classPrefix, final List<String> tags, final int fileCount)
+    {
+        final int tagsPerFile = Math.max(1, (tags.size() + fileCount - 1) / fileCount);
+        for (int from = 0, file = 0; from < tags.size(); from += tagsPerFile, file++)
+        {
+            final StringBuilder source = new StringBuilder("class " + classPrefix + file + "\n{\n");
+            for (int tag = from; tag < Math.min(tags.size(), from + tagsPerFile); tag++)
+            {
+                source.append("    // ").append(tags.get(tag)).append("\n    void method").append(tag)
+                        .append("()\n    {\n    }\n\n");
+            }
+            source.append("}\n");
+            final String module = modules.get(file % modules.size());
+            write(baseDir.resolve(module).resolve(sourceRoot).resolve(classPrefix + file + ".java"),
+                    source.toString());
+        }
+    }
+
+    private static String aggregatorPom(final String artifactId, final List<String> modules, final boolean root)
+    {
+        final StringBuilder moduleElements = new StringBuilder();
+        for (final String module : modules)
+        {
+            moduleElements.append("        <module>").append(module).append("</module>\n");
+        }
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <project xmlns="http://maven.apache.org/POM/4.0.0">
+                    <modelVersion>4.0.0</modelVersion>
+                    <groupId>org.itsallcode</groupId>
+                    <artifactId>openfasttrace-maven-plugin-test-large-%s</artifactId>
+                    <version>0.0.0</version>
+                    <packaging>pom</packaging>
+                    <modules>
+                %s    </modules>
+                %s</project>
+                """.formatted(artifactId, moduleElements, root ? PLUGIN_CONFIGURATION : "");
+    }
+
+    private static String modulePom(final String module)
+    {
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <project xmlns="http://maven.apache.org/POM/4.0.0">
+                    <modelVersion>4.0.0</modelVersion>
+                    <groupId>org.itsallcode</groupId>
+                    <artifactId>openfasttrace-maven-plugin-test-large-%s</artifactId>
+                    <version>0.0.0</version>
+                    <packaging>jar</packaging>
+                </project>
+                """.formatted(module);
+    }
+
+    private static void deleteRecursively(final Path dir)
+    {
+        if (!Files.exists(dir))
+        {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir))
+        {
+            for (final Path file : files.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(file);
+            }
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error deleting '" + dir + "': " + exception.getMessage(), exception);
+        }
+    }
+
+    private static void write(final Path file, final String content)
+    {
+        try
+        {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, content, StandardCharsets.UTF_8);
+        }
+        catch (final IOException exception)
+        {
+            throw new UncheckedIOException("Error writing '" + file + "': " + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * A generated project.
+     *
+     * @param baseDir
+     *            directory of the root project
+     * @param itemCount
+     *            number of specification items including coverage tags
+     * @param defectCount
+     *            number of requirements without {@code utest} coverage
+     */
+    record GeneratedProject(Path baseDir, int itemCount, int defectCount)
+    {
+    }
+
+    /**
+     * Builder for {@link LargeProjectGenerator}.
+     */
+    static final class Builder
+    {
+        private int requirementCount;
+        private int moduleCount = 1;
+        private int nestingDepth = 1;
+        private double sourceToSpecRatio = 5;
+        private double defectRate;
+        private long seed;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Set the number of requirements.
+         *
+         * @param requirementCount
+         *            number of requirements, each requirement results in up
+         *            to three items
+         * @return this builder
+         */
+        Builder requirementCount(final int requirementCount)
+        {
+            this.requirementCount = requirementCount;
+            return this;
+        }
+
+        /**
+         * Set the number of leaf modules.
+         *
+         * @param moduleCount
+         *            number of modules containing the sources, default: 1
+         * @return this builder
+         */
+        Builder moduleCount(final int moduleCount)
+        {
+            this.moduleCount = moduleCount;
+            return this;
+        }
+
+        /**
+         * Set the nesting depth of the leaf modules.
+         *
+         * @param nestingDepth
+         *            number of module levels below the root project, default:
+         *            1
+         * @return this builder
+         */
+        Builder nestingDepth(final int nestingDepth)
+        {
+            this.nestingDepth = nestingDepth;
+            return this;
+        }
+
+        /**
+         * Set the number of source files per spec file.
+         *
+         * @param sourceToSpecRatio
+         *            number of main and test source files per spec file,
+         *            default: 5
+         * @return this builder
+         */
+        Builder sourceToSpecRatio(final double sourceToSpecRatio)
+        {
+            this.sourceToSpecRatio = sourceToSpecRatio;
+            return this;
+        }
+
+        /**
+         * Set the defect rate.
+         *
+         * @param defectRate
+         *            share of requirements without {@code utest} coverage,
+         *            default: 0
+         * @return this builder
+         */
+        Builder defectRate(final double defectRate)
+        {
+            this.defectRate = defectRate;
+            return this;
+        }
+
+        /**
+         * Set the seed.
+         *
+         * @param seed
+         *            seed for selecting the defect requirements, default: 0
+         * @return this builder
+         */
+        Builder seed(final long seed)
+        {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Build the generator.
+         *
+         * @return generator
+         */
+        LargeProjectGenerator build()
+        {
+            return new LargeProjectGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.itsallcode.openfasttrace.api.core.Trace;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.OftRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LargeProjectGeneratorTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void generatedProjectTracesToExpectedCounts()
+    {
+        final LargeProjectGenerator.GeneratedProject project = LargeProjectGenerator.builder().requirementCount(500)
+                .moduleCount(3).defectRate(0.1).seed(42).build()
+                .generate(tempDir.resolve("project"));
+        final Oft oft = new OftRunner();
+        final Trace trace = oft.trace(oft.link(oft.importItems(ImportSettings.builder()
+                .addInputs(SourceFileCollector.collect(List.of(project.baseDir())).stream()
+                        .filter(file -> !file.getFileName().toString().equals("pom.xml")).toList())
+                .build())));
+        assertThat(project.defectCount(), allOf(greaterThan(20), lessThan(80)));
+        assertThat(trace.count(), equalTo(project.itemCount()));
+        assertThat(trace.countDefects(), equalTo(project.defectCount()));
+    }
+
+    @Test
+    void generatesModules()
+    {
+        final Path baseDir = tempDir.resolve("project");
+        LargeProjectGenerator.builder().requirementCount(100).moduleCount(3).seed(1).build().generate(baseDir);
+        assertThat(baseDir.resolve("pom.xml").toFile().exists(), is(true));
+        assertThat(baseDir.resolve("module-2/src/main/java/Feature2.java").toFile().exists(), is(true));
+        assertThat(baseDir.resolve("module-1/src/test/java/FeatureTest1.java").toFile().exists(), is(true));
+        assertThat(baseDir.resolve("doc/spec-1.md").toFile().exists(), is(true));
+    }
+
+    @Test
+    void generatesNestedModules()
+    {
+        final Path baseDir = tempDir.resolve("project");
+        LargeProjectGenerator.builder().requirementCount(100).moduleCount(12).nestingDepth(3).build()
+                .generate(baseDir);
+        assertThat(baseDir.resolve("group-1/level-2/pom.xml").toFile().exists(), is(true));
+        assertThat(baseDir.resolve("group-1/level-2/module-11/pom.xml").toFile().exists(), is(true));
+        assertThat(baseDir.resolve("group-0/level-2/module-0/src/main/java/Feature0.java").toFile().exists(),
+                is(true));
+    }
+
+    @Test
+    void sourceToSpecRatioControlsNumberOfSourceFiles()
+    {
+        final Path baseDir = tempDir.resolve("project");
+        LargeProjectGenerator.builder().requirementCount(200).sourceToSpecRatio(1).build().generate(baseDir);
+        final List<String> sources = SourceFileCollector.collect(List.of(baseDir)).stream()
+                .map(file -> file.getFileName().toString()).filter(name -> name.endsWith(".java")).toList();
+        assertThat(sources, containsInAnyOrder("Feature0.java", "Feature1.java", "FeatureTest0.java",
+                "FeatureTest1.java"));
+    }
+
+    @Test
+    void outputIsDeterministic() throws IOException
+    {
+        final LargeProjectGenerator generator = LargeProjectGenerator.builder().requirementCount(300).moduleCount(2)
+                .defectRate(0.05).seed(7).build();
+        final LargeProjectGenerator.GeneratedProject first = generator.generate(tempDir.resolve("first"));
+        final LargeProjectGenerator.GeneratedProject second = generator.generate(tempDir.resolve("second"));
+        assertThat(second.itemCount(), equalTo(first.itemCount()));
+        assertThat(second.defectCount(), equalTo(first.defectCount()));
+        for (final Path file : SourceFileCollector.collect(List.of(first.baseDir())))
+        {
+            final Path other = second.baseDir().resolve(first.baseDir().relativize(file));
+            assertThat(Files.readString(other), equalTo(Files.readString(file)));
+        }
+    }
+
+    @Test
+    void replacesExistingProject()
+    {
+        final Path baseDir = tempDir.resolve("project");
+        LargeProjectGenerator.builder().requirementCount(200).moduleCount(1).seed(1).build().generate(baseDir);
+        LargeProjectGenerator.builder().requirementCount(10).moduleCount(1).seed(1).build().generate(baseDir);
+        assertThat(baseDir.resolve("doc/spec-1.md").toFile().exists(), is(false));
+    }
+}
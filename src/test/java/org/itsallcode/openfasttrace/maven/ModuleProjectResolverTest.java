@@ -0,0 +1,139 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.*;
+import org.eclipse.aether.DefaultSessionData;
+import org.eclipse.aether.RepositorySystemSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ModuleProjectResolverTest
+{
+    @Mock
+    Log logMock;
+    @Mock
+    ProjectBuilder projectBuilderMock;
+    @Mock
+    MavenSession sessionMock;
+    @Mock
+    RepositorySystemSession repositorySessionMock;
+    @Mock
+    ProjectBuildingResult buildingResultMock;
+    @TempDir
+    Path baseDir;
+
+    MavenProject parent;
+    final ProjectBuildingRequest sessionBuildingRequest = new DefaultProjectBuildingRequest();
+
+    @BeforeEach
+    void setup()
+    {
+        parent = new MavenProject();
+        parent.setFile(baseDir.resolve("pom.xml").toFile());
+        parent.getModules().add("module");
+        when(sessionMock.getRepositorySession()).thenReturn(repositorySessionMock);
+        when(repositorySessionMock.getData()).thenReturn(new DefaultSessionData());
+    }
+
+    @Test
+    void usesProjectFromReactor()
+    {
+        final MavenProject module = new MavenProject();
+        module.setFile(baseDir.resolve("module/pom.xml").toFile());
+        when(sessionMock.getAllProjects()).thenReturn(List.of(parent, module));
+
+        assertThat(resolver().getModules(parent), contains(sameInstance(module)));
+        verifyNoInteractions(projectBuilderMock);
+    }
+
+    @Test
+    void buildsProjectOutsideReactorOncePerSession() throws ProjectBuildingException
+    {
+        final MavenProject module = new MavenProject();
+        when(sessionMock.getAllProjects()).thenReturn(List.of(parent));
+        when(sessionMock.getProjectBuildingRequest()).thenReturn(sessionBuildingRequest);
+        when(projectBuilderMock.build(eq(baseDir.resolve("module/pom.xml").toFile()), any()))
+                .thenReturn(buildingResultMock);
+        when(buildingResultMock.getProject()).thenReturn(module);
+
+        assertThat(resolver().getModules(parent), contains(sameInstance(module)));
+        assertThat(resolver().getModules(parent), contains(sameInstance(module)));
+        verify(projectBuilderMock, times(1)).build(any(File.class), any());
+    }
+
+    @Test
+    void resolvesModuleTreeInParallelKeepingModuleOrder() throws ProjectBuildingException
+    {
+        parent.getModules().add("other");
+        when(sessionMock.getAllProjects()).thenReturn(List.of(parent));
+        when(sessionMock.getProjectBuildingRequest()).thenReturn(sessionBuildingRequest);
+        when(projectBuilderMock.build(any(File.class), any())).thenAnswer(invocation -> {
+            final File pomFile = invocation.getArgument(0);
+            final MavenProject module = new MavenProject();
+            module.setFile(pomFile);
+            if (pomFile.getParentFile().getName().equals("module"))
+            {
+                module.getModules().add("nested");
+            }
+            final ProjectBuildingResult result = mock(ProjectBuildingResult.class);
+            when(result.getProject()).thenReturn(module);
+            return result;
+        });
+        final ModuleProjectResolver resolver = new ModuleProjectResolver(logMock, projectBuilderMock, sessionMock,
+                4);
+
+        resolver.resolveModuleTree(parent);
+        verify(projectBuilderMock, times(3)).build(any(File.class), any());
+
+        final List<MavenProject> modules = resolver.getModules(parent);
+        assertThat(modules.stream().map(MavenProject::getBasedir).map(File::getName).toList(),
+                contains("module", "other"));
+        assertThat(resolver.getModules(modules.get(0)).get(0).getBasedir().getName(), equalTo("nested"));
+        verify(projectBuilderMock, times(3)).build(any(File.class), any());
+    }
+
+    @Test
+    void buildsEachModuleWithCopyOfSessionBuildingRequest() throws ProjectBuildingException
+    {
+        parent.getModules().add("other");
+        when(sessionMock.getAllProjects()).thenReturn(List.of(parent));
+        when(sessionMock.getProjectBuildingRequest()).thenReturn(sessionBuildingRequest);
+        when(projectBuilderMock.build(any(File.class), any())).thenAnswer(invocation -> {
+            final ProjectBuildingResult result = mock(ProjectBuildingResult.class);
+            when(result.getProject()).thenReturn(new MavenProject());
+            return result;
+        });
+        final ArgumentCaptor<ProjectBuildingRequest> requests = ArgumentCaptor.forClass(ProjectBuildingRequest.class);
+
+        new ModuleProjectResolver(logMock, projectBuilderMock, sessionMock, 4).resolveModuleTree(parent);
+
+        verify(projectBuilderMock, times(2)).build(any(File.class), requests.capture());
+        final Set<ProjectBuildingRequest> distinctRequests = requests.getAllValues().stream()
+                .collect(Collectors.toCollection(() -> Collections.newSetFromMap(new IdentityHashMap<>())));
+        assertThat(distinctRequests, hasSize(2));
+        assertThat(distinctRequests, not(hasItem(sameInstance(sessionBuildingRequest))));
+    }
+
+    private ModuleProjectResolver resolver()
+    {
+        return new ModuleProjectResolver(logMock, projectBuilderMock, sessionMock, 1);
+    }
+}
@@ -0,0 +1,193 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.itsallcode.openfasttrace.api.DetailsSectionDisplay;
+import org.itsallcode.openfasttrace.api.ReportSettings;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.core.Trace;
+import org.itsallcode.openfasttrace.api.report.ReportVerbosity;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.OftRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PagedHtmlReportTest
+{
+    @TempDir
+    Path tempDir;
+
+    private final Oft oft = new OftRunner();
+
+    @Test
+    void pageDirectoryIsNamedLikeIndexPage()
+    {
+        assertThat(PagedHtmlReport.getPageDirectory(tempDir.resolve("tracing-report.html")),
+                equalTo(tempDir.resolve("tracing-report")));
+        assertThat(PagedHtmlReport.getPageDirectory(tempDir.resolve("report")),
+                equalTo(tempDir.resolve("report-pages")));
+    }
+
+    @Test
+    void splitsItemsIntoPagesPerArtifactType() throws IOException
+    {
+        final Path index = write(trace(5), 2, settings());
+        assertThat(listPages(), contains("dsn-1.html", "dsn-2.html", "dsn-3.html", "pages.txt", "req-1.html"));
+        assertThat(Files.readString(tempDir.resolve("report/dsn-2.html")),
+                allOf(containsString("dsn~item2~1"), containsString("dsn~item3~1"),
+                        not(containsString("id=\"dsn~item1~1\"")), not(containsString("id=\"dsn~item4~1\""))));
+        assertThat(Files.readString(index), allOf(containsString("6 items, 1 defects"),
+                containsString("<td>dsn</td><td>5</td><td>0</td>"), containsString("<td>req</td><td>1</td><td>1</td>"),
+                containsString("href=\"report/dsn-3.html\"")));
+    }
+
+    @Test
+    void listsDefectsOnIndexPage() throws IOException
+    {
+        final Path index = write(trace(0), 10, settings());
+        assertThat(Files.readString(index), containsString("<a href=\"report/req-1.html#req~parent~1\">"));
+    }
+
+    @Test
+    void linksCoveringItemsAcrossPages() throws IOException
+    {
+        write(trace(3), 10, settings());
+        assertThat(Files.readString(tempDir.resolve("report/dsn-1.html")),
+                containsString("<a href=\"req-1.html#req~parent~1\">req~parent~1</a>"));
+    }
+
+    @Test
+    void keepsDetailsInTemplateUnlessExpanded() throws IOException
+    {
+        write(trace(1), 10, settings());
+        assertThat(Files.readString(tempDir.resolve("report/dsn-1.html")), containsString("<template><dl>"));
+        write(trace(1), 10, ReportSettings.builder().outputFormat("html").verbosity(ReportVerbosity.ALL)
+                .detailsSectionDisplay(DetailsSectionDisplay.EXPAND).build());
+        assertThat(Files.readString(tempDir.resolve("report/dsn-1.html")),
+                allOf(containsString(" open><summary>"), not(containsString("<template>"))));
+    }
+
+    @Test
+    void escapesHtml() throws IOException
+    {
+        final SpecificationItem item = SpecificationItem.builder().id("req", "a", 1).title("<b>")
+                .description("a & b").build();
+        write(oft.trace(oft.link(List.of(item))), 10, settings());
+        assertThat(Files.readString(tempDir.resolve("report/req-1.html")),
+                allOf(containsString("&lt;b&gt;"), containsString("a &amp; b"), not(containsString("<b>"))));
+    }
+
+    @Test
+    void removesPagesOfPreviousReport() throws IOException
+    {
+        write(trace(5), 2, settings());
+        write(trace(1), 2, settings());
+        assertThat(listPages(), contains("dsn-1.html", "pages.txt", "req-1.html"));
+    }
+
+    @Test
+    void keepsFilesNotWrittenByPreviousReport() throws IOException
+    {
+        Files.createDirectories(tempDir.resolve("report"));
+        Files.writeString(tempDir.resolve("report/notes.html"), "notes");
+        write(trace(5), 2, settings());
+        write(trace(1), 2, settings());
+        assertThat(listPages(), contains("dsn-1.html", "notes.html", "pages.txt", "req-1.html"));
+    }
+
+    @Test
+    void listsWrittenPagesInManifest() throws IOException
+    {
+        final Path index = write(trace(3), 2, settings());
+        assertThat(PagedHtmlReport.getPageFiles(index), contains(tempDir.resolve("report/pages.txt"),
+                tempDir.resolve("report/dsn-1.html"), tempDir.resolve("report/dsn-2.html"),
+                tempDir.resolve("report/req-1.html")));
+    }
+
+    @Test
+    void disambiguatesArtifactTypesWithSamePageName() throws IOException
+    {
+        final List<SpecificationItem> items = List.of(SpecificationItem.builder().id("Req", "a", 1).build(),
+                SpecificationItem.builder().id("req", "b", 1).build(),
+                SpecificationItem.builder().id("re.q", "c", 1).build(),
+                SpecificationItem.builder().id("re_q", "d", 1).build());
+        final Path index = write(oft.trace(oft.link(items)), 10, settings());
+        assertThat(listPages(),
+                contains("Req-1.html", "pages.txt", "re_q-1.html", "re_q_2-1.html", "req_2-1.html"));
+        assertThat(Files.readString(tempDir.resolve("report/re_q_2-1.html")), containsString("re_q~d~1"));
+        assertThat(Files.readString(index), containsString("href=\"report/req_2-1.html\""));
+    }
+
+    @Test
+    void listsOnlyDefectsWithDetailsForFailureDetails() throws IOException
+    {
+        write(trace(3), 10, settings(ReportVerbosity.FAILURE_DETAILS));
+        assertThat(listPages(), contains("pages.txt", "req-1.html"));
+        assertThat(Files.readString(tempDir.resolve("report/req-1.html")), containsString("<template><dl>"));
+    }
+
+    @Test
+    void listsDefectsWithoutDetailsForFailures() throws IOException
+    {
+        final Path index = write(trace(3), 10, settings(ReportVerbosity.FAILURES));
+        assertThat(listPages(), contains("pages.txt", "req-1.html"));
+        assertThat(Files.readString(tempDir.resolve("report/req-1.html")),
+                allOf(containsString("id=\"req~parent~1\""), not(containsString("<dl>"))));
+        assertThat(Files.readString(index), allOf(containsString("<td>dsn</td><td>3</td><td>0</td><td></td>"),
+                containsString("<a href=\"report/req-1.html#req~parent~1\">")));
+    }
+
+    @Test
+    void writesOnlyIndexForSummary() throws IOException
+    {
+        final Path index = write(trace(3), 10, settings(ReportVerbosity.SUMMARY));
+        assertThat(listPages(), contains("pages.txt"));
+        assertThat(Files.readString(index), allOf(containsString("4 items, 1 defects"),
+                not(containsString("<h2>Defects</h2>")), not(containsString("href="))));
+    }
+
+    private Path write(final Trace trace, final int pageSize, final ReportSettings settings)
+    {
+        final Path index = tempDir.resolve("report.html");
+        new PagedHtmlReport(pageSize).write(trace, index, settings);
+        return index;
+    }
+
+    private List<String> listPages() throws IOException
+    {
+        try (Stream<Path> files = Files.list(tempDir.resolve("report")))
+        {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private Trace trace(final int designCount)
+    {
+        final List<SpecificationItem> items = new ArrayList<>();
+        items.add(SpecificationItem.builder().id("req", "parent", 1).addNeedsArtifactType("dsn")
+                .addNeedsArtifactType("impl").build());
+        for (int i = 0; i < designCount; i++)
+        {
+            items.add(SpecificationItem.builder().id("dsn", "item" + i, 1).addCoveredId("req", "parent", 1).build());
+        }
+        return oft.trace(oft.link(items));
+    }
+
+    private static ReportSettings settings()
+    {
+        return settings(ReportVerbosity.ALL);
+    }
+
+    private static ReportSettings settings(final ReportVerbosity verbosity)
+    {
+        return ReportSettings.builder().outputFormat("html").verbosity(verbosity).build();
+    }
+}
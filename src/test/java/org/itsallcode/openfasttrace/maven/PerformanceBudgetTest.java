@@ -0,0 +1,86 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PerformanceBudgetTest
+{
+    private TraceMetrics metrics;
+
+    @BeforeEach
+    void setup()
+    {
+        metrics = new TraceMetrics("trace", "project");
+        metrics.run("resolve", () -> sleep(20));
+        metrics.run("import", () -> sleep(10));
+        metrics.run("link", () -> sleep(10));
+        metrics.run("report", () -> sleep(20));
+        metrics.count("files", 100);
+    }
+
+    @Test
+    void disabledByDefault()
+    {
+        final PerformanceBudget budget = new PerformanceBudget(0, 0, 0);
+        assertThat(budget.isEnabled(), is(false));
+        assertThat(budget.limitsImportedFiles(), is(false));
+        assertThat(budget.findViolations(metrics, Long.MAX_VALUE), empty());
+    }
+
+    @Test
+    void withinBudget()
+    {
+        final PerformanceBudget budget = new PerformanceBudget(60_000, 100, 1024);
+        assertThat(budget.isEnabled(), is(true));
+        assertThat(budget.findViolations(metrics, 1024), empty());
+    }
+
+    @Test
+    void traceDurationIncludesAllPhasesExceptReport()
+    {
+        final PerformanceBudget budget = new PerformanceBudget(15, 0, 0);
+        assertThat(budget.findViolations(metrics, 0), contains(allOf(
+                startsWith("trace duration "), containsString(" ms exceeds maxTraceDuration 15 ms (resolve "),
+                containsString(", import "), containsString(", link "), not(containsString("report")))));
+    }
+
+    @Test
+    void traceDurationIncludesPhasesBeforeImport()
+    {
+        final TraceMetrics gitOnly = new TraceMetrics("trace", "project");
+        gitOnly.run("git", () -> sleep(20));
+        final PerformanceBudget budget = new PerformanceBudget(10, 0, 0);
+        assertThat(budget.findViolations(gitOnly, 0), contains(containsString("(git ")));
+    }
+
+    @Test
+    void tooManyImportedFiles()
+    {
+        final PerformanceBudget budget = new PerformanceBudget(0, 99, 0);
+        assertThat(budget.limitsImportedFiles(), is(true));
+        assertThat(budget.findViolations(metrics, 0), contains("imported files 100 exceed maxImportedFiles 99"));
+    }
+
+    @Test
+    void heapDeltaTooLarge()
+    {
+        final PerformanceBudget budget = new PerformanceBudget(0, 0, 1000);
+        assertThat(budget.findViolations(metrics, 1001),
+                contains("heap delta 1001 bytes exceeds maxHeapDelta 1000 bytes"));
+    }
+
+    private static void sleep(final long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
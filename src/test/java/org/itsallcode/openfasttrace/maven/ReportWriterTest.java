@@ -0,0 +1,134 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.itsallcode.openfasttrace.api.ReportSettings;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.core.Trace;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.OftRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ReportWriterTest
+{
+    @Mock
+    Log logMock;
+    @TempDir
+    Path tempDir;
+
+    private final Oft oft = new OftRunner();
+
+    @Test
+    void writesSingleReport() throws IOException
+    {
+        final Path plainReport = tempDir.resolve("report.txt");
+        new ReportWriter(logMock, oft, 0, ReportCompression.NONE).write(trace(),
+                Map.of(plainReport, settings("plain")));
+        assertThat(Files.readString(plainReport), containsString("not ok - 1 total, 1 direct, 0 transitive defects"));
+    }
+
+    @Test
+    void outputPathsIncludePageDirectoryOfPagedHtmlReport()
+    {
+        final Path plainReport = tempDir.resolve("report.txt");
+        final Path htmlReport = tempDir.resolve("report.html");
+        final Map<Path, ReportSettings> reports = new LinkedHashMap<>();
+        reports.put(plainReport, settings("plain"));
+        reports.put(htmlReport, settings("html"));
+        assertThat(new ReportWriter(logMock, oft, 10, ReportCompression.NONE).getOutputPaths(reports),
+                contains(plainReport, htmlReport, tempDir.resolve("report")));
+    }
+
+    @Test
+    void writesMultipleReportsFromSameTrace() throws IOException
+    {
+        final Path plainReport = tempDir.resolve("report.txt");
+        final Path htmlReport = tempDir.resolve("report.html");
+        final Map<Path, ReportSettings> reports = new LinkedHashMap<>();
+        reports.put(plainReport, settings("plain"));
+        reports.put(htmlReport, settings("html"));
+
+        new ReportWriter(logMock, oft, 0, ReportCompression.NONE).write(trace(), reports);
+
+        assertThat(Files.readString(plainReport), containsString("not ok - 1 total, 1 direct, 0 transitive defects"));
+        assertThat(Files.readString(htmlReport), containsString("req~a~1"));
+    }
+
+    @Test
+    void writesPagedHtmlReportWhenPageSizeIsSet() throws IOException
+    {
+        final Path plainReport = tempDir.resolve("report.txt");
+        final Path htmlReport = tempDir.resolve("report.html");
+        final Map<Path, ReportSettings> reports = new LinkedHashMap<>();
+        reports.put(plainReport, settings("plain"));
+        reports.put(htmlReport, settings("html"));
+
+        new ReportWriter(logMock, oft, 10, ReportCompression.NONE).write(trace(), reports);
+
+        assertThat(Files.readString(plainReport), containsString("not ok - 1 total, 1 direct, 0 transitive defects"));
+        assertThat(Files.readString(htmlReport), containsString("report/req-1.html"));
+        assertThat(Files.readString(tempDir.resolve("report/req-1.html")), containsString("req~a~1"));
+    }
+
+    @Test
+    void writesGzipCompressedReports() throws IOException
+    {
+        final Path plainReport = tempDir.resolve("report.txt.gz");
+        final Path htmlReport = tempDir.resolve("report.html.gz");
+        final Map<Path, ReportSettings> reports = new LinkedHashMap<>();
+        reports.put(plainReport, settings("plain"));
+        reports.put(htmlReport, settings("html"));
+
+        new ReportWriter(logMock, oft, 0, ReportCompression.GZIP).write(trace(), reports);
+
+        assertThat(readGzip(plainReport), containsString("not ok - 1 total, 1 direct, 0 transitive defects"));
+        assertThat(readGzip(htmlReport), containsString("req~a~1"));
+    }
+
+    @Test
+    void doesNotCompressPagedHtmlReport() throws IOException
+    {
+        final Path htmlReport = tempDir.resolve("report.html");
+
+        new ReportWriter(logMock, oft, 10, ReportCompression.GZIP).write(trace(), Map.of(htmlReport, settings("html")));
+
+        assertThat(Files.readString(htmlReport), containsString("report/req-1.html"));
+    }
+
+    private static String readGzip(final Path file) throws IOException
+    {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file)))
+        {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private Trace trace()
+    {
+        final SpecificationItem item = SpecificationItem.builder().id("req", "a", 1).addNeedsArtifactType("dsn")
+                .build();
+        return oft.trace(oft.link(List.of(item)));
+    }
+
+    private static ReportSettings settings(final String format)
+    {
+        return ReportSettings.builder().outputFormat(format).build();
+    }
+}
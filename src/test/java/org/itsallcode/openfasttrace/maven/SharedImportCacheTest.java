@@ -0,0 +1,204 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.core.SpecificationItemId;
+import org.itsallcode.openfasttrace.api.core.Trace;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.itsallcode.openfasttrace.core.Oft;
+import org.itsallcode.openfasttrace.core.OftRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SharedImportCacheTest
+{
+    private static final String KEY = "key";
+
+    @TempDir
+    Path tempDir;
+
+    private final SharedImportCache cache = new SharedImportCache();
+    private final AtomicInteger imports = new AtomicInteger();
+
+    @Test
+    void reusesItemsInLaterSession() throws IOException
+    {
+        final Path file = write("a.md", "a");
+        final List<SpecificationItem> first = this.cache.openSession(KEY, 0).getOrImport(file, importer(1));
+        final List<SpecificationItem> second = this.cache.openSession(KEY, 0).getOrImport(file, importer(1));
+        assertThat(second, equalTo(first));
+        assertThat(second.get(0), not(sameInstance(first.get(0))));
+        assertThat(this.imports.get(), equalTo(1));
+    }
+
+    @Test
+    void linkingCachedItemsDoesNotChangeLaterTraces() throws IOException
+    {
+        final Path file = write("spec.md", "spec");
+        final Function<Path, List<SpecificationItem>> outdatedCoverage = path -> List.of(
+                SpecificationItem.builder().id("req", "a", 2).addNeedsArtifactType("impl").build(),
+                SpecificationItem.builder().id("impl", "a", 1).addCoveredId("req", "a", 1).build());
+        final Oft oft = new OftRunner();
+        final Trace first = oft.trace(oft.link(this.cache.openSession(KEY, 0).getOrImport(file, outdatedCoverage)));
+        final List<SpecificationItem> cachedItems = this.cache.openSession(KEY, 0).getOrImport(file, outdatedCoverage);
+        assertThat(cachedItems.get(1).getCoveredIds(), contains(SpecificationItemId.createId("req", "a", 1)));
+        final Trace second = oft.trace(oft.link(cachedItems));
+        assertThat(first.countDefects(), equalTo(2));
+        assertThat(second.getDefectIds(), equalTo(first.getDefectIds()));
+    }
+
+    @Test
+    void reimportsChangedFile() throws IOException
+    {
+        final Path file = write("a.md", "a");
+        this.cache.openSession(KEY, 0).getOrImport(file, importer(1));
+        write("a.md", "changed");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        final List<SpecificationItem> items = this.cache.openSession(KEY, 0).getOrImport(file, importer(2));
+        assertThat(items, hasSize(2));
+        assertThat(this.imports.get(), equalTo(2));
+    }
+
+    @Test
+    void reusesTouchedFileWithSameContent() throws IOException
+    {
+        final Path file = write("a.md", "a");
+        this.cache.openSession(KEY, 0).getOrImport(file, importer(1));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        this.cache.openSession(KEY, 0).getOrImport(file, importer(1));
+        assertThat(this.imports.get(), equalTo(1));
+    }
+
+    @Test
+    void separatesImportConfigurations() throws IOException
+    {
+        final Path file = write("a.md", "a");
+        this.cache.openSession(KEY, 0).getOrImport(file, importer(1));
+        this.cache.openSession("other", 0).getOrImport(file, importer(1));
+        assertThat(this.imports.get(), equalTo(2));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedFiles() throws IOException
+    {
+        final Path first = write("a.md", "a");
+        final Path second = write("b.md", "b");
+        final Path third = write("c.md", "c");
+        final SharedImportCache.Session session = this.cache.openSession(KEY, 4);
+        session.getOrImport(first, importer(2));
+        session.getOrImport(second, importer(2));
+        session.getOrImport(first, importer(2));
+        session.getOrImport(third, importer(2));
+        assertThat(this.cache.getCachedFiles(), equalTo(2));
+        assertThat(this.cache.getCachedItems(), equalTo(4L));
+        session.getOrImport(first, importer(2));
+        assertThat(this.imports.get(), equalTo(3));
+        session.getOrImport(second, importer(2));
+        assertThat(this.imports.get(), equalTo(4));
+    }
+
+    @Test
+    void defaultLimitUsesTenthOfHeap()
+    {
+        assertThat(SharedImportCache.getDefaultMaxItems(1024L * 1024 * 1024), equalTo(52428L));
+    }
+
+    @Test
+    void defaultLimitKeepsAtLeastOneItem()
+    {
+        assertThat(SharedImportCache.getDefaultMaxItems(0), equalTo(1L));
+    }
+
+    @Test
+    void formatsStatistics() throws IOException
+    {
+        final Path file = write("a.md", "a");
+        this.cache.openSession(KEY, 0).getOrImport(file, importer(3));
+        final SharedImportCache.Session session = this.cache.openSession(KEY, 0);
+        session.getOrImport(file, importer(3));
+        assertThat(session.formatStatistics(),
+                equalTo("1 files reused, 0 files imported, 1 files with 3 items cached"));
+    }
+
+    @Test
+    void reusesKeyAndImporterForSameConfiguration()
+    {
+        final ImportSettings settings = ImportSettings.builder().addInputs(this.tempDir).build();
+        final ImportSettings sameSettings = ImportSettings.builder().addInputs(this.tempDir).build();
+        assertThat(this.cache.getKey(sameSettings), equalTo(this.cache.getKey(settings)));
+        assertThat(this.cache.getImporter(sameSettings), sameInstance(this.cache.getImporter(settings)));
+    }
+
+    @Test
+    void clearRemovesEverything() throws IOException
+    {
+        final Path file = write("a.md", "a");
+        this.cache.openSession(KEY, 0).getOrImport(file, importer(1));
+        this.cache.clear();
+        assertThat(this.cache.getCachedFiles(), equalTo(0));
+        assertThat(this.cache.getCachedItems(), equalTo(0L));
+    }
+
+    @Test
+    void concurrentSessionsKeepCountsConsistent() throws Exception
+    {
+        final List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            files.add(write("file" + i + ".md", "content " + i));
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++)
+            {
+                futures.add(executor.submit(() -> {
+                    final SharedImportCache.Session session = this.cache.openSession(KEY, 0);
+                    files.forEach(file -> session.getOrImport(file, importer(2)));
+                }));
+            }
+            for (final Future<?> future : futures)
+            {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertThat(this.cache.getCachedFiles(), equalTo(20));
+        assertThat(this.cache.getCachedItems(), equalTo(40L));
+    }
+
+    private Function<Path, List<SpecificationItem>> importer(final int itemCount)
+    {
+        return file -> {
+            this.imports.incrementAndGet();
+            final List<SpecificationItem> items = new ArrayList<>();
+            for (int i = 0; i < itemCount; i++)
+            {
+                items.add(SpecificationItem.builder()
+                        .id(SpecificationItemId.createId("req", file.getFileName().toString() + i, 1)).build());
+            }
+            return items;
+        };
+    }
+
+    private Path write(final String name, final String content) throws IOException
+    {
+        return Files.writeString(this.tempDir.resolve(name), content);
+    }
+}
@@ -0,0 +1,81 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.*;
+import java.util.List;
+
+import org.itsallcode.openfasttrace.api.core.*;
+import org.junit.jupiter.api.Test;
+
+class SpecificationItemCodecTest
+{
+    @Test
+    void roundTripCompleteItem() throws IOException
+    {
+        final SpecificationItem item = SpecificationItem.builder()
+                .id("req", "name", 2)
+                .title("Title")
+                .description("Description\nwith two lines")
+                .rationale("Rationale")
+                .comment("Comment")
+                .status(ItemStatus.DRAFT)
+                .addCoveredId("feat", "feature", 1)
+                .addDependOnId("req", "other", 3)
+                .addNeedsArtifactType("dsn")
+                .addNeedsArtifactType("utest")
+                .addTag("tag1")
+                .location(Location.create("doc/spec.md", 12, 3))
+                .build();
+        final SpecificationItem result = roundTrip(item);
+        assertThat(result.getId(), equalTo(item.getId()));
+        assertThat(result.getTitle(), equalTo("Title"));
+        assertThat(result.getDescription(), equalTo("Description\nwith two lines"));
+        assertThat(result.getRationale(), equalTo("Rationale"));
+        assertThat(result.getComment(), equalTo("Comment"));
+        assertThat(result.getStatus(), equalTo(ItemStatus.DRAFT));
+        assertThat(result.getCoveredIds(), contains(SpecificationItemId.createId("feat", "feature", 1)));
+        assertThat(result.getDependOnIds(), contains(SpecificationItemId.createId("req", "other", 3)));
+        assertThat(result.getNeedsArtifactTypes(), contains("dsn", "utest"));
+        assertThat(result.getTags(), contains("tag1"));
+        assertThat(result.getLocation(), equalTo(Location.create("doc/spec.md", 12, 3)));
+        assertThat(result.isForwarding(), is(false));
+    }
+
+    @Test
+    void roundTripForwardingItem() throws IOException
+    {
+        final SpecificationItem item = SpecificationItem.builder()
+                .id("arch", "forwarded", 1)
+                .addNeedsArtifactType("dsn")
+                .location("doc/arch.md", 5)
+                .forwards(true)
+                .build();
+        final SpecificationItem result = roundTrip(item);
+        assertThat(result.getId(), equalTo(item.getId()));
+        assertThat(result.getLocation(), equalTo(Location.create("doc/arch.md", 5)));
+        assertThat(result.isForwarding(), is(true));
+    }
+
+    @Test
+    void roundTripStringLongerThan64KiB() throws IOException
+    {
+        final String description = "x".repeat(100_000);
+        final SpecificationItem item = SpecificationItem.builder()
+                .id("req", "long", 1)
+                .description(description)
+                .build();
+        assertThat(roundTrip(item).getDescription(), equalTo(description));
+    }
+
+    private static SpecificationItem roundTrip(final SpecificationItem item) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SpecificationItemCodec.writeItems(new DataOutputStream(bytes), List.of(item));
+        final List<SpecificationItem> items = SpecificationItemCodec
+                .readItems(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertThat(items, hasSize(1));
+        return items.get(0);
+    }
+}
@@ -0,0 +1,37 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.List;
+
+import org.itsallcode.openfasttrace.api.core.*;
+import org.junit.jupiter.api.Test;
+
+class SpecificationItemCopyTest
+{
+    @Test
+    void copiesAllProperties()
+    {
+        final SpecificationItem item = SpecificationItem.builder()
+                .id("dsn", "a", 2)
+                .title("title").description("description").rationale("rationale").comment("comment")
+                .status(ItemStatus.DRAFT).addCoveredId("req", "a", 1).addDependOnId("dsn", "b", 1)
+                .addNeedsArtifactType("impl").addTag("tag").location("spec.md", 3).forwards(true).build();
+        final SpecificationItem copy = SpecificationItemCopy.copy(item);
+        assertThat(copy, allOf(equalTo(item), not(sameInstance(item))));
+        assertThat(copy.getLocation(), equalTo(item.getLocation()));
+        assertThat(copy.isForwarding(), equalTo(true));
+    }
+
+    @Test
+    void copyDoesNotShareCoveredIds()
+    {
+        final SpecificationItem item = SpecificationItem.builder().id("impl", "a", 1).addCoveredId("req", "a", 1)
+                .build();
+        final List<SpecificationItem> copies = SpecificationItemCopy.copyAll(List.of(item));
+        copies.get(0).addCoveredId(SpecificationItemId.createId("req", "a", 2));
+        assertThat(item.getCoveredIds(), contains(SpecificationItemId.createId("req", "a", 1)));
+        assertThat(copies.get(0).getCoveredIds(), hasSize(2));
+    }
+}
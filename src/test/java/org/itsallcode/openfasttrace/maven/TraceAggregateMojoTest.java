@@ -0,0 +1,277 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.*;
+
+import org.apache.maven.execution.BuildSuccess;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.*;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.itsallcode.openfasttrace.core.OftRunner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TraceAggregateMojoTest
+{
+    @Mock
+    MavenSession sessionMock;
+    @Mock
+    MojoExecution mojoExecutionMock;
+    @Mock
+    Log logMock;
+    @TempDir
+    Path baseDir;
+
+    MavenProject root;
+    MavenProject module;
+    TraceAggregateMojo testee;
+
+    @BeforeEach
+    void setup()
+    {
+        root = project(baseDir);
+        module = project(baseDir.resolve("module"));
+        testee = new TraceAggregateMojo();
+        testee.session = sessionMock;
+        testee.mojoExecution = mojoExecutionMock;
+    }
+
+    @Test
+    void collectsDeduplicatedSourceRootsOfAllProjects() throws IOException
+    {
+        final Path rootDoc = Files.createDirectories(baseDir.resolve("doc"));
+        final Path moduleSrc = Files.createDirectories(baseDir.resolve("module/src/main/java"));
+        final Path moduleDoc = Files.createDirectories(baseDir.resolve("module/doc"));
+        module.addCompileSourceRoot(moduleSrc.toString());
+        root.addCompileSourceRoot(baseDir.resolve("module/src/../src/main/java").toString());
+        when(sessionMock.getProjects()).thenReturn(List.of(root, module));
+        when(sessionMock.getTopLevelProject()).thenReturn(root);
+
+        assertThat(testee.getInputPaths(), contains(moduleSrc, rootDoc, moduleDoc));
+    }
+
+    @Test
+    void skipsGeneratedSourceRoots() throws IOException
+    {
+        final Path src = Files.createDirectories(baseDir.resolve("src/main/java"));
+        final Path generated = Files.createDirectories(baseDir.resolve("target/generated-sources/annotations"));
+        root.getBuild().setDirectory(baseDir.resolve("target").toString());
+        root.addCompileSourceRoot(src.toString());
+        root.addCompileSourceRoot(generated.toString());
+        when(sessionMock.getProjects()).thenReturn(List.of(root));
+        when(sessionMock.getTopLevelProject()).thenReturn(root);
+
+        testee.excludeGeneratedSources = true;
+        assertThat(testee.getInputPaths(), contains(src));
+        testee.excludeGeneratedSources = false;
+        assertThat(testee.getInputPaths(), contains(src, generated));
+    }
+
+    @Test
+    void tracesResourcesAndOtherSourceRootsBelowBuildDirectory() throws IOException
+    {
+        final Path generatedTestSources = Files
+                .createDirectories(baseDir.resolve("target/generated-test-sources/test-annotations"));
+        final Path otherSources = Files.createDirectories(baseDir.resolve("target/unpacked-sources"));
+        final Path unpackedRequirements = Files.createDirectories(baseDir.resolve("target/requirements"));
+        root.getBuild().setDirectory(baseDir.resolve("target").toString());
+        root.addTestCompileSourceRoot(generatedTestSources.toString());
+        root.addCompileSourceRoot(otherSources.toString());
+        final Resource resource = new Resource();
+        resource.setDirectory(unpackedRequirements.toString());
+        root.addResource(resource);
+        when(sessionMock.getProjects()).thenReturn(List.of(root));
+        when(sessionMock.getTopLevelProject()).thenReturn(root);
+
+        testee.excludeGeneratedSources = true;
+        assertThat(testee.getInputPaths(), contains(otherSources, unpackedRequirements));
+    }
+
+    @Test
+    void skipsLifecycleExecutionForProjectsOtherThanTheLast() throws MojoFailureException
+    {
+        testee.project = root;
+        when(mojoExecutionMock.getSource()).thenReturn(MojoExecution.Source.LIFECYCLE);
+        when(sessionMock.getProjects()).thenReturn(List.of(root, module));
+
+        testee.execute();
+
+        verify(sessionMock, never()).getTopLevelProject();
+    }
+
+    @Test
+    void parallelBuildTracesWhenGoalReachedAllProjectsInAnyOrder()
+    {
+        when(sessionMock.getProjects()).thenReturn(List.of(root, module));
+        when(sessionMock.getRepositorySession()).thenReturn(new DefaultRepositorySystemSession());
+        when(sessionMock.isParallel()).thenReturn(true);
+        when(sessionMock.getResult()).thenReturn(new DefaultMavenExecutionResult());
+
+        testee.project = module;
+        final boolean lastProjectTraces = testee.isTracingExecution();
+        testee.project = root;
+        final boolean firstProjectTraces = testee.isTracingExecution();
+
+        assertThat(lastProjectTraces, equalTo(false));
+        assertThat(firstProjectTraces, equalTo(true));
+    }
+
+    @Test
+    void parallelBuildWaitsForRunningProjectsWithoutGoal() throws Exception
+    {
+        final MavenProject other = project(baseDir.resolve("other"));
+        addAggregateGoal(root);
+        addAggregateGoal(module);
+        final DefaultMavenExecutionResult result = new DefaultMavenExecutionResult();
+        when(mojoExecutionMock.getGroupId()).thenReturn("org.itsallcode");
+        when(mojoExecutionMock.getArtifactId()).thenReturn("openfasttrace-maven-plugin");
+        when(sessionMock.getProjects()).thenReturn(List.of(root, module, other));
+        when(sessionMock.getRepositorySession()).thenReturn(new DefaultRepositorySystemSession());
+        when(sessionMock.isParallel()).thenReturn(true);
+        when(sessionMock.getResult()).thenReturn(result);
+        testee.setLog(logMock);
+        testee.project = root;
+        assertThat(testee.isTracingExecution(), equalTo(false));
+
+        testee.project = module;
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final Future<Boolean> tracing = executor.submit(testee::isTracingExecution);
+            verify(logMock, timeout(10_000))
+                    .info("Waiting for the other projects of the reactor to finish before aggregate tracing.");
+            assertThat(tracing.isDone(), equalTo(false));
+            result.addBuildSummary(new BuildSuccess(other, 0));
+            assertThat(tracing.get(10, TimeUnit.SECONDS), equalTo(true));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void parallelBuildImportsAllRootsWithOneImportCache() throws IOException
+    {
+        final Path first = Files.createDirectories(baseDir.resolve("first"));
+        final Path second = Files.createDirectories(baseDir.resolve("second"));
+        Files.writeString(first.resolve("first.md"), "# First\n`req~first~1`\n");
+        Files.writeString(second.resolve("second.md"), "# Second\n`req~second~1`\n");
+        when(sessionMock.isParallel()).thenReturn(true);
+        testee.setLog(logMock);
+        testee.importCache = true;
+        testee.importCacheFile = baseDir.resolve("target/openfasttrace/import-cache.bin").toFile();
+        final ImportSettings settings = ImportSettings.builder().addInputs(first, second).build();
+
+        importInParallelBuild(settings);
+        final TraceMetrics metrics = new TraceMetrics("aggregate", null);
+        final List<SpecificationItem> items = testee.importItems(new OftRunner(), settings, InputFilter.none(),
+                testee.createImportConfiguration(settings, InputFilter.none()), metrics, new TraceCoordinator(),
+                null);
+
+        assertThat(items.size(), equalTo(2));
+        verify(logMock).info("Import cache: 2 files unchanged, 0 files imported.");
+        assertThat(metrics.getCount("files"), equalTo(OptionalLong.of(2)));
+    }
+
+    @Test
+    void parallelBuildKeepsCacheEntriesOfRootsImportedByOtherExecutions() throws Exception
+    {
+        final Path first = Files.createDirectories(baseDir.resolve("first"));
+        Files.writeString(first.resolve("first.md"), "# First\n`req~first~1`\n");
+        when(sessionMock.isParallel()).thenReturn(true);
+        testee.setLog(logMock);
+        testee.importCache = true;
+        testee.importCacheFile = baseDir.resolve("target/openfasttrace/import-cache.bin").toFile();
+        final ImportSettings settings = ImportSettings.builder().addInputs(first).build();
+        final String configuration = testee.createImportConfiguration(settings, InputFilter.none());
+        importInParallelBuild(settings);
+
+        final TraceCoordinator coordinator = new TraceCoordinator();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            final Future<?> otherExecution = executor.submit(() -> coordinator.importRoot(logMock, configuration,
+                    first, () -> {
+                        started.countDown();
+                        awaitLatch(release);
+                        return new TraceCoordinator.ImportedRoot(List.of(), 1);
+                    }));
+            started.await(10, TimeUnit.SECONDS);
+            final Future<?> waitingExecution = executor.submit(() -> testee.importItems(new OftRunner(), settings,
+                    InputFilter.none(), configuration, new TraceMetrics("aggregate", null), coordinator, null));
+            verify(logMock, timeout(10_000)).debug("Waiting for concurrent import of " + first);
+            release.countDown();
+            otherExecution.get(10, TimeUnit.SECONDS);
+            waitingExecution.get(10, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        importInParallelBuild(settings);
+
+        verify(logMock).info("Import cache: 1 files unchanged, 0 files imported.");
+    }
+
+    private static void awaitLatch(final CountDownLatch latch)
+    {
+        try
+        {
+            latch.await(10, TimeUnit.SECONDS);
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void importInParallelBuild(final ImportSettings settings)
+    {
+        testee.importItems(new OftRunner(), settings, InputFilter.none(),
+                testee.createImportConfiguration(settings, InputFilter.none()), new TraceMetrics("aggregate", null),
+                new TraceCoordinator(), null);
+    }
+
+    private static void addAggregateGoal(final MavenProject project)
+    {
+        final PluginExecution execution = new PluginExecution();
+        execution.addGoal("trace-aggregate");
+        final Plugin plugin = new Plugin();
+        plugin.setGroupId("org.itsallcode");
+        plugin.setArtifactId("openfasttrace-maven-plugin");
+        plugin.addExecution(execution);
+        project.setBuild(new Build());
+        project.getBuild().addPlugin(plugin);
+    }
+
+    private static MavenProject project(final Path dir)
+    {
+        final MavenProject project = new MavenProject();
+        project.setFile(dir.resolve("pom.xml").toFile());
+        return project;
+    }
+}
@@ -0,0 +1,188 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.itsallcode.openfasttrace.api.core.SpecificationItem;
+import org.itsallcode.openfasttrace.api.core.SpecificationItemId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TraceCoordinatorTest
+{
+    private static final String CONFIGURATION = "configuration";
+
+    @Mock
+    Log logMock;
+    @Mock
+    MavenSession sessionMock;
+    @TempDir
+    Path tempDir;
+
+    private final TraceCoordinator coordinator = new TraceCoordinator();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final AtomicInteger imports = new AtomicInteger();
+
+    @AfterEach
+    void shutdownExecutor()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void coalescesConcurrentImportsOfSameRoot() throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<TraceCoordinator.ImportedRoot> first = executor.submit(() -> coordinator.importRoot(logMock,
+                CONFIGURATION, tempDir, () -> {
+                    started.countDown();
+                    await(release);
+                    return importedRoot();
+                }));
+        started.await(10, TimeUnit.SECONDS);
+        final Future<TraceCoordinator.ImportedRoot> second = executor
+                .submit(() -> coordinator.importRoot(logMock, CONFIGURATION, tempDir, this::importedRoot));
+        verify(logMock, timeout(10_000)).debug("Waiting for concurrent import of " + tempDir);
+        release.countDown();
+        assertThat(second.get(10, TimeUnit.SECONDS), equalTo(first.get(10, TimeUnit.SECONDS)));
+        assertThat(second.get().items().get(0), not(sameInstance(first.get().items().get(0))));
+        assertThat(second.get().fileCount(), equalTo(1L));
+        assertThat(imports.get(), equalTo(1));
+        assertThat(coordinator.getImportsInProgress(), equalTo(0));
+    }
+
+    @Test
+    void importsDifferentConfigurationsSeparately() throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<TraceCoordinator.ImportedRoot> first = executor.submit(() -> coordinator.importRoot(logMock,
+                CONFIGURATION, tempDir, () -> {
+                    started.countDown();
+                    await(release);
+                    return importedRoot();
+                }));
+        started.await(10, TimeUnit.SECONDS);
+        coordinator.importRoot(logMock, "other", tempDir, this::importedRoot);
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        assertThat(imports.get(), equalTo(2));
+    }
+
+    @Test
+    void doesNotKeepCompletedImports()
+    {
+        coordinator.importRoot(logMock, CONFIGURATION, tempDir, this::importedRoot);
+        coordinator.importRoot(logMock, CONFIGURATION, tempDir, this::importedRoot);
+        assertThat(imports.get(), equalTo(2));
+    }
+
+    @Test
+    void propagatesFailureToWaitingImport() throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Supplier<TraceCoordinator.ImportedRoot> failingImporter = () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalArgumentException("import failed");
+        };
+        final Future<TraceCoordinator.ImportedRoot> first = executor
+                .submit(() -> coordinator.importRoot(logMock, CONFIGURATION, tempDir, failingImporter));
+        started.await(10, TimeUnit.SECONDS);
+        final Future<TraceCoordinator.ImportedRoot> second = executor
+                .submit(() -> coordinator.importRoot(logMock, CONFIGURATION, tempDir, this::importedRoot));
+        verify(logMock, timeout(10_000)).debug("Waiting for concurrent import of " + tempDir);
+        release.countDown();
+        final ExecutionException firstFailure = assertThrows(ExecutionException.class,
+                () -> first.get(10, TimeUnit.SECONDS));
+        assertThat(firstFailure.getCause().getMessage(), equalTo("import failed"));
+        final ExecutionException secondFailure = assertThrows(ExecutionException.class,
+                () -> second.get(10, TimeUnit.SECONDS));
+        assertThat(secondFailure.getCause(), instanceOf(IllegalArgumentException.class));
+        assertThat(coordinator.getImportsInProgress(), equalTo(0));
+    }
+
+    @Test
+    void serializesWritesToSameFile() throws Exception
+    {
+        final Path report = tempDir.resolve("tracing-report.txt");
+        final AtomicInteger writers = new AtomicInteger();
+        final AtomicInteger maxWriters = new AtomicInteger();
+        final Runnable write = () -> coordinator.writeExclusively(List.of(report, tempDir.resolve("other.html")),
+                () -> {
+                    maxWriters.accumulateAndGet(writers.incrementAndGet(), Math::max);
+                    sleep(50);
+                    writers.decrementAndGet();
+                });
+        final Future<?> first = executor.submit(write);
+        final Future<?> second = executor.submit(() -> coordinator
+                .writeExclusively(List.of(tempDir.resolve("other.html"), report.toAbsolutePath()), write));
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        assertThat(maxWriters.get(), equalTo(1));
+    }
+
+    @Test
+    void sharesCoordinatorInSession()
+    {
+        when(sessionMock.getRepositorySession()).thenReturn(new DefaultRepositorySystemSession());
+        assertThat(TraceCoordinator.forSession(sessionMock), sameInstance(TraceCoordinator.forSession(sessionMock)));
+    }
+
+    @Test
+    void createsCoordinatorWithoutSession()
+    {
+        assertThat(TraceCoordinator.forSession(null), notNullValue());
+    }
+
+    private TraceCoordinator.ImportedRoot importedRoot()
+    {
+        imports.incrementAndGet();
+        return new TraceCoordinator.ImportedRoot(
+                List.of(SpecificationItem.builder().id(SpecificationItemId.createId("req", "name", 1)).build()), 1);
+    }
+
+    private static void await(final CountDownLatch latch)
+    {
+        try
+        {
+            latch.await(10, TimeUnit.SECONDS);
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static void sleep(final long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(exception);
+        }
+    }
+}
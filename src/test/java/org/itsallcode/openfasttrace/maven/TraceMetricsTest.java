@@ -0,0 +1,126 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TraceMetricsTest
+{
+    @Mock
+    Log logMock;
+    @TempDir
+    Path tempDir;
+
+    private final TraceMetrics metrics = new TraceMetrics("trace", "group:artifact:jar:1.0");
+
+    @Test
+    void measuresPhasesInOrder()
+    {
+        assertThat(metrics.measure("import", () -> "result"), equalTo("result"));
+        metrics.run("link", () -> sleep(5));
+        assertThat(metrics.getPhases(), hasSize(2));
+        assertThat(metrics.getPhases().get(0).name(), equalTo("import"));
+        assertThat(metrics.getPhases().get(1).name(), equalTo("link"));
+        assertThat(metrics.getPhases().get(1).wallNanos(), greaterThanOrEqualTo(5_000_000L));
+    }
+
+    @Test
+    void measuresAllocatedBytes()
+    {
+        metrics.measure("allocate", () -> new byte[1024 * 1024]);
+        final long allocatedBytes = metrics.getPhases().get(0).allocatedBytes();
+        assertThat(allocatedBytes, anyOf(equalTo(-1L), greaterThanOrEqualTo(1024L * 1024L)));
+    }
+
+    @Test
+    void recordsPhaseOfFailingStep()
+    {
+        try
+        {
+            metrics.run("import", () -> {
+                throw new IllegalStateException("expected");
+            });
+        }
+        catch (final IllegalStateException exception)
+        {
+            // expected
+        }
+        assertThat(metrics.getPhases(), hasSize(1));
+    }
+
+    @Test
+    void calculatesThroughputFromCountsAndPhases()
+    {
+        metrics.run("import", () -> sleep(10));
+        metrics.count("files", 10);
+        metrics.count("items", 20);
+        assertThat(metrics.getThroughput().keySet(), contains("filesPerSecond", "itemsPerSecond"));
+        assertThat(metrics.getThroughput().get("itemsPerSecond"),
+                closeTo(2 * metrics.getThroughput().get("filesPerSecond"), 0.001));
+    }
+
+    @Test
+    void addsCounts()
+    {
+        metrics.count("files", 10);
+        metrics.count("files", 5);
+        assertThat(metrics.getCount("files").getAsLong(), equalTo(15L));
+    }
+
+    @Test
+    void writesJson() throws IOException
+    {
+        metrics.run("import", () -> sleep(1));
+        metrics.count("items", 3);
+        final Path file = tempDir.resolve("target/openfasttrace-metrics.json");
+        metrics.write(file);
+        final String json = Files.readString(file);
+        assertThat(json, allOf(containsString("\"goal\": \"trace\""),
+                containsString("\"project\": \"group:artifact:jar:1.0\""), containsString("\"upToDate\": false"),
+                containsString("\"counts\": {\"items\": 3}"),
+                containsString("{\"name\": \"import\", \"wallTimeMillis\": "),
+                containsString("\"throughput\": {\"itemsPerSecond\": ")));
+    }
+
+    @Test
+    void escapesStrings()
+    {
+        final String json = new TraceMetrics("trace", "a\"b\\c\n").toJson();
+        assertThat(json, containsString("\"project\": \"a\\\"b\\\\c\\n\""));
+    }
+
+    @Test
+    void logsSummary()
+    {
+        metrics.run("link", () -> sleep(1));
+        metrics.upToDate();
+        metrics.log(logMock);
+        verify(logMock).info("Tracing metrics (up-to-date):");
+        verify(logMock).info(startsWith("  link "));
+    }
+
+    private static void sleep(final long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (final InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -8,9 +8,14 @@ import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.maven.it.VerificationException;
 import org.apache.maven.it.Verifier;
@@ -28,6 +33,8 @@ class TraceMojoIT
     private static final String CURRENT_PLUGIN_VERSION = getCurrentProjectVersion();
     private static final String OFT_GOAL = "org.itsallcode:openfasttrace-maven-plugin:" + CURRENT_PLUGIN_VERSION
             + ":trace";
+    private static final String OFT_AGGREGATE_GOAL = "org.itsallcode:openfasttrace-maven-plugin:"
+            + CURRENT_PLUGIN_VERSION + ":trace-aggregate";
     private static final Path CURRENT_PLUGIN_JAR = Path
             .of("target", "openfasttrace-maven-plugin-" + CURRENT_PLUGIN_VERSION + ".jar")
             .toAbsolutePath();
@@ -48,6 +55,11 @@ class TraceMojoIT
     public static final Path PARTIAL_ARTIFACT_COVERAGE_PROJECT = BASE_TEST_DIR
             .resolve("project-with-partial-artifact-coverage");
     private static final Path PROJECT_WITH_STATUSES = BASE_TEST_DIR.resolve("project-with-statuses");
+    private static final Path PROJECT_WITH_MULTIPLE_REPORT_FORMATS = BASE_TEST_DIR
+            .resolve("project-with-multiple-report-formats");
+    private static final Path SCALABILITY_TEST_DIR = Path.of("target", "scalability-tests").toAbsolutePath();
+    /** Maximum growth of memory and counts per item when the number of items grows by factor 4. */
+    private static final double MAX_PER_ITEM_GROWTH = 2.5;
     private static MavenIntegrationTestEnvironment mvnITEnv;
 
     @BeforeAll
@@ -107,6 +119,91 @@ class TraceMojoIT
                 equalTo("ok - 3 total\n"));
     }
 
+    @Test
+    void testTracingAllModulesParallel() throws Exception
+    {
+        final Verifier verifier = mvnITEnv.getVerifier(PROJECT_WITH_NESTED_SUB_MODULE);
+        verifier.setCliOptions(List.of("-T 3"));
+        verifier.executeGoal(OFT_GOAL);
+        verifier.verifyErrorFreeLog();
+        assertThat(fileContent(PROJECT_WITH_NESTED_SUB_MODULE.resolve("target/tracing-report.txt")),
+                equalTo("ok - 3 total\n"));
+    }
+
+    @Test
+    void testAggregateTracingWithNestedSubModule() throws Exception
+    {
+        final Verifier verifier = mvnITEnv.getVerifier(PROJECT_WITH_NESTED_SUB_MODULE);
+        verifier.executeGoal(OFT_AGGREGATE_GOAL);
+        verifier.verifyErrorFreeLog();
+        verifier.verifyTextInLog("Aggregating 2 projects of the reactor.");
+        assertThat(fileContent(PROJECT_WITH_NESTED_SUB_MODULE.resolve("target/tracing-report.txt")),
+                equalTo("ok - 3 total\n"));
+    }
+
+    @Test
+    void testTracingScalesLinearlyWithItemCount() throws Exception
+    {
+        final ScalabilityRun small = runScalabilityProject("small", 4_000);
+        final ScalabilityRun large = runScalabilityProject("large", 16_000);
+        LOG.info(() -> "Scalability: " + small + " -> " + large);
+        assertAll(
+                () -> assertThat("allocated bytes per item", large.perItem(large.allocatedBytes())
+                        / small.perItem(small.allocatedBytes()), lessThan(MAX_PER_ITEM_GROWTH)),
+                () -> assertThat("files per item", large.perItem(large.files()) / small.perItem(small.files()),
+                        lessThan(MAX_PER_ITEM_GROWTH)),
+                () -> assertThat("links per item", large.perItem(large.links()) / small.perItem(small.links()),
+                        lessThan(MAX_PER_ITEM_GROWTH)));
+    }
+
+    private static ScalabilityRun runScalabilityProject(final String name, final int requirementCount)
+            throws Exception
+    {
+        final LargeProjectGenerator.GeneratedProject project = LargeProjectGenerator.builder()
+                .requirementCount(requirementCount).moduleCount(10).defectRate(0.01).seed(42).build()
+                .generate(SCALABILITY_TEST_DIR.resolve(name));
+        final Verifier verifier = mvnITEnv.getVerifier(project.baseDir());
+        verifier.setCliOptions(List.of("-pl .", "-Dopenfasttrace.metrics=true"));
+        verifier.executeGoal(OFT_GOAL);
+        verifier.verifyErrorFreeLog();
+        final String metrics = fileContent(project.baseDir().resolve("target/openfasttrace-metrics.json"));
+        assertAll(() -> assertThat(metrics, containsString("\"items\": " + project.itemCount())),
+                () -> assertThat(metrics, containsString("\"defects\": " + project.defectCount())));
+        long allocatedBytes = 0;
+        for (final String phase : List.of("import", "link", "trace"))
+        {
+            allocatedBytes += getMetric(metrics, "\\{\"name\": \"" + phase + "\"[^}]*\"allocatedBytes\": (-?\\d+)");
+        }
+        return new ScalabilityRun(project.itemCount(), allocatedBytes, getCount(metrics, "files"),
+                getCount(metrics, "links"));
+    }
+
+    private static long getCount(final String metrics, final String name)
+    {
+        return getMetric(metrics, "\"counts\": \\{[^}]*\"" + name + "\": (\\d+)");
+    }
+
+    private static long getMetric(final String metrics, final String regex)
+    {
+        final Matcher matcher = Pattern.compile(regex).matcher(metrics);
+        Assertions.assertTrue(matcher.find(), "Metric " + regex + " not found in " + metrics);
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * Measurements of a scalability run. Wall and CPU time depend on the load
+     * of the machine, so the test only compares allocated memory and counts
+     * that must grow with the number of items. Timing is measured by the JMH
+     * benchmarks.
+     */
+    private record ScalabilityRun(int itemCount, long allocatedBytes, long files, long links)
+    {
+        double perItem(final long value)
+        {
+            return Math.max(1, value) / (double) itemCount;
+        }
+    }
+
     static void assertFileContent(final Path file, final String... lines) throws IOException
     {
         final String fileContent = fileContent(file);
@@ -156,6 +253,38 @@ class TraceMojoIT
                 containsString("not ok - 2 total, 1 direct, 0 transitive defects"));
     }
 
+    @Test
+    void testTracingFindsDefectsWithConsoleSummary() throws Exception
+    {
+        final Verifier verifier = mvnITEnv.getVerifier(TRACING_DEFECTS);
+        verifier.addCliOption("-Dopenfasttrace.consoleReport=SUMMARY");
+        verifier.executeGoal(OFT_GOAL);
+        verifier.verifyErrorFreeLog();
+        verifier.verifyTextInLog("Defects per artifact type:");
+    }
+
+    @Test
+    void testTracingMetrics() throws Exception
+    {
+        final Verifier verifier = mvnITEnv.getVerifier(SIMPLE_PROJECT);
+        verifier.addCliOption("-Dopenfasttrace.metrics=true");
+        verifier.executeGoal(OFT_GOAL);
+        verifier.verifyErrorFreeLog();
+        verifier.verifyTextInLog("Tracing metrics:");
+        assertThat(fileContent(SIMPLE_PROJECT.resolve("target/reports/openfasttrace-metrics.json")),
+                containsString("\"counts\": {\"files\": "));
+    }
+
+    @Test
+    void testPerformanceBudgetExceeded()
+    {
+        final Verifier verifier = mvnITEnv.getVerifier(SIMPLE_PROJECT);
+        verifier.addCliOption("-Dopenfasttrace.maxImportedFiles=1");
+        final VerificationException exception = assertThrows(VerificationException.class,
+                () -> verifier.executeGoal(OFT_GOAL));
+        assertThat(exception.getMessage(), containsString("Tracing exceeded its performance budget: imported files"));
+    }
+
     @Test
     void testTracingSkipped() throws Exception
     {
@@ -181,6 +310,18 @@ class TraceMojoIT
                         containsString("not ok - 2 total, 1 direct, 0 transitive defects")));
     }
 
+    @Test
+    void testUpToDateCheckKeepsFailBuildDecision()
+    {
+        final Verifier verifier = mvnITEnv.getVerifier(TRACING_DEFECTS_FAIL_BUILD);
+        verifier.addCliOption("-Dopenfasttrace.upToDateCheck=true");
+        assertThrows(VerificationException.class, () -> verifier.executeGoal(OFT_GOAL));
+        final VerificationException exception = assertThrows(VerificationException.class,
+                () -> verifier.executeGoal(OFT_GOAL));
+        assertAll(() -> assertThat(exception.getMessage(), containsString("is up-to-date, skipping tracing.")),
+                () -> assertThat(exception.getMessage(), containsString("Tracing found 1 defects out of 2 items")));
+    }
+
     @Test
     void testHtmlReport() throws Exception
     {
@@ -191,6 +332,17 @@ class TraceMojoIT
                 () -> assertThat(content, containsString("<details>")));
     }
 
+    @Test
+    void testMultipleReportFormats() throws Exception
+    {
+        runTracingMojo(PROJECT_WITH_MULTIPLE_REPORT_FORMATS);
+        assertAll(
+                () -> assertThat(fileContent(PROJECT_WITH_MULTIPLE_REPORT_FORMATS.resolve("target/tracing-report.txt")),
+                        equalTo("ok - 3 total\n")),
+                () -> assertThat(PROJECT_WITH_MULTIPLE_REPORT_FORMATS.resolve("target/tracing-report.html").toFile(),
+                        anExistingFile()));
+    }
+
     @Test
     void testHtmlReportWithExpandedDetails() throws Exception
     {
@@ -203,6 +355,22 @@ class TraceMojoIT
                 containsString("<details open>"));
     }
 
+    @Test
+    void testGzipCompressedHtmlReport() throws Exception
+    {
+        final Verifier verifier = mvnITEnv.getVerifier(HTML_REPORT_PROJECT);
+        verifier.addCliOption("-Dopenfasttrace.reportCompression=GZIP");
+        verifier.executeGoal(OFT_GOAL);
+        verifier.verifyErrorFreeLog();
+
+        try (InputStream in = new GZIPInputStream(
+                Files.newInputStream(HTML_REPORT_PROJECT.resolve("target/tracing-report.html.gz"))))
+        {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8),
+                    containsString("<span class=\"green\">&check;</span> 3 total"));
+        }
+    }
+
     @Test
     void testTracingSelectedArtifactTypes() throws Exception
     {
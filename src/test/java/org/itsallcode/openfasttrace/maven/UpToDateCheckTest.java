@@ -0,0 +1,217 @@
+package org.itsallcode.openfasttrace.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+import org.itsallcode.openfasttrace.api.FilterSettings;
+import org.itsallcode.openfasttrace.api.ReportSettings;
+import org.itsallcode.openfasttrace.api.importer.ImportSettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class UpToDateCheckTest
+{
+    private static final UpToDateCheck.Outcome OUTCOME = new UpToDateCheck.Outcome(3, 1);
+    private static final String CONFIGURATION = "input filter: none, content prefilter: off";
+
+    @Mock
+    Log logMock;
+    @TempDir
+    Path tempDir;
+
+    Path sourceDir;
+    Path specFile;
+    Path reportFile;
+    UpToDateCheck check;
+
+    @BeforeEach
+    void setup() throws IOException
+    {
+        sourceDir = Files.createDirectories(tempDir.resolve("doc"));
+        specFile = Files.writeString(sourceDir.resolve("spec.md"), "`req~a~1`\n");
+        reportFile = tempDir.resolve("target/tracing-report.txt");
+        Files.createDirectories(reportFile.getParent());
+        Files.writeString(reportFile, "not ok - 1/3");
+        check = new UpToDateCheck(logMock, tempDir.resolve("target/openfasttrace/state.properties"),
+                Map.of(reportFile, reportSettings("plain")), InputFilter.none(), 0);
+    }
+
+    @Test
+    void noPreviousOutcomeWithoutState()
+    {
+        assertThat(check.getPreviousOutcome(fingerprint()), equalTo(Optional.empty()));
+    }
+
+    @Test
+    void reusesOutcomeWhenNothingChanged()
+    {
+        check.save(fingerprint(), OUTCOME);
+        assertThat(check.getPreviousOutcome(fingerprint()), equalTo(Optional.of(OUTCOME)));
+    }
+
+    @Test
+    void fingerprintChangesWhenInputFileChanges() throws IOException
+    {
+        final String fingerprint = fingerprint();
+        Files.setLastModifiedTime(specFile, FileTime.fromMillis(0));
+        assertThat(fingerprint(), not(equalTo(fingerprint)));
+    }
+
+    @Test
+    void fingerprintChangesWhenInputFileIsAdded() throws IOException
+    {
+        final String fingerprint = fingerprint();
+        Files.writeString(sourceDir.resolve("other.md"), "");
+        assertThat(fingerprint(), not(equalTo(fingerprint)));
+    }
+
+    @Test
+    void fingerprintChangesWhenSettingsChange()
+    {
+        final ImportSettings filtered = ImportSettings.builder().addInputs(sourceDir)
+                .filter(FilterSettings.builder().artifactTypes(Set.of("req")).build()).build();
+        assertThat(check.createFingerprint(filtered, CONFIGURATION, List.of(), List.of()),
+                not(equalTo(fingerprint())));
+        final UpToDateCheck htmlCheck = new UpToDateCheck(logMock, tempDir.resolve("state.properties"),
+                Map.of(reportFile, reportSettings("html")), InputFilter.none(), 0);
+        assertThat(fingerprint(htmlCheck), not(equalTo(fingerprint())));
+    }
+
+    @Test
+    void fingerprintChangesWhenImportConfigurationChanges()
+    {
+        assertThat(check.createFingerprint(importSettings(), "input filter: none, content prefilter: 1024",
+                List.of(), List.of()), not(equalTo(fingerprint())));
+    }
+
+    @Test
+    void fingerprintIgnoresReportInsideInputs() throws IOException
+    {
+        final UpToDateCheck checkWithReportInInputs = new UpToDateCheck(logMock,
+                sourceDir.resolve("state.properties"),
+                Map.of(sourceDir.resolve("tracing-report.txt"), reportSettings("plain")), InputFilter.none(), 0);
+        final String fingerprint = fingerprint(checkWithReportInInputs);
+        Files.writeString(sourceDir.resolve("tracing-report.txt"), "report");
+        Files.writeString(sourceDir.resolve("state.properties"), "state");
+        assertThat(fingerprint(checkWithReportInInputs), equalTo(fingerprint));
+    }
+
+    @Test
+    void fingerprintChangesWhenItemBundleChanges() throws IOException
+    {
+        final Path bundle = Files.writeString(tempDir.resolve("dependency-oft-items.oftb"), "bundle");
+        final String fingerprint = check.createFingerprint(importSettings(), CONFIGURATION, List.of(bundle),
+                List.of());
+        assertThat(fingerprint, not(equalTo(fingerprint())));
+        Files.writeString(bundle, "changed bundle");
+        assertThat(check.createFingerprint(importSettings(), CONFIGURATION, List.of(bundle), List.of()),
+                not(equalTo(fingerprint)));
+    }
+
+    @Test
+    void fingerprintChangesWhenFocusChanges()
+    {
+        final String fingerprint = check.createFingerprint(importSettings(), CONFIGURATION, List.of(),
+                List.of("req~a~1"));
+        assertThat(fingerprint, not(equalTo(fingerprint())));
+        assertThat(check.createFingerprint(importSettings(), CONFIGURATION, List.of(), List.of("req~b~1")),
+                not(equalTo(fingerprint)));
+    }
+
+    @Test
+    void noPreviousOutcomeWhenReportWasDeleted() throws IOException
+    {
+        check.save(fingerprint(), OUTCOME);
+        Files.delete(reportFile);
+        assertThat(check.getPreviousOutcome(fingerprint()), equalTo(Optional.empty()));
+    }
+
+    @Test
+    void noPreviousOutcomeWhenOneOfMultipleReportsWasDeleted() throws IOException
+    {
+        final Path htmlReport = Files.writeString(tempDir.resolve("target/tracing-report.html"), "<html/>");
+        final UpToDateCheck multiReportCheck = new UpToDateCheck(logMock, tempDir.resolve("state.properties"),
+                Map.of(reportFile, reportSettings("plain"), htmlReport, reportSettings("html")), InputFilter.none(),
+                0);
+        final String fingerprint = fingerprint(multiReportCheck);
+        multiReportCheck.save(fingerprint, OUTCOME);
+        assertThat(multiReportCheck.getPreviousOutcome(fingerprint), equalTo(Optional.of(OUTCOME)));
+        Files.delete(htmlReport);
+        assertThat(multiReportCheck.getPreviousOutcome(fingerprint), equalTo(Optional.empty()));
+    }
+
+    @Test
+    void noPreviousOutcomeWhenPageOfPagedReportWasDeletedOrModified() throws IOException
+    {
+        final Path index = Files.writeString(tempDir.resolve("target/tracing-report.html"), "<html/>");
+        final Path pageDirectory = Files.createDirectories(tempDir.resolve("target/tracing-report"));
+        final Path page = Files.writeString(pageDirectory.resolve("req-1.html"), "<html/>");
+        Files.writeString(pageDirectory.resolve("pages.txt"), "req-1.html\n");
+        final UpToDateCheck pagedCheck = new UpToDateCheck(logMock, tempDir.resolve("state.properties"),
+                Map.of(index, reportSettings("html")), InputFilter.none(), 10);
+        final String fingerprint = fingerprint(pagedCheck);
+        pagedCheck.save(fingerprint, OUTCOME);
+        assertThat(pagedCheck.getPreviousOutcome(fingerprint), equalTo(Optional.of(OUTCOME)));
+        Files.writeString(page, "<html>modified</html>");
+        assertThat(pagedCheck.getPreviousOutcome(fingerprint), equalTo(Optional.empty()));
+        pagedCheck.save(fingerprint, OUTCOME);
+        Files.delete(page);
+        assertThat(pagedCheck.getPreviousOutcome(fingerprint), equalTo(Optional.empty()));
+    }
+
+    @Test
+    void fingerprintIgnoresPagesOfPagedReportInsideInputs() throws IOException
+    {
+        final Path index = sourceDir.resolve("tracing-report.html");
+        final UpToDateCheck pagedCheck = new UpToDateCheck(logMock, tempDir.resolve("state.properties"),
+                Map.of(index, reportSettings("html")), InputFilter.none(), 10);
+        final String fingerprint = fingerprint(pagedCheck);
+        final Path pageDirectory = Files.createDirectories(sourceDir.resolve("tracing-report"));
+        Files.writeString(pageDirectory.resolve("req-1.html"), "<html/>");
+        Files.writeString(pageDirectory.resolve("pages.txt"), "req-1.html\n");
+        assertThat(fingerprint(pagedCheck), equalTo(fingerprint));
+    }
+
+    @Test
+    void noPreviousOutcomeWhenReportWasModified() throws IOException
+    {
+        check.save(fingerprint(), OUTCOME);
+        Files.writeString(reportFile, "modified report");
+        assertThat(check.getPreviousOutcome(fingerprint()), equalTo(Optional.empty()));
+    }
+
+    private String fingerprint()
+    {
+        return fingerprint(check);
+    }
+
+    private String fingerprint(final UpToDateCheck upToDateCheck)
+    {
+        return upToDateCheck.createFingerprint(importSettings(), CONFIGURATION, List.of(), List.of());
+    }
+
+    private ImportSettings importSettings()
+    {
+        return ImportSettings.builder().addInputs(sourceDir).build();
+    }
+
+    private static ReportSettings reportSettings(final String format)
+    {
+        return ReportSettings.builder().outputFormat(format).build();
+    }
+}
@@ -0,0 +1,3 @@
+// [impl->dsn~exampleA~1]
+class source {
+}
\ No newline at end of file
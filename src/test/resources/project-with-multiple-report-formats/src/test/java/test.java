@@ -0,0 +1,3 @@
+// [test->dsn~exampleA~1]
+class test {
+}
\ No newline at end of file